@@ -0,0 +1,337 @@
+package refactoringml;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.jboss.logging.Logger;
+
+import refactoringml.ProjectScheduler.ScheduledProject;
+import refactoringml.util.ProjectCostEstimator;
+
+// Decides how many projects are mined at the same time. A project is only started when the heap it
+// is projected to need fits next to the live heap and the heap reserved for the running projects, and
+// the amount of concurrent projects starts below the maximum, is lowered when the JVM spends too much
+// time collecting garbage and is raised up to the maximum while the CPU is not busy and projects are
+// waiting.
+// The heap a project needs is learned from the projects mined so far: while projects run, the live
+// heap is attributed to them in proportion to their estimated cost, and the peak of every finished
+// project is remembered per unit of cost.
+public class AdmissionController implements AdmissionControllerMXBean {
+	private static final Logger log = Logger.getLogger(AdmissionController.class);
+
+	// weight of the latest finished project in the learned heap per cost
+	private static final double LEARNING_RATE = 0.3;
+
+	private final int maxConcurrency;
+	private final double heapFraction;
+	private final long minProjectHeap;
+	private final double cpuTarget;
+	private final double gcLimit;
+	private final long maxHeap;
+
+	// per running project: the peak of the live heap attributed to it and the heap projected at its admission
+	private final Map<ScheduledProject, long[]> running = new IdentityHashMap<>();
+	private final ScheduledExecutorService sampler;
+	private int concurrencyLimit;
+	private int waiting;
+	// learned from finished projects, 0 until the first project with a known cost finished
+	private double heapPerCost;
+	private long peakHeapPerProject;
+
+	private long admitted;
+	private long heapDeferrals;
+	private long limitIncreases;
+	private long limitDecreases;
+	private long liveHeap;
+	private double processCpuLoad;
+	private double gcTimeFraction;
+	private long lastGcTime = totalGcTime();
+	private long lastSampleTime = System.nanoTime();
+
+	// maxConcurrency: the concurrency limit is raised up to this, starting at initialConcurrency
+	// heapFraction: share of the maximum heap that live data and projected projects may use
+	// minProjectHeap: heap in bytes every project is assumed to need at least
+	// cpuTarget: the limit is only raised while the process CPU load is below this (0 to 1)
+	// gcLimit: the limit is lowered while the share of time spent in garbage collection is above this
+	public AdmissionController(int maxConcurrency, int initialConcurrency, double heapFraction, long minProjectHeap,
+			double cpuTarget, double gcLimit, int sampleSeconds) {
+		this.maxConcurrency = Math.max(1, maxConcurrency);
+		this.concurrencyLimit = Math.max(1, Math.min(this.maxConcurrency, initialConcurrency));
+		this.heapFraction = heapFraction;
+		this.minProjectHeap = minProjectHeap;
+		this.cpuTarget = cpuTarget;
+		this.gcLimit = gcLimit;
+		long max = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax();
+		this.maxHeap = max > 0 ? max : Runtime.getRuntime().maxMemory();
+
+		registerMBean();
+		sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "admission-controller");
+			thread.setDaemon(true);
+			return thread;
+		});
+		sampler.scheduleAtFixedRate(this::sample, sampleSeconds, Math.max(1, sampleSeconds), TimeUnit.SECONDS);
+	}
+
+	// Blocks until the project may start. A project is always admitted when no other project is running,
+	// otherwise a project too large for the heap could never start.
+	public synchronized void admit(ScheduledProject project) throws InterruptedException {
+		waiting++;
+		try {
+			boolean deferred = false;
+			while (!running.isEmpty()) {
+				if (running.size() < concurrencyLimit) {
+					if (fitsHeap(liveHeap, reservedHeap(), projectedHeap(project), maxHeap, heapFraction))
+						break;
+					if (!deferred) {
+						heapDeferrals++;
+						deferred = true;
+						log.infof("Deferring %s: about %d MB projected next to %d MB live and %d MB reserved heap "
+								+ "of %d MB", project.getLine(), toMB(projectedHeap(project)), toMB(liveHeap),
+								toMB(reservedHeap()), toMB(maxHeap));
+					}
+				}
+				wait();
+			}
+		} finally {
+			waiting--;
+		}
+		admitted++;
+		running.put(project, new long[] { 0, projectedHeap(project) });
+	}
+
+	public synchronized void finished(ScheduledProject project) {
+		long[] peak = running.remove(project);
+		if (peak != null && peak[0] > 0) {
+			peakHeapPerProject = peakHeapPerProject == 0 ? peak[0]
+					: (long) (LEARNING_RATE * peak[0] + (1 - LEARNING_RATE) * peakHeapPerProject);
+			if (hasKnownCost(project)) {
+				double perCost = (double) peak[0] / Math.max(1, project.getCost());
+				heapPerCost = heapPerCost == 0 ? perCost : LEARNING_RATE * perCost + (1 - LEARNING_RATE) * heapPerCost;
+			}
+		}
+		notifyAll();
+	}
+
+	public void shutdown() {
+		sampler.shutdownNow();
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName());
+		} catch (JMException e) {
+			log.debug("Could not unregister the admission controller", e);
+		}
+	}
+
+	// The live heap sample does not contain the heap the running projects did not allocate yet, that is reserved
+	static boolean fitsHeap(long liveHeap, long reservedHeap, long projectedHeap, long maxHeap, double heapFraction) {
+		return liveHeap + reservedHeap + projectedHeap <= maxHeap * heapFraction;
+	}
+
+	// The heap projected for the running projects that is not attributed to them in the live heap yet. Released
+	// once they finished, or while they reach their projection.
+	private long reservedHeap() {
+		long reserved = 0;
+		for (long[] heap : running.values())
+			reserved += Math.max(0, heap[1] - heap[0]);
+		return reserved;
+	}
+
+	// The new concurrency limit after a sample, changing it by at most one
+	static int nextLimit(int limit, int maxConcurrency, double cpuLoad, double gcTimeFraction, double cpuTarget,
+			double gcLimit, boolean projectsWaiting) {
+		if (gcTimeFraction > gcLimit)
+			return Math.max(1, limit - 1);
+		// a negative load means the JVM does not know it
+		if (projectsWaiting && cpuLoad >= 0 && cpuLoad < cpuTarget && gcTimeFraction < gcLimit / 2)
+			return Math.min(maxConcurrency, limit + 1);
+		return limit;
+	}
+
+	private long projectedHeap(ScheduledProject project) {
+		long projected = hasKnownCost(project) && heapPerCost > 0 ? (long) (heapPerCost * project.getCost())
+				: peakHeapPerProject;
+		return Math.max(minProjectHeap, projected);
+	}
+
+	private static boolean hasKnownCost(ScheduledProject project) {
+		return project.getCost() != ProjectCostEstimator.UNKNOWN_COST;
+	}
+
+	private void sample() {
+		try {
+			long now = System.nanoTime();
+			long gcTime = totalGcTime();
+			double elapsedMillis = Math.max(1, (now - lastSampleTime) / 1_000_000.0);
+			double gcFraction = Math.min(1, (gcTime - lastGcTime) / elapsedMillis);
+			lastGcTime = gcTime;
+			lastSampleTime = now;
+			long live = liveHeap();
+			double cpu = processCpuLoad();
+
+			synchronized (this) {
+				liveHeap = live;
+				gcTimeFraction = gcFraction;
+				processCpuLoad = cpu;
+				attributeHeap(live);
+
+				int limit = nextLimit(concurrencyLimit, maxConcurrency, cpu, gcFraction, cpuTarget, gcLimit,
+						waiting > 0);
+				if (limit != concurrencyLimit) {
+					if (limit > concurrencyLimit)
+						limitIncreases++;
+					else
+						limitDecreases++;
+					log.infof("Concurrency limit %d -> %d (CPU load %.2f, GC time %.2f, live heap %d of %d MB, "
+							+ "%d projects running, %d waiting)", concurrencyLimit, limit, cpu, gcFraction, toMB(live),
+							toMB(maxHeap), running.size(), waiting);
+					concurrencyLimit = limit;
+				}
+				notifyAll();
+			}
+		} catch (RuntimeException e) {
+			log.warn("Could not sample the JVM", e);
+		}
+	}
+
+	// The live heap is shared by the running projects in proportion to their estimated cost
+	private void attributeHeap(long live) {
+		double totalCost = 0;
+		for (ScheduledProject project : running.keySet())
+			totalCost += hasKnownCost(project) ? Math.max(1, project.getCost()) : 0;
+		for (Map.Entry<ScheduledProject, long[]> entry : running.entrySet()) {
+			ScheduledProject project = entry.getKey();
+			long share = hasKnownCost(project) && totalCost > 0
+					? (long) (live * Math.max(1, project.getCost()) / totalCost)
+					: live / running.size();
+			entry.getValue()[0] = Math.max(entry.getValue()[0], share);
+		}
+	}
+
+	// The heap used by live data. Eden mostly holds garbage, so only what survived its last collection
+	// counts, the other pools count as they are.
+	private static long liveHeap() {
+		long live = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() != MemoryType.HEAP)
+				continue;
+			MemoryUsage usage = pool.getName().contains("Eden") ? pool.getCollectionUsage() : pool.getUsage();
+			if (usage != null)
+				live += usage.getUsed();
+		}
+		return live;
+	}
+
+	private static long totalGcTime() {
+		long total = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			total += Math.max(0, gc.getCollectionTime());
+		return total;
+	}
+
+	private static double processCpuLoad() {
+		java.lang.management.OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+		if (os instanceof com.sun.management.OperatingSystemMXBean)
+			return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuLoad();
+		return -1;
+	}
+
+	private static long toMB(long bytes) {
+		return bytes / 1024 / 1024;
+	}
+
+	private static ObjectName objectName() throws JMException {
+		return new ObjectName("refactoringml:type=AdmissionController");
+	}
+
+	private void registerMBean() {
+		try {
+			var server = ManagementFactory.getPlatformMBeanServer();
+			if (server.isRegistered(objectName()))
+				server.unregisterMBean(objectName());
+			server.registerMBean(this, objectName());
+		} catch (JMException e) {
+			log.warn("Could not register the admission controller in JMX", e);
+		}
+	}
+
+	@Override
+	public synchronized int getConcurrencyLimit() {
+		return concurrencyLimit;
+	}
+
+	@Override
+	public int getMaxConcurrency() {
+		return maxConcurrency;
+	}
+
+	@Override
+	public synchronized int getRunningProjects() {
+		return running.size();
+	}
+
+	@Override
+	public synchronized int getWaitingProjects() {
+		return waiting;
+	}
+
+	@Override
+	public synchronized long getAdmittedProjects() {
+		return admitted;
+	}
+
+	@Override
+	public synchronized long getHeapDeferrals() {
+		return heapDeferrals;
+	}
+
+	@Override
+	public synchronized long getLimitIncreases() {
+		return limitIncreases;
+	}
+
+	@Override
+	public synchronized long getLimitDecreases() {
+		return limitDecreases;
+	}
+
+	@Override
+	public synchronized long getReservedHeapBytes() {
+		return reservedHeap();
+	}
+
+	@Override
+	public synchronized long getLiveHeapBytes() {
+		return liveHeap;
+	}
+
+	@Override
+	public long getMaxHeapBytes() {
+		return maxHeap;
+	}
+
+	@Override
+	public synchronized long getProjectedHeapBytesPerProject() {
+		return Math.max(minProjectHeap, peakHeapPerProject);
+	}
+
+	@Override
+	public synchronized double getProcessCpuLoad() {
+		return processCpuLoad;
+	}
+
+	@Override
+	public synchronized double getGcTimeFraction() {
+		return gcTimeFraction;
+	}
+}
@@ -0,0 +1,36 @@
+package refactoringml;
+
+// Decisions and inputs of the AdmissionController, visible in JMX (e.g. jconsole) as
+// refactoringml:type=AdmissionController
+public interface AdmissionControllerMXBean {
+
+	int getConcurrencyLimit();
+
+	int getMaxConcurrency();
+
+	int getRunningProjects();
+
+	int getWaitingProjects();
+
+	long getAdmittedProjects();
+
+	// Admissions that had to wait, because the projected heap did not fit
+	long getHeapDeferrals();
+
+	long getLimitIncreases();
+
+	long getLimitDecreases();
+
+	long getLiveHeapBytes();
+
+	// Projected heap of the running projects, that is not part of the live heap yet
+	long getReservedHeapBytes();
+
+	long getMaxHeapBytes();
+
+	long getProjectedHeapBytesPerProject();
+
+	double getProcessCpuLoad();
+
+	double getGcTimeFraction();
+}
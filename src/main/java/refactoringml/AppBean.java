@@ -10,22 +10,30 @@ import static refactoringml.util.JGitUtils.getRefactoringMinerRenames;
 import static refactoringml.util.LogUtils.createErrorState;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
+import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 import javax.transaction.Transactional;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
-import org.eclipse.jgit.api.CloneCommand;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.ResetCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
@@ -33,9 +41,13 @@ import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.diff.DiffFormatter;
 import org.eclipse.jgit.errors.MissingObjectException;
 import org.eclipse.jgit.errors.RepositoryNotFoundException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.CredentialsProvider;
 import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 import org.refactoringminer.api.GitHistoryRefactoringMiner;
@@ -45,14 +57,25 @@ import org.refactoringminer.api.RefactoringType;
 import org.refactoringminer.rm1.GitHistoryRefactoringMinerImpl;
 
 import io.quarkus.narayana.jta.runtime.TransactionConfiguration;
+import refactoringml.db.BatchPersister;
 import refactoringml.db.CommitMetaData;
+import refactoringml.db.MetricRegistry;
 import refactoringml.db.Project;
 import refactoringml.db.RefactoringCommit;
 import refactoringml.db.StableCommit;
+import refactoringml.util.BlobReader;
+import refactoringml.util.CKResultCache;
+import refactoringml.util.CKUtils;
+import refactoringml.util.CommitMessageClassifier;
+import refactoringml.util.CommitIndex;
 import refactoringml.util.CounterUtils;
 import refactoringml.util.CounterUtils.CounterResult;
 import refactoringml.util.JGitUtils;
+import refactoringml.util.JavaFileFilter;
+import refactoringml.util.LineChurnCalculator;
+import refactoringml.util.RefactoringMinerCache;
 import refactoringml.util.RefactoringUtils;
+import refactoringml.util.SharedObjectStore;
 
 @ApplicationScoped
 public class AppBean {
@@ -79,27 +102,170 @@ public class AppBean {
 	@ConfigProperty(name = "ck.timeout.in.seconds", defaultValue = "120")
 	private Integer cKTimeoutInSeconds;
 
+	// Amount of threads per project running RefactoringMiner and the diffs ahead of the commit being applied
+	@ConfigProperty(name = "pipeline.miner.threads", defaultValue = "2")
+	int pipelineMinerThreads;
+
+	// Maximum amount of mined commits waiting to be applied to the PMDatabase
+	@ConfigProperty(name = "pipeline.window", defaultValue = "16")
+	int pipelineWindow;
+
+	// Amount of files whose CK results are kept in memory
+	@ConfigProperty(name = "ck.cache.size", defaultValue = "5000")
+	int ckCacheSize;
+
+	// Also store the CK results on disk (in storage.path/ck-cache), so that they are reused across runs
+	@ConfigProperty(name = "ck.cache.on.disk", defaultValue = "false")
+	boolean ckCacheOnDisk;
+
+	@ConfigProperty(name = "storage.path", defaultValue = "storage")
+	Path storagePath;
+
+	// Amount of threads running CK, shared by all projects. Default is the amount of available processors
+	@ConfigProperty(name = "ck.threads")
+	Optional<Integer> ckThreads;
+
+	// Maximum amount of CK threads stuck on a timed out file that are replaced by new threads
+	@ConfigProperty(name = "ck.max.stuck.workers", defaultValue = "4")
+	int ckMaxStuckWorkers;
+
+	// Seconds a CK run waits for a free CK thread, e.g. while all of them are stuck, before it fails
+	@ConfigProperty(name = "ck.queue.timeout", defaultValue = "300")
+	int ckQueueTimeout;
+
+	// Flush the inserts of a commit to the database after this many rows, 0 to only flush at the end of the commit
+	@ConfigProperty(name = "persistence.flush.size", defaultValue = "500")
+	int persistenceFlushSize;
+
+	// Amount of distinct class and method metrics per project that are remembered to store them only once
+	@ConfigProperty(name = "metric.registry.size", defaultValue = "100000")
+	int metricRegistrySize;
+
+	// Write a checkpoint of the project (in storage.path/checkpoints) after this many processed commits, 0 to disable
+	@ConfigProperty(name = "checkpoint.interval", defaultValue = "500")
+	int checkpointInterval;
+
+	// Clone repositories without a working tree and only with their main branch, all commits and files are read
+	// from the object database anyway
+	@ConfigProperty(name = "clone.bare", defaultValue = "false")
+	boolean cloneBare;
+
+	// Clone repositories borrowing the objects of a store shared by all clones in the repositories path, so that
+	// the history of forks and copies of the same repository is only downloaded and stored once
+	@ConfigProperty(name = "shared.object.store", defaultValue = "false")
+	boolean useSharedObjectStore;
+
+	// Amount of commits whose refactorings are kept in memory, to reuse them when forks share the commit
+	@ConfigProperty(name = "rm.cache.size", defaultValue = "2000")
+	int rmCacheSize;
+
+	// Amount of commits whose trees and resolved file paths are kept in memory to read their files
+	@ConfigProperty(name = "blob.reader.cached.commits", defaultValue = "64")
+	int blobReaderCachedCommits;
+
+	// Only diff Java files, so that renames are not detected among the other files changed by a commit
+	@ConfigProperty(name = "diff.java.only", defaultValue = "false")
+	boolean diffJavaOnly;
+
+	// Paths left out of the diffs of the Java only mode, in .gitignore syntax, e.g. **/generated/
+	@ConfigProperty(name = "diff.exclude")
+	Optional<List<String>> diffExclude;
+
+	// Rename detection gives up on diffs with more added or deleted files than this
+	@ConfigProperty(name = "diff.rename.limit", defaultValue = "400")
+	int diffRenameLimit;
+
+	// Minimum similarity in percent of a deleted and an added file to be detected as rename
+	@ConfigProperty(name = "diff.rename.score", defaultValue = "60")
+	int diffRenameScore;
+
+	// Files with more lines are not diffed to count the lines added and deleted, which are approximated instead
+	@ConfigProperty(name = "churn.max.lines", defaultValue = "20000")
+	int churnMaxLines;
+
+	// Amount of file versions whose line hashes are kept in memory, to count the lines changed by the next commit
+	@ConfigProperty(name = "churn.cache.size", defaultValue = "5000")
+	int churnCacheSize;
+
+	// Keep the process metrics of the files in primitive columns instead of a tracker per file, for repositories
+	// with very many files
+	@ConfigProperty(name = "pm.database.columnar", defaultValue = "false")
+	boolean pmDatabaseColumnar;
+
+	// Keywords that make a commit a bug fix, if its message contains one of them
+	@ConfigProperty(name = "bugfix.keywords")
+	Optional<List<String>> bugFixKeywords;
+
+	// shared by all projects, as the results are keyed by the content of the files
+	private CKResultCache ckResultCache;
+	// shared by all projects, as the results are keyed by the commit
+	private RefactoringMinerCache refactoringMinerCache;
+	private CommitMessageClassifier commitMessageClassifier;
+	// per repositories path
+	private final Map<Path, SharedObjectStore> sharedObjectStores = new ConcurrentHashMap<>();
+
+	@PostConstruct
+	void initCK() {
+		ckResultCache = new CKResultCache(ckCacheSize, ckCacheOnDisk ? storagePath.resolve("ck-cache") : null);
+		refactoringMinerCache = new RefactoringMinerCache(rmCacheSize);
+		commitMessageClassifier = new CommitMessageClassifier(Map.of(CommitMessageClassifier.Category.BUG_FIX,
+				bugFixKeywords.orElse(CommitMessageClassifier.DEFAULT_BUG_FIX_KEYWORDS)));
+		CKUtils.configureWorkerPool(ckThreads.orElse(Runtime.getRuntime().availableProcessors()),
+				ckMaxStuckWorkers, ckQueueTimeout);
+	}
+
 	public void run(String dataset, String gitUrl, Path storagePath, Path repositoriesPath, boolean storeFullSourceCode)
-			throws GitAPIException, IOException {
+			throws GitAPIException, IOException, InterruptedException {
 		run(dataset, gitUrl, storagePath, repositoriesPath, null, null, storeFullSourceCode);
 	}
 
+	public void run(String dataset, String gitUrl, Path storagePath, Path repositoriesPath, boolean storeFullSourceCode,
+			boolean resumeUnfinished, boolean updateFinished)
+			throws GitAPIException, IOException, InterruptedException {
+		run(dataset, gitUrl, storagePath, repositoriesPath, null, null, storeFullSourceCode, resumeUnfinished,
+				updateFinished);
+	}
+
 	public Project run(String datasetName, String gitUrl, Path filesStoragePath, Path repositoriesPath,
 			String firstCommitToProcess, String lastCommitToProcess, boolean storeFullSourceCode)
-			throws GitAPIException, IOException {
+			throws GitAPIException, IOException, InterruptedException {
+		return run(datasetName, gitUrl, filesStoragePath, repositoriesPath, firstCommitToProcess, lastCommitToProcess,
+				storeFullSourceCode, false, false);
+	}
+
+	// resumeUnfinished: continue an unfinished project in the database from its last checkpoint, instead of
+	// refusing to mine it again
+	// updateFinished: fetch the new commits of a finished project in the database and only mine these, starting
+	// from the checkpoint written at the end of its last run
+	public Project run(String datasetName, String gitUrl, Path filesStoragePath, Path repositoriesPath,
+			String firstCommitToProcess, String lastCommitToProcess, boolean storeFullSourceCode,
+			boolean resumeUnfinished, boolean updateFinished)
+			throws GitAPIException, IOException, InterruptedException {
 		filesStoragePath = filesStoragePath.resolve(extractProjectNameFromGitUrl(gitUrl)); // add
 		// project
 		// as
 		// subfolder
 
 		// creates a temp dir to store the project
-		Path clonePath = (JGitUtils.isLocal(gitUrl) ? Paths.get(gitUrl)
-				: repositoriesPath.resolve(extractProjectNameFromGitUrl(gitUrl)));
-
-		// do not run if the project is already in the database
-		if (Project.projectExists(gitUrl)) {
-			String message = String.format("Project %s already in the database", gitUrl);
-			throw new IllegalArgumentException(message);
+		Path clonePath = JGitUtils.getClonePath(gitUrl, repositoriesPath);
+
+		// do not run if the project is already in the database, unless it can be continued from its checkpoint
+		Optional<Project> existingProject = Project.findByGitUrl(gitUrl);
+		ProjectCheckpoint checkpoint = null;
+		boolean update = false;
+		if (existingProject.isPresent()) {
+			Project existing = existingProject.get();
+			update = existing.finishedDate != null;
+			boolean continueExisting = update ? updateFinished : resumeUnfinished;
+			Path checkpointFile = ProjectCheckpoint.path(checkpointsPath(), existing);
+			if (!continueExisting || !Files.exists(checkpointFile)) {
+				String message = String.format("Project %s already in the database", gitUrl);
+				// the PMDatabase could only be rebuilt by mining the whole history again
+				if (continueExisting)
+					message += " without a checkpoint to continue from";
+				throw new IllegalArgumentException(message);
+			}
+			checkpoint = ProjectCheckpoint.read(checkpointFile, existing, newPMDatabase(existing));
 		}
 
 		long startProjectTime = System.currentTimeMillis();
@@ -110,56 +276,125 @@ public class AppBean {
 
 		Git git = initGitRepository(clonePath, gitUrl);
 		String mainBranch = discoverMainBranch(git);
-
-		Project project = initProject(clonePath, git, gitUrl, datasetName);
-		log.debug("Created project for analysis: " + project.toString());
-		persistAndFlushInTransaction(project);
+		if (update)
+			updateGitRepository(git, mainBranch);
+		// the only pass over the whole history, all commits are looked up in the index afterwards
+		CommitIndex commitIndex = CommitIndex.build(git.getRepository(), mainBranch);
+
+		Project project;
+		if (checkpoint == null) {
+			project = initProject(clonePath, git, commitIndex, gitUrl, datasetName);
+			log.debug("Created project for analysis: " + project.toString());
+			persistAndFlushInTransaction(project);
+		} else {
+			project = checkpoint.getProject();
+			if (update) {
+				project.lastCommitHash = getHead(git);
+				project.commits = commitIndex.size();
+				// until the new commits are mined, the project can be resumed like any unfinished one
+				project.finishedDate = null;
+				mergeInTransaction(project);
+			}
+			// the rows of commits processed after the checkpoint are stored again
+			deleteRowsAfterInTransaction(project, checkpoint.getMaxRowId());
+			project.exceptionsCount = checkpoint.getExceptionsCount();
+			log.info((update ? "Updating" : "Resuming") + " project " + gitUrl + " after commit "
+					+ checkpoint.getLastCommitHash() + " (number " + checkpoint.getLastCommitNumber() + ")");
+		}
 
 		// get all necessary objects to analyze the commits
-		GitHistoryRefactoringMiner miner = new GitHistoryRefactoringMinerImpl();
-		PMDatabase pmDatabase = new PMDatabase();
+		// RefactoringMiner is used by several mining threads, so every thread gets its own instance
+		ThreadLocal<GitHistoryRefactoringMiner> miners = ThreadLocal.withInitial(GitHistoryRefactoringMinerImpl::new);
+		ProcessMetricsDatabase pmDatabase = checkpoint == null ? newPMDatabase(project) : checkpoint.getPmDatabase();
 		var repository = git.getRepository();
-		final RefactoringAnalyzer refactoringAnalyzer = new RefactoringAnalyzer(project, repository,
-				filesStoragePath.toString(), storeFullSourceCode);
-		final ProcessMetricsCollector processMetrics = new ProcessMetricsCollector(project, repository, pmDatabase,
-				filesStoragePath);
+		BatchPersister batchPersister = new BatchPersister(persistenceFlushSize,
+				new MetricRegistry(metricRegistrySize));
+		// the files are only read by this thread, when the results of the mining threads are applied
+		final BlobReader blobReader = new BlobReader(repository, blobReaderCachedCommits);
+		final RefactoringAnalyzer refactoringAnalyzer = new RefactoringAnalyzer(project, blobReader,
+				filesStoragePath.toString(), storeFullSourceCode, ckResultCache, batchPersister);
+		final LineChurnCalculator lineChurnCalculator = new LineChurnCalculator(blobReader, churnMaxLines,
+				churnCacheSize);
+		final ProcessMetricsCollector processMetrics = new ProcessMetricsCollector(project, blobReader, pmDatabase,
+				filesStoragePath, ckResultCache, batchPersister, lineChurnCalculator);
+
+		// The commits are processed in two stages: a pool of mining threads runs RefactoringMiner and computes the
+		// diffs for a window of upcoming commits, while this thread applies the results in commit order to the
+		// PMDatabase and the database.
+		ExecutorService minerPool = Executors.newFixedThreadPool(Math.max(1, pipelineMinerThreads));
+		Deque<ImmutablePair<RevCommit, Future<MinedCommit>>> pendingCommits = new ArrayDeque<>();
 
 		// get all commits in the repo, and to each commit with a refactoring, extract
 		// the metrics
-		try (RevWalk walk = JGitUtils.getReverseWalk(repository, mainBranch);
-				var diffFormatter = JGitUtils.createDiffFormatter(repository)) {
-			RevCommit currentCommit = walk.next();
+		try (blobReader; RevWalk walk = new RevWalk(repository)) {
+			// the commits are parsed one at a time, only the ones in the pipeline keep their message
+			walk.setRetainBody(false);
 			log.info("Start mining project " + gitUrl + "(clone at " + clonePath + ")");
 
-			boolean firstCommitFound = firstCommitToProcess == null;
+			// without the first commit to process in the history, nothing is processed
+			int firstCommit = firstCommitToProcess == null ? 0 : commitIndex.indexOf(firstCommitToProcess);
+			if (firstCommit < 0)
+				firstCommit = commitIndex.size();
+			// without the last commit to process after the first one, everything up to the end is processed
+			int lastCommit = lastCommitToProcess == null ? -1 : commitIndex.indexOf(lastCommitToProcess);
+			if (lastCommit < firstCommit)
+				lastCommit = commitIndex.size() - 1;
 			int commitNumber = 1;
+			// when resuming, skip all commits up to the one of the checkpoint
+			if (checkpoint != null) {
+				int checkpointCommit = commitIndex.indexOf(checkpoint.getLastCommitHash());
+				if (checkpointCommit < firstCommit)
+					throw new IllegalStateException(
+							String.format("Commit %s of the checkpoint of project %s is not on the main branch anymore",
+									checkpoint.getLastCommitHash(), gitUrl));
+				firstCommit = checkpointCommit + 1;
+				commitNumber = checkpoint.getLastCommitNumber() + 1;
+			}
+			int commitsSinceCheckpoint = 0;
+			// the commit the PMDatabase is at, for the final checkpoint
+			String lastAppliedCommit = checkpoint == null ? null : checkpoint.getLastCommitHash();
+			int lastAppliedCommitNumber = commitNumber - 1;
+			// whether the last commit was applied, see checkpointIfDue
+			boolean lastApplied = true;
 			// we only analyze commits that have one parent or the first commit with 0
 			// parents
-			for (boolean endFound = false; currentCommit != null && !endFound; currentCommit = walk.next()) {
-				String commitHash = currentCommit.getId().getName();
-
-				// only start the analysis once the firstCommitHash was found
-				firstCommitFound = firstCommitFound || commitHash.equals(firstCommitToProcess);
-				if (!firstCommitFound)
-					continue;
-
-				// did we find the last commit to process?
-				// if so, process it and then stop
-				if (commitHash.equals(lastCommitToProcess))
-					endFound = true;
-
+			for (int i = firstCommit; i <= lastCommit; i++) {
 				// i.e., ignore merge commits
-				if (currentCommit.getParentCount() > 1)
+				if (commitIndex.getParentCount(i) > 1)
 					continue;
 
-				try {
-					processCommit(currentCommit, commitNumber, miner, refactoringAnalyzer, processMetrics, git, project,
-							diffFormatter);
-				} catch (Exception e) {
-					log.errorf(e, "Could not process commit %s on project %s", currentCommit, project);
-				}
+				final RevCommit commitToMine = commitIndex.parseCommit(walk, i);
+				final int commitNumberToMine = commitNumber;
+				pendingCommits.add(new ImmutablePair<>(commitToMine, minerPool
+						.submit(() -> mineCommit(commitToMine, commitNumberToMine, miners.get(), git, project))));
 				commitNumber += 1;
+
+				// the window is full, so we wait for the oldest commit and apply it
+				if (pendingCommits.size() >= Math.max(1, pipelineWindow)) {
+					var pendingCommit = pendingCommits.poll();
+					lastApplied = applyNextCommit(pendingCommit, refactoringAnalyzer, processMetrics,
+							batchPersister, project);
+					lastAppliedCommit = pendingCommit.getLeft().getName();
+					commitsSinceCheckpoint = checkpointIfDue(++commitsSinceCheckpoint, lastApplied, lastAppliedCommit,
+							++lastAppliedCommitNumber, project, pmDatabase);
+				}
 			}
+
+			while (!pendingCommits.isEmpty()) {
+				var pendingCommit = pendingCommits.poll();
+				lastApplied = applyNextCommit(pendingCommit, refactoringAnalyzer, processMetrics, batchPersister,
+						project);
+				lastAppliedCommit = pendingCommit.getLeft().getName();
+				commitsSinceCheckpoint = checkpointIfDue(++commitsSinceCheckpoint, lastApplied, lastAppliedCommit,
+						++lastAppliedCommitNumber, project, pmDatabase);
+			}
+
+			// the final checkpoint is where the next update of the project starts, unless checkpoints are disabled,
+			// the last commit failed or the last checkpoint is at the last commit already
+			if (lastAppliedCommit != null && checkpointInterval > 0 && lastApplied && commitsSinceCheckpoint > 0)
+				writeCheckpoint(lastAppliedCommit, lastAppliedCommitNumber, project, pmDatabase);
+		} finally {
+			minerPool.shutdownNow();
 		}
 		// set finished data
 		// note that if this process crashes, finished date will be equals to null in
@@ -169,6 +404,11 @@ public class AppBean {
 		// project.exceptionsCount = exceptionsCount;
 		mergeInTransaction(project);
 
+		log.info("Referenced already stored class and method metrics " + batchPersister.getMetricRegistry().getReused()
+				+ " times instead of storing them again for project " + gitUrl);
+		if (lineChurnCalculator.getApproximated() > 0)
+			log.info("Approximated the lines changed in " + lineChurnCalculator.getApproximated()
+					+ " changes of files with more than " + churnMaxLines + " lines for project " + gitUrl);
 		logProjectStatistics(startProjectTime, project, gitUrl);
 		return project;
 	}
@@ -181,114 +421,240 @@ public class AppBean {
 	// Returns the jgit repository object and the git object
 	private Git initGitRepository(Path clonePath, String gitUrl) throws GitAPIException, IOException {
 		try {
-			return Git.open(clonePath.resolve(".git").toFile());
+			// opens both clones with a working tree and bare clones
+			return Git.open(clonePath.toFile());
 		} catch (RepositoryNotFoundException rnfe) {
-			CloneCommand command = Git.cloneRepository().setCloneAllBranches(true).setDirectory(clonePath.toFile())
-					.setURI(gitUrl);
-			if (gitUsername.isPresent() && gitPassword.isPresent()) {
-				command.setCredentialsProvider(
-						new UsernamePasswordCredentialsProvider(gitUsername.get(), gitPassword.get()));
+			if (useSharedObjectStore)
+				return sharedObjectStore(clonePath.getParent()).cloneRepository(gitUrl, clonePath, cloneBare,
+						credentialsProvider());
+			return JGitUtils.cloneRepository(gitUrl, clonePath, cloneBare, credentialsProvider());
+		}
+	}
+
+	private SharedObjectStore sharedObjectStore(Path repositoriesPath) {
+		return sharedObjectStores.computeIfAbsent(repositoriesPath.toAbsolutePath(), path -> {
+			try {
+				return new SharedObjectStore(path.resolve(".shared-objects.git"));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
 			}
-			return command.call();
+		});
+	}
 
-		}
+	// Clone the repository of the project, unless it is local or cloned already, e.g. to prefetch it before it is
+	// mined
+	public void cloneRepository(String gitUrl, Path repositoriesPath) throws GitAPIException, IOException {
+		if (JGitUtils.isLocal(gitUrl))
+			return;
+		initGitRepository(JGitUtils.getClonePath(gitUrl, repositoriesPath), gitUrl).close();
+	}
+
+	// null if no credentials are configured
+	private CredentialsProvider credentialsProvider() {
+		if (gitUsername.isPresent() && gitPassword.isPresent())
+			return new UsernamePasswordCredentialsProvider(gitUsername.get(), gitPassword.get());
+		return null;
+	}
+
+	// Create a diff formatter with the configured diff mode and rename detection limits
+	private DiffFormatter diffFormatter(Repository repository) {
+		TreeFilter pathFilter = diffJavaOnly ? new JavaFileFilter(diffExclude.orElse(List.of())) : TreeFilter.ALL;
+		return JGitUtils.createDiffFormatter(repository, pathFilter, diffRenameLimit, diffRenameScore);
 	}
 
 	// Initialize the project object for this run
-	private Project initProject(Path clonePath, Git git, String gitUrl, String datasetName)
+	private Project initProject(Path clonePath, Git git, CommitIndex commitIndex, String gitUrl, String datasetName)
 			throws GitAPIException, IOException {
-		CounterResult counterResult = CounterUtils.countProductionAndTestFiles(clonePath);
-		createDiffFormatter(git.getRepository());
+		Repository repository = git.getRepository();
+		// a bare clone only has the files in its object database
+		CounterResult counterResult = repository.isBare()
+				? CounterUtils.countProductionAndTestFiles(repository, repository.resolve(Constants.HEAD))
+				: CounterUtils.countProductionAndTestFiles(clonePath);
+		createDiffFormatter(repository);
 		long projectSize = -1;
 		try {
+			// for a bare clone, this is the size of its object database
 			projectSize = FileUtils.sizeOfDirectory(clonePath.toFile());
 		} catch (IllegalArgumentException e) {
 			log.info("For project: " + gitUrl + " the project size could not be determined.", e);
 		}
-		int numberOfCommits = JGitUtils.numberOfCommits(git);
+		int numberOfCommits = commitIndex.size();
 		String lastCommitHash = getHead(git);
 		String projectName = extractProjectNameFromGitUrl(gitUrl);
 		return new Project(datasetName, gitUrl, projectName, Calendar.getInstance(), numberOfCommits,
 				stableCommitThresholds, lastCommitHash, counterResult, projectSize);
 	}
 
-	private void processCommit(RevCommit currentCommit, int commitNumber, GitHistoryRefactoringMiner miner,
-			RefactoringAnalyzer refactoringAnalyzer, ProcessMetricsCollector processMetrics, Git git, Project project,
-			DiffFormatter diffFormatter) {
+	private Path checkpointsPath() {
+		return storagePath.resolve("checkpoints");
+	}
+
+	private ProcessMetricsDatabase newPMDatabase(Project project) {
+		return pmDatabaseColumnar ? new ColumnarPMDatabase(project, project.commitCountThresholdsInt)
+				: new PMDatabase(project.commitCountThresholdsInt);
+	}
+
+	// Write a checkpoint after the given commit once checkpointInterval commits were processed since the last one.
+	// Commits that failed are not checkpointed, as the PMDatabase might not match the database after them.
+	// Returns the amount of commits processed since the last checkpoint.
+	private int checkpointIfDue(int commitsSinceCheckpoint, boolean applied, String commitHash, int commitNumber,
+			Project project, ProcessMetricsDatabase pmDatabase) {
+		if (checkpointInterval <= 0 || !applied || commitsSinceCheckpoint < checkpointInterval)
+			return commitsSinceCheckpoint;
+		return writeCheckpoint(commitHash, commitNumber, project, pmDatabase) ? 0 : commitsSinceCheckpoint;
+	}
+
+	private boolean writeCheckpoint(String commitHash, int commitNumber, Project project,
+			ProcessMetricsDatabase pmDatabase) {
+		try {
+			new ProjectCheckpoint(project, commitHash, commitNumber, project.exceptionsCount,
+					maxRowIdInTransaction(project), pmDatabase)
+					.write(ProjectCheckpoint.path(checkpointsPath(), project));
+			return true;
+		} catch (IOException | RuntimeException e) {
+			log.error("Could not write a checkpoint for project " + project.gitUrl + " after commit " + commitHash, e);
+			return false;
+		}
+	}
+
+	// Fetch the new commits of the main branch and move the clone to them. Local repositories without a remote are
+	// used as they are. The fetch of a bare clone already moves its branches.
+	private void updateGitRepository(Git git, String mainBranch) throws GitAPIException {
+		if (git.getRepository().getRemoteNames().isEmpty())
+			return;
+
+		JGitUtils.withCredentials(git.fetch(), credentialsProvider()).call();
+		if (git.getRepository().isBare())
+			return;
+		git.reset().setMode(ResetCommand.ResetType.HARD).setRef(Constants.DEFAULT_REMOTE_NAME + "/" + mainBranch)
+				.call();
+	}
+
+	// Wait for the mining stage of the given commit and apply its results.
+	// Returns whether the commit could be processed.
+	private boolean applyNextCommit(ImmutablePair<RevCommit, Future<MinedCommit>> pendingCommit,
+			RefactoringAnalyzer refactoringAnalyzer, ProcessMetricsCollector processMetrics,
+			BatchPersister batchPersister, Project project) throws InterruptedException {
+		try {
+			return processCommit(pendingCommit.getLeft(), pendingCommit.getRight(), refactoringAnalyzer,
+					processMetrics, batchPersister, project);
+		} catch (InterruptedException e) {
+			throw e;
+		} catch (Exception e) {
+			log.errorf(e, "Could not process commit %s on project %s", pendingCommit.getLeft(), project);
+			return false;
+		} finally {
+			// later commits only need the id and tree of this one, as their parent
+			pendingCommit.getLeft().disposeBody();
+		}
+	}
+
+	// Runs in the mining stage: computes everything for the given commit that does
+	// not depend on the PMDatabase or the database.
+	private MinedCommit mineCommit(RevCommit currentCommit, int commitNumber, GitHistoryRefactoringMiner miner,
+			Git git, Project project) throws IOException {
+		String commitHash = currentCommit.getId().getName();
+		// stores the commit meta data
+		CommitMetaData superCommitMetaData = new CommitMetaData(currentCommit, commitNumber, project);
+		superCommitMetaData.messageCategories = commitMessageClassifier.classify(superCommitMetaData.commitMessage);
+		List<DiffEntry> entries;
+		try (var diffFormatter = diffFormatter(git.getRepository())) {
+			entries = calculateDiffEntries(currentCommit, diffFormatter);
+		}
+		// Note that we only run it if the commit has a parent, i.e, skip the first
+		// commit of the repo
+		if (isFirst(currentCommit))
+			return new MinedCommit(currentCommit, superCommitMetaData, entries, null, false);
+
+		// mined before, e.g. for a fork of this project
+		List<Refactoring> cachedRefactorings = refactoringMinerCache.get(currentCommit);
+		if (cachedRefactorings != null)
+			return new MinedCommit(currentCommit, superCommitMetaData, entries, cachedRefactorings, false);
+
+		var handler = new RefactoringHandlerImpl(project);
+		long startTimeRMiner = System.currentTimeMillis();
+		//TODO make separate timeout value for RM
+		miner.detectAtCommit(git.getRepository(), commitHash, handler, cKTimeoutInSeconds);
+		log.debug("Refactoring miner took " + (System.currentTimeMillis() - startTimeRMiner)
+				+ " milliseconds to mine the commit: " + commitHash);
+
+		// if timeout has happened, refactoringsToProcess and commitIdToProcess will be
+		// null
+		if (handler.isRefactoringToProcess()) {
+			// remove all not studied refactorings from the list
+			handler.refactoringsToProcess = handler.refactoringsToProcess.stream()
+					.filter(RefactoringUtils::isStudied).collect(Collectors.toList());
+		}
+		if (!handler.failed && handler.commitIdToProcess != null && handler.refactoringsToProcess != null)
+			refactoringMinerCache.put(currentCommit, handler.refactoringsToProcess);
+		return new MinedCommit(currentCommit, superCommitMetaData, entries, handler.refactoringsToProcess,
+				handler.failed);
+	}
+
+	// Returns whether the commit could be processed
+	private boolean processCommit(RevCommit currentCommit, Future<MinedCommit> minedCommit,
+			RefactoringAnalyzer refactoringAnalyzer, ProcessMetricsCollector processMetrics,
+			BatchPersister batchPersister, Project project) throws InterruptedException {
 		long startCommitTime = System.currentTimeMillis();
 		String commitHash = currentCommit.getId().getName();
+		boolean processed = false;
 		try {
-			processCommitTransaction(currentCommit, commitNumber, miner, refactoringAnalyzer, processMetrics,
-					commitHash, git, project, diffFormatter);
-		} catch (RuntimeException e) {
-			project.exceptionsCount++;
-			log.warn("Unhandled exception when collecting commit data for commit: " + commitHash
-					+ createErrorState(commitHash, project), e);
-		} catch (MissingObjectException moe) {
-			project.exceptionsCount++;
-			log.debug("Missing commit", moe);
-		} catch (IOException ioe) {
-			project.exceptionsCount++;
-			log.warn("Not caught IOE ocurred", ioe);
+			MinedCommit mined = minedCommit.get();
+			if (mined.isMinerFailed())
+				project.exceptionsCount++;
+			try {
+				processCommitTransaction(mined, refactoringAnalyzer, processMetrics);
+				batchPersister.afterCommit();
+				processed = true;
+			} catch (RuntimeException | IOException e) {
+				batchPersister.afterRollback();
+				throw e;
+			}
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			handleCommitException(e.getCause(), commitHash, project);
+		} catch (RuntimeException | IOException e) {
+			handleCommitException(e, commitHash, project);
 		}
 		long elapsedCommitTime = System.currentTimeMillis() - startCommitTime;
 		log.debug("Processing commit " + commitHash + " took " + elapsedCommitTime + " milliseconds.");
+		return processed;
+	}
+
+	private void handleCommitException(Throwable e, String commitHash, Project project) {
+		project.exceptionsCount++;
+		if (e instanceof MissingObjectException) {
+			log.debug("Missing commit", e);
+		} else if (e instanceof IOException) {
+			log.warn("Not caught IOE ocurred", e);
+		} else {
+			log.warn("Unhandled exception when collecting commit data for commit: " + commitHash
+					+ createErrorState(commitHash, project), e);
+		}
 	}
 
 	@Transactional
 	@TransactionConfiguration(timeout = Integer.MAX_VALUE)
-	public void processCommitTransaction(RevCommit currentCommit, int commitNumber, GitHistoryRefactoringMiner miner,
-			RefactoringAnalyzer refactoringAnalyzer, ProcessMetricsCollector processMetrics, String commitHash, Git git,
-			Project project, DiffFormatter diffFormatter) throws IOException {
-		var handler = new RefactoringHandlerImpl(git, project);
+	public void processCommitTransaction(MinedCommit minedCommit, RefactoringAnalyzer refactoringAnalyzer,
+			ProcessMetricsCollector processMetrics) throws IOException {
+		RevCommit currentCommit = minedCommit.getCommit();
+		CommitMetaData superCommitMetaData = minedCommit.getCommitMetaData();
+		List<DiffEntry> entries = minedCommit.getEntries();
 		// stores all the ck metrics for the current commit
 		List<RefactoringCommit> allRefactoringCommits = new ArrayList<>();
-		// stores the commit meta data
-		CommitMetaData superCommitMetaData = new CommitMetaData(currentCommit, commitNumber, project);
-		List<DiffEntry> entries = calculateDiffEntries(currentCommit, diffFormatter);
-		// Note that we only run it if the commit has a parent, i.e, skip the first
-		// commit of the repo
-		if (!isFirst(currentCommit)) {
-			long startTimeRMiner = System.currentTimeMillis();
-			//TODO make separate timeout value for RM
-			miner.detectAtCommit(git.getRepository(), commitHash, handler, cKTimeoutInSeconds);
-			log.debug("Refactoring miner took " + (System.currentTimeMillis() - startTimeRMiner)
-					+ " milliseconds to mine the commit: " + commitHash);
-
-			// if timeout has happened, refactoringsToProcess and commitIdToProcess will be
-			// null
-			if (handler.isRefactoringToProcess()) {
-				// remove all not studied refactorings from the list
-				handler.refactoringsToProcess = handler.refactoringsToProcess.stream()
-						.filter(RefactoringUtils::isStudied).collect(Collectors.toList());
-			}
-			// check if refactoring miner detected a refactoring we study
-			if (handler.isRefactoringToProcess() && !handler.refactoringsToProcess.isEmpty()) {
-				allRefactoringCommits = refactoringAnalyzer.collectCommitData(currentCommit, superCommitMetaData,
-						handler.refactoringsToProcess, entries, cKTimeoutInSeconds);
-			}
-			// else if (handler.isRefactoringToProcess()) {
-			// // timeout happened, so count it as an exception
-			// log.debug("Refactoring Miner did not find any refactorings for commit: " +
-			// commitHash
-			// + createErrorState(commitHash, project));
-			// } else {
-			// // timeout happened, so count it as an exception
-			// log.error("Refactoring Miner timed out for commit: " + commitHash
-			// + createErrorState(commitHash, project));
-			// project.exceptionsCount++;
-			// }
+		// check if refactoring miner detected a refactoring we study
+		if (minedCommit.hasRefactorings()) {
+			allRefactoringCommits = refactoringAnalyzer.collectCommitData(currentCommit, superCommitMetaData,
+					minedCommit.getRefactorings(), entries, cKTimeoutInSeconds);
 		}
 
 		// collect the process metrics for the current commit
 		Set<ImmutablePair<String, String>> refactoringRenames = getRefactoringMinerRenames(
-				handler.refactoringsToProcess);
+				minedCommit.getRefactorings());
 		Set<ImmutablePair<String, String>> jGitRenames = getJGitRenames(entries);
 		processMetrics.collectMetrics(currentCommit, superCommitMetaData, allRefactoringCommits, entries,
-				refactoringRenames, jGitRenames, diffFormatter, cKTimeoutInSeconds);
-		long startTimeTransaction = System.currentTimeMillis();
-		log.debug("Committing the transaction for commit " + commitHash + " took "
-				+ (System.currentTimeMillis() - startTimeTransaction) + " milliseconds.");
+				refactoringRenames, jGitRenames, cKTimeoutInSeconds);
 	}
 
 	private static final Set<RefactoringType> REFACTORINGMINER_1_TYPES = Set.of(RefactoringType.EXTRACT_OPERATION,
@@ -304,15 +670,14 @@ public class AppBean {
 
 		private String commitIdToProcess;
 		private List<Refactoring> refactoringsToProcess;
-		private final Git git;
+		// set if RefactoringMiner could not handle the commit, counted once the commit is applied
+		private boolean failed;
 		private final Project project;
 
 		/**
-		 * @param git
 		 * @param project
 		 */
-		private RefactoringHandlerImpl(Git git, Project project) {
-			this.git = git;
+		private RefactoringHandlerImpl(Project project) {
 			this.project = project;
 		}
 
@@ -335,18 +700,10 @@ public class AppBean {
 
 		@Override
 		public void handleException(String commitId, Exception e) {
-			project.exceptionsCount++;
+			failed = true;
 			log.error("RefactoringMiner could not handle commit: " + commitId + createErrorState(commitId, project), e);
-			resetGitRepo();
-		}
-
-		private void resetGitRepo() {
-			try {
-				git.reset().setMode(ResetCommand.ResetType.HARD).call();
-			} catch (GitAPIException e1) {
-				log.error("Reset failed for repository: " + project.gitUrl + " after a commit couldn't be handled."
-						+ createErrorState("UNK", project), e1);
-			}
+			// RefactoringMiner reads the commits from the object database, the working tree shared by the mining
+			// threads is left as it is
 		}
 
 	}
@@ -366,6 +723,14 @@ public class AppBean {
 			statistics.append("\n\t\tFound ").append(stableInstancesCount)
 					.append(" stable instances in the project with threshold: ").append(threshold);
 		}
+		statistics.append("\nCK results reused from the cache so far: ").append(ckResultCache.getHits())
+				.append(" of ").append(ckResultCache.getHits() + ckResultCache.getMisses()).append(" files.");
+		statistics.append("\nRefactoringMiner results reused from the cache so far: ")
+				.append(refactoringMinerCache.getHits()).append(" of ")
+				.append(refactoringMinerCache.getHits() + refactoringMinerCache.getMisses()).append(" commits.");
+		statistics.append("\nCK workers currently stuck on a timed out file: ")
+				.append(CKUtils.getWorkerPool().getStuckWorkers()).append(" (")
+				.append(CKUtils.getWorkerPool().getQuarantinedTasks()).append(" timed out files so far).");
 		statistics.append("\n").append(project.toString());
 		log.info(statistics);
 	}
@@ -379,4 +744,14 @@ public class AppBean {
 	public void mergeInTransaction(Project project) {
 		project.merge();
 	}
+
+	@Transactional
+	public long maxRowIdInTransaction(Project project) {
+		return project.maxRowId();
+	}
+
+	@Transactional
+	public void deleteRowsAfterInTransaction(Project project, long rowId) {
+		project.deleteRowsAfter(rowId);
+	}
 }
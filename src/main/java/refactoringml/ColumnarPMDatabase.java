@@ -0,0 +1,414 @@
+package refactoringml;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+import com.google.common.base.Preconditions;
+
+import refactoringml.db.ProcessMetrics;
+import refactoringml.db.Project;
+import refactoringml.util.CommitMessageClassifier.Category;
+import refactoringml.util.FileUtils;
+import refactoringml.util.IntIntMap;
+import refactoringml.util.LogUtils;
+import refactoringml.util.PathTrie;
+
+// A ProcessMetricsDatabase for repositories with very many class files. Instead of a ProcessMetricTracker with two
+// ProcessMetrics entities per file, every file gets a dense id and the counters of its base and current process
+// metrics are stored in primitive columns at that id. The commits of the authors of a file are counted in an
+// IntIntMap, shared by its base and current metrics until the file changes again, and the base commits are shared
+// by all files referring to them.
+// Trackers are only created when a file passes a commit threshold or is looked up. They are snapshots, changing them
+// does not change the database.
+// Like the StabilityIndex of PMDatabase, the ids of the files passing one of the commit thresholds are kept in a bit
+// set per threshold, updated with every change of a file.
+public class ColumnarPMDatabase implements ProcessMetricsDatabase {
+
+	// the counters of the ProcessMetrics, one column each
+	private static final int QTY_OF_COMMITS = 0;
+	private static final int LINES_ADDED = 1;
+	private static final int LINES_DELETED = 2;
+	private static final int BUG_FIX_COUNT = 3;
+	private static final int REFACTORINGS_INVOLVED = 4;
+	private static final int COUNTERS = 5;
+
+	// the authors of new files, it is copied before the first author is added
+	private static final IntIntMap NO_AUTHORS = new IntIntMap();
+	private static final int NO_COMMIT = -1;
+
+	private final Project project;
+
+	private final PathTrie<Integer> fileIds = new PathTrie<>();
+	// the ids of removed files, reused by the next new files
+	private final Deque<Integer> freeFileIds = new ArrayDeque<>();
+	private int usedFileIds;
+
+	// the columns, indexed by the id of the file
+	private String[] fileNames;
+	private final int[][] baseCounters = new int[COUNTERS][];
+	private final int[][] currentCounters = new int[COUNTERS][];
+	private int[] currentCommitThresholds;
+	private int[] baseCommits;
+	private IntIntMap[] baseAuthors;
+	private IntIntMap[] currentAuthors;
+
+	// the base commits of the files, with the amount of files referring to each
+	private final List<CommitHandle> commits = new ArrayList<>();
+	private final Map<CommitHandle, Integer> commitIds = new IdentityHashMap<>();
+	private final Deque<Integer> freeCommitIds = new ArrayDeque<>();
+	private int[] commitReferences = new int[64];
+
+	// the ids of the files passing each commit threshold, at the index of the threshold
+	private List<Integer> commitThresholds;
+	private BitSet[] stableFiles;
+
+	public ColumnarPMDatabase(Project project) {
+		this(project, List.of());
+	}
+
+	public ColumnarPMDatabase(Project project, List<Integer> commitThresholds) {
+		this(project, 1024, commitThresholds);
+	}
+
+	public ColumnarPMDatabase(Project project, int expectedFiles) {
+		this(project, expectedFiles, List.of());
+	}
+
+	// The files are indexed by the given commit thresholds, e.g. the ones of the project
+	public ColumnarPMDatabase(Project project, int expectedFiles, List<Integer> commitThresholds) {
+		this.project = Preconditions.checkNotNull(project);
+		int capacity = Math.max(16, expectedFiles);
+		fileNames = new String[capacity];
+		for (int counter = 0; counter < COUNTERS; counter++) {
+			baseCounters[counter] = new int[capacity];
+			currentCounters[counter] = new int[capacity];
+		}
+		currentCommitThresholds = new int[capacity];
+		baseCommits = new int[capacity];
+		baseAuthors = new IntIntMap[capacity];
+		currentAuthors = new IntIntMap[capacity];
+		indexStability(commitThresholds);
+	}
+
+	@Override
+	public ProcessMetricTracker find(String fileName) {
+		Integer file = fileIds.get(fileName);
+		return file == null ? null : tracker(file);
+	}
+
+	// Same as PMDatabase.renameFile, the entry of the file keeps its id. Like the moved tracker there, the renamed
+	// file has not passed any commit threshold yet.
+	@Override
+	public ProcessMetricTracker renameFile(String oldFileName, String newFileName, CommitHandle commit) {
+		checkFileName(newFileName, commit);
+		if (oldFileName.equals(newFileName)) {
+			throw new IllegalArgumentException("The old and new file name for a rename refactoring are both: "
+					+ oldFileName
+					+ LogUtils.createRefactoringErrorState(commit.getCommitId().name(), "Rename Refactoring"));
+		}
+
+		Integer file = fileIds.remove(oldFileName);
+		// If a filename already exists in the database, overwrite its process metrics with the renamed ones
+		Integer overwritten = fileIds.remove(newFileName);
+		if (overwritten != null)
+			release(overwritten);
+
+		if (file == null) {
+			newFile(newFileName, commit);
+			return null;
+		}
+		fileIds.put(newFileName, file);
+		fileNames[file] = newFileName;
+		currentCommitThresholds[file] = 0;
+		updateStability(file);
+		return tracker(file);
+	}
+
+	@Override
+	public boolean renameDirectory(String oldDirectory, String newDirectory) {
+		if (!fileIds.moveDirectory(oldDirectory, newDirectory))
+			return false;
+		fileIds.forEach(newDirectory, (fileName, file) -> {
+			fileNames[file] = fileName;
+			currentCommitThresholds[file] = 0;
+			updateStability(file);
+		});
+		return true;
+	}
+
+	@Override
+	public int countFiles(String directory) {
+		return fileIds.size(directory);
+	}
+
+	@Override
+	public ProcessMetricTracker removeFile(String fileName) {
+		Integer file = fileIds.remove(fileName);
+		if (file == null)
+			return null;
+		ProcessMetricTracker pmTracker = tracker(file);
+		release(file);
+		return pmTracker;
+	}
+
+	@Override
+	public ProcessMetricTracker reportChanges(String fileName, CommitHandle commit,
+			Set<Category> messageCategories, String authorName, int linesAdded, int linesDeleted,
+			List<Integer> commitThresholds) {
+		int file = file(fileName, commit);
+		currentCounters[QTY_OF_COMMITS][file]++;
+		currentCounters[LINES_ADDED][file] += linesAdded;
+		currentCounters[LINES_DELETED][file] += linesDeleted;
+		if (messageCategories.contains(Category.BUG_FIX))
+			currentCounters[BUG_FIX_COUNT][file]++;
+		if (currentAuthors[file] == baseAuthors[file])
+			currentAuthors[file] = new IntIntMap(currentAuthors[file]);
+		currentAuthors[file].add(project.authors.intern(authorName), 1);
+
+		int threshold = passedThreshold(file, commitThresholds);
+		if (threshold >= 0)
+			currentCommitThresholds[file] = threshold;
+		updateStability(file);
+		return threshold < 0 ? null : tracker(file);
+	}
+
+	@Override
+	public void reportRefactoring(String fileName, CommitHandle commit) {
+		int file = file(fileName, commit);
+		currentCounters[REFACTORINGS_INVOLVED][file]++;
+		currentCommitThresholds[file] = 0;
+
+		int oldBaseCommit = baseCommits[file];
+		baseCommits[file] = referenceCommit(commit);
+		releaseCommit(oldBaseCommit);
+		for (int counter = 0; counter < COUNTERS; counter++)
+			baseCounters[counter][file] = currentCounters[counter][file];
+		baseAuthors[file] = currentAuthors[file];
+		updateStability(file);
+	}
+
+	@Override
+	public List<ProcessMetricTracker> findStableInstances(List<Integer> commitThresholds, Integer commitThreshold) {
+		if (!this.commitThresholds.equals(commitThresholds))
+			indexStability(commitThresholds);
+
+		// the candidates are collected first, as a file counted as passed may move on to the bucket of a higher
+		// threshold
+		BitSet candidates = new BitSet();
+		for (int bucket = 0; bucket < stableFiles.length; bucket++) {
+			if (commitThreshold == null || commitThreshold.equals(this.commitThresholds.get(bucket)))
+				candidates.or(stableFiles[bucket]);
+		}
+		List<ProcessMetricTracker> stableInstances = new ArrayList<>();
+		for (int file = candidates.nextSetBit(0); file >= 0; file = candidates.nextSetBit(file + 1)) {
+			int threshold = passedThreshold(file, commitThresholds);
+			if (threshold >= 0 && (commitThreshold == null || threshold == commitThreshold)) {
+				currentCommitThresholds[file] = threshold;
+				stableInstances.add(tracker(file));
+			}
+			updateStability(file);
+		}
+		return stableInstances;
+	}
+
+	// Creates the tracker of a file only when it is visited, so they are not all kept at the same time
+	@Override
+	public void forEachTracker(Consumer<? super ProcessMetricTracker> action) {
+		fileIds.forEach((fileName, file) -> action.accept(tracker(file)));
+	}
+
+	// Every base commit is stored once for all files referring to it
+	@Override
+	public void forEachBaseCommit(Consumer<? super CommitHandle> action) {
+		for (CommitHandle commit : commits) {
+			if (commit != null)
+				action.accept(commit);
+		}
+	}
+
+	@Override
+	public void restore(ProcessMetricTracker pmTracker) {
+		Integer overwritten = fileIds.remove(pmTracker.getFileName());
+		if (overwritten != null)
+			release(overwritten);
+
+		int file = newFile(pmTracker.getFileName(), pmTracker.getBaseCommit());
+		ProcessMetrics base = pmTracker.getBaseProcessMetrics();
+		ProcessMetrics current = pmTracker.getCurrentProcessMetrics();
+		setCounters(baseCounters, file, base);
+		setCounters(currentCounters, file, current);
+		currentCommitThresholds[file] = pmTracker.getCommitCountThreshold();
+		Map<String, Integer> allBaseAuthors = base.getAllAuthors();
+		Map<String, Integer> allCurrentAuthors = current.getAllAuthors();
+		baseAuthors[file] = authorCommits(allBaseAuthors);
+		currentAuthors[file] = allBaseAuthors.equals(allCurrentAuthors) ? baseAuthors[file]
+				: authorCommits(allCurrentAuthors);
+		updateStability(file);
+	}
+
+	@Override
+	public int size() {
+		return fileIds.size();
+	}
+
+	@Override
+	public String toString() {
+		Map<String, ProcessMetricTracker> database = new TreeMap<>();
+		fileIds.forEach((fileName, file) -> database.put(fileName, tracker(file)));
+		return "ColumnarPMDatabase{" + "database=" + database.toString() + "}";
+	}
+
+	// The id of the file, a new file starts at the given commit
+	private int file(String fileName, CommitHandle commit) {
+		Integer file = fileIds.get(fileName);
+		if (file != null)
+			return file;
+		checkFileName(fileName, commit);
+		return newFile(fileName, commit);
+	}
+
+	// Same checks as a new ProcessMetricTracker
+	private static void checkFileName(String fileName, CommitHandle commit) {
+		if (FileUtils.fileDoesNotExist(fileName))
+			throw new IllegalArgumentException(fileName + " is an illegal file name for a class file.");
+		Preconditions.checkNotNull(commit.getProject());
+	}
+
+	private int newFile(String fileName, CommitHandle commit) {
+		int file;
+		if (freeFileIds.isEmpty()) {
+			if (usedFileIds == fileNames.length)
+				grow();
+			file = usedFileIds++;
+		} else {
+			file = freeFileIds.pop();
+		}
+
+		fileIds.put(fileName, file);
+		fileNames[file] = fileName;
+		for (int counter = 0; counter < COUNTERS; counter++) {
+			baseCounters[counter][file] = 0;
+			currentCounters[counter][file] = 0;
+		}
+		currentCommitThresholds[file] = 0;
+		baseCommits[file] = referenceCommit(commit);
+		baseAuthors[file] = NO_AUTHORS;
+		currentAuthors[file] = NO_AUTHORS;
+		updateStability(file);
+		return file;
+	}
+
+	// Frees the id of a file already removed from the file ids
+	private void release(int file) {
+		releaseCommit(baseCommits[file]);
+		fileNames[file] = null;
+		baseAuthors[file] = null;
+		currentAuthors[file] = null;
+		for (BitSet files : stableFiles)
+			files.clear(file);
+		freeFileIds.push(file);
+	}
+
+	// The commit threshold the file passes, see ProcessMetricTracker.passedThreshold
+	private int passedThreshold(int file, List<Integer> commitThresholds) {
+		int commitCounter = currentCounters[QTY_OF_COMMITS][file] - baseCounters[QTY_OF_COMMITS][file];
+		return ProcessMetricTracker.passedThreshold(commitCounter, currentCommitThresholds[file], commitThresholds);
+	}
+
+	// Index all files by the given commit thresholds
+	private void indexStability(List<Integer> commitThresholds) {
+		this.commitThresholds = List.copyOf(commitThresholds);
+		stableFiles = new BitSet[this.commitThresholds.size()];
+		for (int bucket = 0; bucket < stableFiles.length; bucket++)
+			stableFiles[bucket] = new BitSet();
+		fileIds.forEach((fileName, file) -> updateStability(file));
+	}
+
+	// Move the file to the bit set of the threshold it passes now, if any
+	private void updateStability(int file) {
+		int threshold = passedThreshold(file, commitThresholds);
+		int stableBucket = threshold < 0 ? -1 : commitThresholds.indexOf(threshold);
+		for (int bucket = 0; bucket < stableFiles.length; bucket++)
+			stableFiles[bucket].set(file, bucket == stableBucket);
+	}
+
+	private void grow() {
+		int capacity = fileNames.length * 2;
+		fileNames = Arrays.copyOf(fileNames, capacity);
+		for (int counter = 0; counter < COUNTERS; counter++) {
+			baseCounters[counter] = Arrays.copyOf(baseCounters[counter], capacity);
+			currentCounters[counter] = Arrays.copyOf(currentCounters[counter], capacity);
+		}
+		currentCommitThresholds = Arrays.copyOf(currentCommitThresholds, capacity);
+		baseCommits = Arrays.copyOf(baseCommits, capacity);
+		baseAuthors = Arrays.copyOf(baseAuthors, capacity);
+		currentAuthors = Arrays.copyOf(currentAuthors, capacity);
+	}
+
+	// The id of the commit, counting one more file referring to it
+	private int referenceCommit(CommitHandle commit) {
+		if (commit == null)
+			return NO_COMMIT;
+		Integer id = commitIds.get(commit);
+		if (id == null) {
+			if (freeCommitIds.isEmpty()) {
+				id = commits.size();
+				commits.add(commit);
+				if (id == commitReferences.length)
+					commitReferences = Arrays.copyOf(commitReferences, id * 2);
+			} else {
+				id = freeCommitIds.pop();
+				commits.set(id, commit);
+			}
+			commitIds.put(commit, id);
+		}
+		commitReferences[id]++;
+		return id;
+	}
+
+	// One file less refers to the commit, which is forgotten once no file refers to it
+	private void releaseCommit(int commit) {
+		if (commit == NO_COMMIT || --commitReferences[commit] > 0)
+			return;
+		commitIds.remove(commits.get(commit));
+		commits.set(commit, null);
+		freeCommitIds.push(commit);
+	}
+
+	private ProcessMetricTracker tracker(int file) {
+		CommitHandle baseCommit = baseCommits[file] == NO_COMMIT ? null : commits.get(baseCommits[file]);
+		return new ProcessMetricTracker(fileNames[file], baseCommit,
+				processMetrics(baseCounters, baseAuthors[file], file),
+				processMetrics(currentCounters, currentAuthors[file], file), currentCommitThresholds[file]);
+	}
+
+	private ProcessMetrics processMetrics(int[][] counters, IntIntMap authorCommits, int file) {
+		return new ProcessMetrics(counters[QTY_OF_COMMITS][file], counters[LINES_ADDED][file],
+				counters[LINES_DELETED][file], counters[BUG_FIX_COUNT][file], counters[REFACTORINGS_INVOLVED][file],
+				authorCommits, project);
+	}
+
+	private static void setCounters(int[][] counters, int file, ProcessMetrics processMetrics) {
+		counters[QTY_OF_COMMITS][file] = processMetrics.qtyOfCommits;
+		counters[LINES_ADDED][file] = processMetrics.linesAdded;
+		counters[LINES_DELETED][file] = processMetrics.linesDeleted;
+		counters[BUG_FIX_COUNT][file] = processMetrics.bugFixCount;
+		counters[REFACTORINGS_INVOLVED][file] = processMetrics.refactoringsInvolved;
+	}
+
+	private IntIntMap authorCommits(Map<String, Integer> allAuthors) {
+		IntIntMap authorCommits = new IntIntMap(allAuthors.size());
+		for (Map.Entry<String, Integer> author : allAuthors.entrySet())
+			authorCommits.add(project.authors.intern(author.getKey()), author.getValue());
+		return authorCommits;
+	}
+}
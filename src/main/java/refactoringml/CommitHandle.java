@@ -0,0 +1,63 @@
+package refactoringml;
+
+import java.io.IOException;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+
+import refactoringml.db.CommitMetaData;
+import refactoringml.db.Project;
+import refactoringml.util.BlobReader;
+
+// A commit as the trackers of the PMDatabase refer to it: its number and id, without the message, date and url of
+// a CommitMetaData. The CommitMetaData is only read from the repository when a stable instance based on the commit
+// is stored. All trackers based on the same commit share its handle, so that its CommitMetaData is stored once.
+public class CommitHandle {
+	private final int commitNumber;
+	private final ObjectId commitId;
+	private final Project project;
+	// the id of the CommitMetaData stored for this commit, if any
+	private Long commitMetaDataId;
+
+	public CommitHandle(int commitNumber, AnyObjectId commitId, Project project) {
+		this.commitNumber = commitNumber;
+		this.commitId = commitId.copy();
+		this.project = project;
+	}
+
+	// Same, for a commit whose CommitMetaData was stored already
+	public CommitHandle(CommitMetaData commitMetaData, AnyObjectId commitId) {
+		this(commitMetaData.commitNumber, commitId, commitMetaData.project);
+		this.commitMetaDataId = commitMetaData.id;
+	}
+
+	// Reads the commit with its message from the repository
+	public CommitMetaData toCommitMetaData(BlobReader blobReader) throws IOException {
+		return new CommitMetaData(blobReader.readCommit(commitId), commitNumber, project);
+	}
+
+	public int getCommitNumber() {
+		return commitNumber;
+	}
+
+	public ObjectId getCommitId() {
+		return commitId;
+	}
+
+	public Project getProject() {
+		return project;
+	}
+
+	public Long getCommitMetaDataId() {
+		return commitMetaDataId;
+	}
+
+	public void setCommitMetaDataId(Long commitMetaDataId) {
+		this.commitMetaDataId = commitMetaDataId;
+	}
+
+	@Override
+	public String toString() {
+		return "CommitHandle{" + "commit=" + commitId.name() + ", commitNumber=" + commitNumber + '}';
+	}
+}
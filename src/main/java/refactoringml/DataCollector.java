@@ -1,16 +1,9 @@
 package refactoringml;
 
-import java.io.File;
-import java.io.IOException;
+import java.io.BufferedReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.Callable;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import javax.inject.Inject;
 
@@ -18,7 +11,9 @@ import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 
 import io.quarkus.runtime.QuarkusApplication;
-import refactoringml.util.FileUtils;
+import refactoringml.db.RunLedgerEntry.State;
+import refactoringml.util.JGitUtils;
+import refactoringml.util.ProjectCostEstimator;
 
 public class DataCollector implements QuarkusApplication {
     private static final Logger log = Logger.getLogger(DataCollector.class);
@@ -34,18 +29,81 @@ public class DataCollector implements QuarkusApplication {
     @ConfigProperty(name = "input.csv.file", defaultValue = "input.csv")
     Path inputCsvFile;
 
-    @ConfigProperty(name = "failed.projects.file", defaultValue = "failedProjects.txt")
-    Path failedProjectsFile;
+    // Line of the input file to start at, e.g. to continue a crashed run
+    @ConfigProperty(name = "input.start.line", defaultValue = "1")
+    int inputStartLine;
+
+    // Amount of projects read from the input file and waiting for a free thread. The waiting projects are started
+    // in the order of their estimated cost, so a larger window gives a better order.
+    @ConfigProperty(name = "input.queue.size", defaultValue = "64")
+    int inputQueueSize;
+
+    // Amount of threads that only mine small projects
+    @ConfigProperty(name = "small.lane.threads", defaultValue = "1")
+    int smallLaneThreads;
+
+    // Projects with an estimated cost below this are small, the cost is about the amount of commits
+    @ConfigProperty(name = "small.project.cost", defaultValue = "500")
+    long smallProjectCost;
+
+    // Skip projects the run ledger records as done by an earlier run
+    @ConfigProperty(name = "skip.done.projects", defaultValue = "true")
+    boolean skipDoneProjects;
 
     @ConfigProperty(name = "store.full.souce.code", defaultValue = "false")
     boolean storeFullSourceCode;
 
+    // Continue unfinished projects from their last checkpoint instead of failing them
+    @ConfigProperty(name = "resume.unfinished.projects", defaultValue = "false")
+    boolean resumeUnfinishedProjects;
+
+    // Mine the new commits of finished projects, starting from the checkpoint at the end of their last run
+    @ConfigProperty(name = "update.finished.projects", defaultValue = "false")
+    boolean updateFinishedProjects;
+
+    // Adapt the amount of concurrently mined projects (at most thread.count) to the heap, CPU and GC load
+    @ConfigProperty(name = "admission.control", defaultValue = "true")
+    boolean admissionControl;
+
+    // Amount of concurrently mined projects to start with, raised up to thread.count while the CPU is not busy.
+    // Half of thread.count by default.
+    @ConfigProperty(name = "admission.initial.concurrency")
+    Optional<Integer> admissionInitialConcurrency;
+
+    // Share of the maximum heap the live data and the projected heap of running projects may use
+    @ConfigProperty(name = "admission.heap.fraction", defaultValue = "0.8")
+    double admissionHeapFraction;
+
+    // Heap every project is assumed to need at least, until the needs of mined projects are known
+    @ConfigProperty(name = "admission.min.project.heap.mb", defaultValue = "256")
+    long admissionMinProjectHeapMb;
+
+    // More projects are only started while the CPU load of the process is below this
+    @ConfigProperty(name = "admission.cpu.target", defaultValue = "0.8")
+    double admissionCpuTarget;
+
+    // Less projects are started while the share of time spent in garbage collection is above this
+    @ConfigProperty(name = "admission.gc.limit", defaultValue = "0.1")
+    double admissionGcLimit;
+
+    // Amount of repositories cloned at the same time ahead of the projects being mined, 0 to only clone the
+    // repository of a project once it is mined
+    @ConfigProperty(name = "prefetch.threads", defaultValue = "2")
+    int prefetchThreads;
+
+    // Disk space the prefetched clones may use, 0 for no limit. Clones of mined projects are deleted to stay within it.
+    @ConfigProperty(name = "prefetch.disk.budget.mb", defaultValue = "0")
+    long prefetchDiskBudgetMb;
+
     @ConfigProperty(name = "thread.count")
     Optional<Integer> threadCount;
 
     @Inject
     AppBean appBean;
 
+    @Inject
+    RunLedger runLedger;
+
     @Override
     public int run(String... args) throws Exception {
         // By default use amount of threads -1 so we can still use the underlying
@@ -54,79 +112,141 @@ public class DataCollector implements QuarkusApplication {
         var threadCountResolved = threadCount.orElse(Runtime.getRuntime().availableProcessors() > 1
                 ? Runtime.getRuntime().availableProcessors() - DEFAULT_THREAD_COUNT_REDUCE
                 : 1);
-        ThreadPoolExecutor tp = (ThreadPoolExecutor) Executors.newFixedThreadPool(threadCountResolved);
-        tp.setCorePoolSize(threadCountResolved);
-        List<RepoProcesser> tasks;
         Path repositoriesPathResolved = repositoriesPath.orElse(Files.createTempDirectory(null));
-        try (Stream<String> stream = Files.lines(inputCsvFile)) {
-            tasks = stream.map(line -> processorFromLine(line, repositoriesPathResolved)).collect(Collectors.toList());
+
+        // The input file is read lazily: a line is only read once a project started and there is room for it,
+        // so that huge input files neither fill the memory nor delay the first projects.
+        RunProgress progress = new RunProgress(inputStartLine);
+        AdmissionController admissionController = admissionControl
+                ? new AdmissionController(threadCountResolved,
+                        admissionInitialConcurrency.orElse((threadCountResolved + 1) / 2), admissionHeapFraction,
+                        admissionMinProjectHeapMb * 1024 * 1024, admissionCpuTarget, admissionGcLimit, 5)
+                : null;
+        // Repositories are cloned ahead by the prefetcher, so a project only reaches the scheduler once its clone
+        // is on disk and its cost can be estimated
+        RepositoryPrefetcher prefetcher = prefetchThreads > 0
+                ? new RepositoryPrefetcher(prefetchThreads, prefetchDiskBudgetMb * 1024 * 1024,
+                        repositoriesPathResolved, appBean::cloneRepository)
+                : null;
+        ProjectScheduler scheduler = new ProjectScheduler(threadCountResolved, smallLaneThreads, inputQueueSize,
+                smallProjectCost, project -> new RepoProcesser(project.getLine(), project.getLineNumber(), appBean,
+                        repositoriesPathResolved, progress, prefetcher).run(),
+                admissionController);
+        log.infof("Run %s records the state of its projects in the run ledger", runLedger.getRunId());
+        try (BufferedReader reader = Files.newBufferedReader(inputCsvFile)) {
+            int lineNumber = 0;
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lineNumber++;
+                if (lineNumber < inputStartLine)
+                    continue;
+                String[] repoInfoSplit = line.split(",");
+                if (repoInfoSplit.length < 3) {
+                    if (!line.isBlank())
+                        log.warnf("Skipping line %d of the input file, it has no project: %s", lineNumber, line);
+                    progress.skipped(lineNumber);
+                    continue;
+                }
+                String gitUrl = repoInfoSplit[1];
+                // projects are only mined again to update them
+                if (skipDoneProjects && !updateFinishedProjects && runLedger.isDone(gitUrl)) {
+                    log.debugf("Skipping %s, it is done already", gitUrl);
+                    progress.skipped(lineNumber);
+                    continue;
+                }
+
+                progress.started(lineNumber);
+                runLedger.tryRecord(gitUrl, repoInfoSplit[2], lineNumber, State.QUEUED, null);
+                String projectLine = line;
+                int projectLineNumber = lineNumber;
+                Runnable schedule = () -> schedule(scheduler, projectLine, projectLineNumber, gitUrl,
+                        repositoriesPathResolved);
+                if (prefetcher != null)
+                    prefetcher.prefetch(gitUrl, schedule);
+                else
+                    schedule.run();
+            }
+        } finally {
+            // the prefetched projects are still passed on to the scheduler
+            if (prefetcher != null)
+                prefetcher.shutdown();
+            scheduler.close();
         }
-        tp.invokeAll(tasks);
-        tp.shutdown();
+        scheduler.awaitTermination();
+        if (admissionController != null)
+            admissionController.shutdown();
+        log.infof("Finished all projects: %d done and %d failed.", progress.getDone(), progress.getFailed());
         return 0;
     }
 
-    private RepoProcesser processorFromLine(String line, Path repositoriesPath) {
-        return new RepoProcesser(line, appBean, repositoriesPath);
+    private void schedule(ProjectScheduler scheduler, String line, int lineNumber, String gitUrl,
+            Path repositoriesPath) {
+        Path clonePath = JGitUtils.getClonePath(gitUrl, repositoriesPath);
+        try {
+            scheduler.submit(line, lineNumber, () -> ProjectCostEstimator.estimate(clonePath));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.errorf("Interrupted while scheduling %s", line);
+        }
     }
 
-    private class RepoProcesser implements Callable<Void> {
+    private class RepoProcesser implements Runnable {
 
         private final String repoInfoLine;
+        private final int lineNumber;
         private final AppBean appBean;
         private final Path repositoriesPath;
+        private final RunProgress progress;
+        private final RepositoryPrefetcher prefetcher;
 
         /**
-         * @param storagePath
-         * @param storeFullSourceCode
-         * @param db
          * @param repoInfoLine
+         * @param lineNumber line of repoInfoLine in the input file
+         * @param prefetcher that cloned the repository, null if it was not prefetched
          */
-        public RepoProcesser(String repoInfoLine, AppBean appBean, Path repositoriesPath) {
+        public RepoProcesser(String repoInfoLine, int lineNumber, AppBean appBean, Path repositoriesPath,
+                RunProgress progress, RepositoryPrefetcher prefetcher) {
             this.repoInfoLine = repoInfoLine;
+            this.lineNumber = lineNumber;
             this.appBean = appBean;
             this.repositoriesPath = repositoriesPath;
+            this.progress = progress;
+            this.prefetcher = prefetcher;
         }
 
         @Override
-        public Void call() throws Exception {
-            processRepository();
-            log.infof("Done with %s", repoInfoLine);
-            return null;
-
-        }
-
-        private void processRepository() throws IOException {
-
-            // try
-            // Files.createDirectories(failedProjectsFile);
-            if (!Files.exists(failedProjectsFile)) {
-                Files.createFile(failedProjectsFile);
+        public void run() {
+            boolean succeeded = false;
+            try {
+                succeeded = processRepository();
+            } catch (Exception e) {
+                log.errorf(e, "Could not process %s", repoInfoLine);
+            } finally {
+                if (prefetcher != null)
+                    prefetcher.finished(repoInfoLine.split(",")[1]);
+                progress.finished(lineNumber, repoInfoLine, succeeded);
             }
+        }
 
+        // Returns whether the project was mined
+        private boolean processRepository() {
             String[] repoInfoSplit = repoInfoLine.split(",");
             String dataset = repoInfoSplit[2];
             String gitUrl = repoInfoSplit[1];
-            String projectInfo = gitUrl + ", " + dataset;
 
-            File file = failedProjectsFile.toFile();
-            FileUtils.appendToFile(file, projectInfo + "\n");
+            runLedger.tryRecord(gitUrl, dataset, lineNumber, State.RUNNING, null);
             try {
-                appBean.run(dataset, gitUrl, storagePath, repositoriesPath, storeFullSourceCode);
+                appBean.run(dataset, gitUrl, storagePath, repositoriesPath, storeFullSourceCode,
+                        resumeUnfinishedProjects, updateFinishedProjects);
+                runLedger.tryRecord(gitUrl, dataset, lineNumber, State.DONE, null);
+                return true;
             } catch (org.eclipse.jgit.api.errors.TransportException te) {
                 log.errorf(te, "Could not clone project %s", gitUrl);
-                storeFailedProject(gitUrl, "Repository not available", file, te);
+                runLedger.tryRecord(gitUrl, dataset, lineNumber, State.FAILED, te);
             } catch (Exception e) {
                 log.errorf(e, "%s while processing %s", e.getClass().getCanonicalName(), gitUrl);
-                storeFailedProject(gitUrl, e.getClass().getCanonicalName(), file, e);
+                runLedger.tryRecord(gitUrl, dataset, lineNumber, State.FAILED, e);
             }
-            FileUtils.removeFromFile(file, projectInfo);
-        }
-
-        private void storeFailedProject(String gitUrl, String failureReason, File failedProjectsFile,
-                Exception exception) throws IOException {
-            String failedProject = gitUrl + ", " + failureReason + ", " + exception.toString() + "\n";
-            FileUtils.appendToFile(failedProjectsFile, failedProject);
+            return false;
         }
     }
 }
@@ -0,0 +1,60 @@
+package refactoringml;
+
+import java.util.List;
+
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.refactoringminer.api.Refactoring;
+
+import refactoringml.db.CommitMetaData;
+
+// Everything we can compute for a commit without touching the PMDatabase or the
+// database, i.e. the diff entries and the refactorings detected by RefactoringMiner.
+// These are computed ahead of time by the mining stage of AppBean and applied in
+// commit order afterwards.
+public class MinedCommit {
+	private final RevCommit commit;
+	private final CommitMetaData commitMetaData;
+	private final List<DiffEntry> entries;
+	// null if RefactoringMiner did not run (first commit) or did not return a result
+	private final List<Refactoring> refactorings;
+	// RefactoringMiner reported an exception for this commit
+	private final boolean minerFailed;
+
+	public MinedCommit(RevCommit commit, CommitMetaData commitMetaData, List<DiffEntry> entries,
+			List<Refactoring> refactorings, boolean minerFailed) {
+		this.commit = commit;
+		this.commitMetaData = commitMetaData;
+		this.entries = entries;
+		this.refactorings = refactorings;
+		this.minerFailed = minerFailed;
+	}
+
+	public RevCommit getCommit() {
+		return commit;
+	}
+
+	public String getCommitHash() {
+		return commit.getId().getName();
+	}
+
+	public CommitMetaData getCommitMetaData() {
+		return commitMetaData;
+	}
+
+	public List<DiffEntry> getEntries() {
+		return entries;
+	}
+
+	public List<Refactoring> getRefactorings() {
+		return refactorings;
+	}
+
+	public boolean hasRefactorings() {
+		return refactorings != null && !refactorings.isEmpty();
+	}
+
+	public boolean isMinerFailed() {
+		return minerFailed;
+	}
+}
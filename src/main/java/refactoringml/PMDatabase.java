@@ -1,33 +1,55 @@
 package refactoringml;
 
-import refactoringml.db.CommitMetaData;
+import refactoringml.util.CommitMessageClassifier.Category;
 import refactoringml.util.LogUtils;
+import refactoringml.util.PathTrie;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.function.Consumer;
 
-public class PMDatabase {
-	//Map class files onto their original process metrics.
-	private Map<String, ProcessMetricTracker> database;
+public class PMDatabase implements ProcessMetricsDatabase {
+	//Map class files onto their original process metrics, in a tree of their directories.
+	private PathTrie<ProcessMetricTracker> database;
+	//The trackers passing one of the commit thresholds, updated with every change of a tracker
+	private StabilityIndex stabilityIndex;
 
 	public PMDatabase () {
-		this.database = new HashMap<>();
+		this(List.of());
+	}
+
+	//The stability index buckets the trackers by the given commit thresholds, e.g. the ones of the project
+	public PMDatabase (List<Integer> commitThresholds) {
+		this.database = new PathTrie<>();
+		this.stabilityIndex = new StabilityIndex(commitThresholds, List.of());
 	}
 
 	//public interaction
 	//Retrieve the process metrics tracker for the given fileName
+	@Override
 	public ProcessMetricTracker find(String fileName) {
 		return database.get(fileName);
 	}
 
-	//Find all stable instances in the database
-	//Don't use these, because it is very inefficient
-	public List<ProcessMetricTracker> findStableInstances(List<Integer> commitThresholds) {
-		return database.values().stream()
-				.filter(pmTracker -> pmTracker.calculateStability(commitThresholds))
-				.collect(Collectors.toList());
+	//Only the class files in the buckets of the stability index are checked. A search with other commit thresholds
+	//than the ones of the index checks all class files to build a new index for them.
+	@Override
+	public List<ProcessMetricTracker> findStableInstances(List<Integer> commitThresholds, Integer commitThreshold) {
+		if(!stabilityIndex.isFor(commitThresholds))
+			stabilityIndex = new StabilityIndex(commitThresholds, database.values());
+
+		List<ProcessMetricTracker> stableInstances = new ArrayList<>();
+		for (ProcessMetricTracker pmTracker : stabilityIndex.candidates(commitThreshold)) {
+			//trackers changed outside of the database might pass another threshold by now
+			if((commitThreshold == null || stabilityIndex.passedThreshold(pmTracker) == commitThreshold)
+					&& pmTracker.calculateStability(commitThresholds))
+				stableInstances.add(pmTracker);
+			stabilityIndex.update(pmTracker);
+		}
+		return stableInstances;
 	}
 
 	/*
@@ -36,48 +58,144 @@ public class PMDatabase {
 	1. Rename People.java to Person.java: Person -> People_ProcessMetrics
 	2. Rename Person.java to Human.java: Human -> People_ProcessMetrics
 	Sometimes renames or move source folder refactorings are not detected by Refactoring-Miner, then the metrics are increased manually here.
+	The tracker itself is moved to the new name, a file that was not tracked yet starts at this commit.
 	 */
-	public ProcessMetricTracker renameFile(String oldFileName, String newFileName, CommitMetaData commitMetaData){
-		ProcessMetricTracker pmTracker = new ProcessMetricTracker(database.getOrDefault(oldFileName, new ProcessMetricTracker(newFileName, commitMetaData)));
+	@Override
+	public ProcessMetricTracker renameFile(String oldFileName, String newFileName, CommitHandle commit){
 		if(oldFileName.equals(newFileName)){
 			throw new IllegalArgumentException("The old and new file name for a rename refactoring are both: " + oldFileName
-					+ LogUtils.createRefactoringErrorState(commitMetaData.commitId, "Rename Refactoring"));
+					+ LogUtils.createRefactoringErrorState(commit.getCommitId().name(), "Rename Refactoring"));
+		}
+		ProcessMetricTracker pmTracker = removeFile(oldFileName);
+		if(pmTracker == null){
+			put(new ProcessMetricTracker(newFileName, commit));
+			return null;
 		}
 		//If a filename already exists in the database, overwrite the process metrics with the ones from this refactoring
-		pmTracker.setFileName(newFileName);
-		ProcessMetricTracker oldPMTracker = removeFile(oldFileName);
+		pmTracker.moveTo(newFileName);
+		put(pmTracker);
+		return pmTracker;
+	}
+
+	//Report the move of a whole directory, e.g. by a move source folder or rename package refactoring
+	//Same as renaming all class files in it, but the directory is moved in the tree at once
+	@Override
+	public boolean renameDirectory(String oldDirectory, String newDirectory){
+		if(!database.moveDirectory(oldDirectory, newDirectory))
+			return false;
+		database.forEach(newDirectory, (fileName, pmTracker) -> {
+			pmTracker.moveTo(fileName);
+			updateStability(pmTracker);
+		});
+		return true;
+	}
 
-		database.put(newFileName, pmTracker);
-		return oldPMTracker;
+	@Override
+	public int countFiles(String directory){
+		return database.size(directory);
 	}
 
 	//Remove the given fileName from the process metrics database
 	//Returns the old process metrics tracker of the deleted class file, if any existed in the database
+	@Override
 	public ProcessMetricTracker removeFile(String fileName){
-		return database.remove(fileName);
+		ProcessMetricTracker pmTracker = database.remove(fileName);
+		if(pmTracker != null)
+			stabilityIndex.remove(pmTracker);
+		return pmTracker;
+	}
+
+	//Report a commit changing the given class file, whose message falls into no category, e.g. no bug fix
+	public ProcessMetricTracker reportChanges(String fileName, CommitHandle commit, String authorName, int linesAdded, int linesDeleted) {
+		return reportChanges(fileName, commit, EnumSet.noneOf(Category.class), authorName, linesAdded, linesDeleted);
 	}
 
 	//Report a commit changing the given class file, the in memory database is updated accordingly
-	//Returns the ProcessMetricsTracker if it is stable
-	public ProcessMetricTracker reportChanges(String fileName, CommitMetaData commitMetaData, String authorName, int linesAdded, int linesDeleted) {
-		ProcessMetricTracker pmTracker = database.getOrDefault(fileName, new ProcessMetricTracker(fileName, commitMetaData));
-		pmTracker.reportCommit(commitMetaData.commitMessage, authorName, linesAdded, linesDeleted);
+	//The categories of the commit message are classified once for all files changed by the commit
+	public ProcessMetricTracker reportChanges(String fileName, CommitHandle commit, Set<Category> messageCategories,
+			String authorName, int linesAdded, int linesDeleted) {
+		ProcessMetricTracker pmTracker = findOrCreate(fileName, commit);
+		pmTracker.reportCommit(messageCategories.contains(Category.BUG_FIX), authorName, linesAdded, linesDeleted);
+		updateStability(pmTracker);
+		return pmTracker;
+	}
 
-		database.put(fileName, pmTracker);
+	//Same, returns the ProcessMetricsTracker only if it is stable
+	@Override
+	public ProcessMetricTracker reportChanges(String fileName, CommitHandle commit, Set<Category> messageCategories,
+			String authorName, int linesAdded, int linesDeleted, List<Integer> commitThresholds) {
+		ProcessMetricTracker pmTracker = reportChanges(fileName, commit, messageCategories, authorName,
+				linesAdded, linesDeleted);
+		if(!pmTracker.calculateStability(commitThresholds))
+			return null;
+		updateStability(pmTracker);
 		return pmTracker;
 	}
 
-	//Reset the tracker with latest refactoring and its commit meta data
+	//Reset the tracker with latest refactoring and its commit
 	//the commitCounter will be zero again
-	public void reportRefactoring(String fileName, CommitMetaData commitMetaData) {
-		ProcessMetricTracker pmTracker = database.getOrDefault(fileName, new ProcessMetricTracker(fileName, commitMetaData));
-		pmTracker.resetCounter(commitMetaData);
+	@Override
+	public void reportRefactoring(String fileName, CommitHandle commit) {
+		ProcessMetricTracker pmTracker = findOrCreate(fileName, commit);
+		pmTracker.resetCounter(commit);
+		updateStability(pmTracker);
+	}
 
-		database.put(fileName, pmTracker);
+	//All trackers in the database
+	public Collection<ProcessMetricTracker> getTrackers() {
+		return database.values();
+	}
+
+	@Override
+	public int size() {
+		return database.size();
+	}
+
+	@Override
+	public void forEachTracker(Consumer<? super ProcessMetricTracker> action) {
+		database.forEach((fileName, pmTracker) -> action.accept(pmTracker));
+	}
+
+	@Override
+	public void forEachBaseCommit(Consumer<? super CommitHandle> action) {
+		database.forEach((fileName, pmTracker) -> {
+			if (pmTracker.getBaseCommit() != null)
+				action.accept(pmTracker.getBaseCommit());
+		});
+	}
+
+	//Add a tracker restored from a checkpoint
+	@Override
+	public void restore(ProcessMetricTracker pmTracker) {
+		removeFile(pmTracker.getFileName());
+		put(pmTracker);
 	}
 
 	public String toString(){
 		return "PMDatabase{" +
 				"database=" + database.toString() + "}";
 	}
+
+	//The tracker of the given fileName, a new file starts at the given commit
+	private ProcessMetricTracker findOrCreate(String fileName, CommitHandle commit) {
+		ProcessMetricTracker pmTracker = database.get(fileName);
+		if (pmTracker == null) {
+			pmTracker = new ProcessMetricTracker(fileName, commit);
+			put(pmTracker);
+		}
+		return pmTracker;
+	}
+
+	//Add the tracker under its fileName, overwriting the tracker of an existing file
+	private void put(ProcessMetricTracker pmTracker) {
+		ProcessMetricTracker overwritten = database.put(pmTracker.getFileName(), pmTracker);
+		if (overwritten != null)
+			stabilityIndex.remove(overwritten);
+		updateStability(pmTracker);
+	}
+
+	//Keep the stability index up to date with every change of a tracker
+	private void updateStability(ProcessMetricTracker pmTracker) {
+		stabilityIndex.update(pmTracker);
+	}
 }
\ No newline at end of file
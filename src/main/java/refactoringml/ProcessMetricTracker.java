@@ -1,12 +1,12 @@
 package refactoringml;
 
-import java.util.Arrays;
 import java.util.List;
 
 import com.google.common.base.Preconditions;
 
-import refactoringml.db.CommitMetaData;
 import refactoringml.db.ProcessMetrics;
+import refactoringml.util.CommitMessageClassifier;
+import refactoringml.util.CommitMessageClassifier.Category;
 import refactoringml.util.FileUtils;
 
 public class ProcessMetricTracker {
@@ -14,7 +14,7 @@ public class ProcessMetricTracker {
 	private String fileName;
 	// Either: the last commit refactoring the class file or the first one creating
 	// the class file
-	private CommitMetaData baseCommitMetaData;
+	private CommitHandle baseCommit;
 	// Reference commit to be considered stable, if it passes a certain threshold
 	private ProcessMetrics baseProcessMetrics;
 	// The process metrics till the latest commit affecting the class file, use this
@@ -25,22 +25,14 @@ public class ProcessMetricTracker {
 	// avoid double instances when we use multiple thresholds
 	private int currentCommitThreshold = 0;
 
-	// TODO: move to utils
-	protected static final String[] bugKeywords = { "bug", "error", "mistake", "fault", "wrong", "fail", "fix" };
-
-	private static boolean isBugFix(String commitMsg) {
-		String cleanCommitMsg = commitMsg.toLowerCase();
-		return Arrays.stream(bugKeywords).filter(cleanCommitMsg::contains).count() > 0;
-	}
-
-	public ProcessMetricTracker(String fileName, CommitMetaData commitMetaData) {
+	public ProcessMetricTracker(String fileName, CommitHandle commit) {
 		if (FileUtils.fileDoesNotExist(fileName))
 			throw new IllegalArgumentException(fileName + " is an illegal file name for a class file.");
 
-		var project = commitMetaData.project;
+		var project = commit.getProject();
 		Preconditions.checkNotNull(project);
 		this.fileName = fileName;
-		this.baseCommitMetaData = commitMetaData;
+		this.baseCommit = commit;
 		this.baseProcessMetrics = new ProcessMetrics(0, 0, 0, 0, 0, project);
 		this.currentProcessMetrics = new ProcessMetrics(0, 0, 0, 0, 0, project);
 	}
@@ -48,30 +40,46 @@ public class ProcessMetricTracker {
 	// Deep copy the ProcessMetrics in order to have a new object after renames
 	public ProcessMetricTracker(ProcessMetricTracker oldPMTracker) {
 		this.fileName = oldPMTracker.getFileName();
-		this.baseCommitMetaData = oldPMTracker.getBaseCommitMetaData();
+		this.baseCommit = oldPMTracker.getBaseCommit();
 		this.baseProcessMetrics = new ProcessMetrics(oldPMTracker.getBaseProcessMetrics());
 		this.currentProcessMetrics = new ProcessMetrics(oldPMTracker.getCurrentProcessMetrics());
 	}
 
+	// Restore a tracker, e.g. from a checkpoint
+	ProcessMetricTracker(String fileName, CommitHandle baseCommit, ProcessMetrics baseProcessMetrics,
+			ProcessMetrics currentProcessMetrics, int currentCommitThreshold) {
+		this.fileName = fileName;
+		this.baseCommit = baseCommit;
+		this.baseProcessMetrics = baseProcessMetrics;
+		this.currentProcessMetrics = currentProcessMetrics;
+		this.currentCommitThreshold = currentCommitThreshold;
+	}
+
 	// public tracker interaction
+	// The commit message is classified with the default keywords
 	public void reportCommit(String commitMsg, String authorName, int linesAdded, int linesDeleted) {
+		reportCommit(CommitMessageClassifier.DEFAULT.classify(commitMsg).contains(Category.BUG_FIX), authorName,
+				linesAdded, linesDeleted);
+	}
+
+	public void reportCommit(boolean bugFix, String authorName, int linesAdded, int linesDeleted) {
 		currentProcessMetrics.qtyOfCommits++;
 		currentProcessMetrics.updateAuthorCommits(authorName);
 
 		currentProcessMetrics.linesAdded += linesAdded;
 		currentProcessMetrics.linesDeleted += linesDeleted;
 
-		if (isBugFix(commitMsg))
+		if (bugFix)
 			currentProcessMetrics.bugFixCount++;
 	}
 
-	// Reset the tracker with latest refactoring and its commit meta data
+	// Reset the tracker with latest refactoring and its commit
 	// the commitCounter will be zero again
-	public void resetCounter(CommitMetaData commitMetaData) {
+	public void resetCounter(CommitHandle commit) {
 		currentProcessMetrics.refactoringsInvolved++;
 		currentCommitThreshold = 0;
 
-		this.baseCommitMetaData = commitMetaData;
+		this.baseCommit = commit;
 		this.baseProcessMetrics = new ProcessMetrics(currentProcessMetrics);
 	}
 
@@ -84,14 +92,24 @@ public class ProcessMetricTracker {
 		fileName = newFileName;
 	}
 
+	// Track the class file under its new name after a rename, instead of a copy of the tracker
+	// Like such a copy, the renamed class file did not pass any commit threshold yet
+	void moveTo(String newFileName) {
+		if (FileUtils.fileDoesNotExist(newFileName))
+			throw new IllegalArgumentException(newFileName + " is an illegal file name for a class file.");
+
+		fileName = newFileName;
+		currentCommitThreshold = 0;
+	}
+
 	// Number of commits affecting this class since the last refactoring
 	// Used to estimate if the class is stable
 	public int getCommitCounter() {
 		return currentProcessMetrics.qtyOfCommits - baseProcessMetrics.qtyOfCommits;
 	}
 
-	public CommitMetaData getBaseCommitMetaData() {
-		return baseCommitMetaData;
+	public CommitHandle getBaseCommit() {
+		return baseCommit;
 	}
 
 	public ProcessMetrics getBaseProcessMetrics() {
@@ -113,20 +131,29 @@ public class ProcessMetricTracker {
 	// The fix (>= instead of > : currentCommitThreshold) leads to stable commit
 	// duplicates in the DB in case of multiple refactorings in the current commit
 	public boolean calculateStability(List<Integer> commitThresholds) {
+		int threshold = passedThreshold(getCommitCounter(), currentCommitThreshold, commitThresholds);
+		if (threshold < 0)
+			return false;
+		currentCommitThreshold = threshold;
+		return true;
+	}
+
+	// The commit threshold a class file passes with the given commit counter, or -1 if it passes none, so that
+	// trackers not kept as objects (see ColumnarPMDatabase) share the rules of calculateStability
+	static int passedThreshold(int commitCounter, int currentCommitThreshold, List<Integer> commitThresholds) {
 		for (Integer threshold : commitThresholds) {
 			// 1. Test if the class file was not refactored for the last K commits
-			if (isStable(threshold) &&
+			if (commitCounter >= threshold &&
 			// 2. Avoid duplicates:
 			// 2.1: a class file fulfills various K's -> only use the highest K and ignore
 			// the lower ones
 			// 2.2: the commit counter is higher than at least one K, but below another K ->
 			// consider it not stable
-					(threshold > currentCommitThreshold || threshold == getCommitCounter())) {
-				currentCommitThreshold = threshold;
-				return true;
+					(threshold > currentCommitThreshold || threshold == commitCounter)) {
+				return threshold;
 			}
 		}
-		return false;
+		return -1;
 	}
 
 	// Was this class file not refactored in the last K commits affecting this class
@@ -138,7 +165,7 @@ public class ProcessMetricTracker {
 	@Override
 	public String toString() {
 		return "ProcessMetricTracker{" + "fileName='" + fileName + '\'' + ", commitCounter=" + getCommitCounter()
-				+ ", baseCommitMetaData=" + baseCommitMetaData.toString() + ", baseProcessMetrics="
+				+ ", baseCommit=" + baseCommit.toString() + ", baseProcessMetrics="
 				+ baseProcessMetrics.toString() + ", currentProcessMetrics=" + currentProcessMetrics.toString() + '}';
 	}
 }
\ No newline at end of file
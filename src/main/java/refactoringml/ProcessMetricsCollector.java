@@ -4,33 +4,30 @@ import static refactoringml.util.CKUtils.cleanDollarSign;
 import static refactoringml.util.CKUtils.extractClassMetrics;
 import static refactoringml.util.CKUtils.extractMethodMetrics;
 import static refactoringml.util.FilePathUtils.enforceUnixPaths;
-import static refactoringml.util.FileUtils.cleanTempDir;
-import static refactoringml.util.FileUtils.createTmpDir;
+import static refactoringml.util.FilePathUtils.movedDirectories;
 import static refactoringml.util.FileUtils.writeFile;
-import static refactoringml.util.JGitUtils.readFileFromGit;
 import static refactoringml.util.LogUtils.createErrorState;
-import static refactoringml.util.RefactoringUtils.calculateLinesAdded;
-import static refactoringml.util.RefactoringUtils.calculateLinesDeleted;
 
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
-import com.github.mauricioaniche.ck.CKMethodResult;
 import com.google.common.base.Preconditions;
 
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.eclipse.jgit.diff.DiffEntry;
-import org.eclipse.jgit.diff.DiffFormatter;
-import org.eclipse.jgit.diff.Edit;
-import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.jboss.logging.Logger;
 
+import refactoringml.db.BatchPersister;
 import refactoringml.db.ClassMetric;
 import refactoringml.db.CommitMetaData;
 import refactoringml.db.FieldMetric;
@@ -40,25 +37,37 @@ import refactoringml.db.Project;
 import refactoringml.db.RefactoringCommit;
 import refactoringml.db.StableCommit;
 import refactoringml.db.VariableMetric;
+import refactoringml.util.BlobReader;
+import refactoringml.util.CKClassSnapshot;
+import refactoringml.util.CKMethodSnapshot;
+import refactoringml.util.CKResultCache;
 import refactoringml.util.CKUtils;
+import refactoringml.util.LineChurnCalculator;
 import refactoringml.util.LogUtils;
 import refactoringml.util.RefactoringUtils;
 import refactoringml.util.RefactoringUtils.Level;
 
 public class ProcessMetricsCollector {
 	private Project project;
-	private Repository repository;
+	private BlobReader blobReader;
 	private Path fileStoragePath;
-	private PMDatabase pmDatabase;
+	private ProcessMetricsDatabase pmDatabase;
+	private CKResultCache ckResultCache;
+	private BatchPersister batchPersister;
+	private LineChurnCalculator lineChurnCalculator;
 
 	private static final Logger log = Logger.getLogger(ProcessMetricsCollector.class);
 
-	public ProcessMetricsCollector(Project project, Repository repository, PMDatabase pmDatabase,
-			Path fileStoragePath) {
+	public ProcessMetricsCollector(Project project, BlobReader blobReader, ProcessMetricsDatabase pmDatabase,
+			Path fileStoragePath, CKResultCache ckResultCache, BatchPersister batchPersister,
+			LineChurnCalculator lineChurnCalculator) {
 		this.project = project;
-		this.repository = repository;
+		this.blobReader = blobReader;
 		this.fileStoragePath = fileStoragePath;
 		this.pmDatabase = pmDatabase;
+		this.ckResultCache = ckResultCache;
+		this.batchPersister = batchPersister;
+		this.lineChurnCalculator = lineChurnCalculator;
 	}
 
 	// if this commit contained a refactoring, then collect its process metrics for
@@ -67,20 +76,23 @@ public class ProcessMetricsCollector {
 	public void collectMetrics(RevCommit commit, CommitMetaData superCommitMetaData,
 			List<RefactoringCommit> allRefactoringCommits, List<DiffEntry> entries,
 			Set<ImmutablePair<String, String>> refactoringRenames, Set<ImmutablePair<String, String>> jGitRenames,
-			DiffFormatter diffFormatter, int cKTimeoutInSeconds) throws IOException {
-		collectProcessMetricsOfRefactoredCommit(superCommitMetaData, allRefactoringCommits);
+			int cKTimeoutInSeconds) throws IOException {
+		// the trackers only refer to the commit by its handle, shared by all of them; if the commit was stored
+		// for its refactorings, its stable instances refer to the same row
+		CommitHandle commitHandle = new CommitHandle(superCommitMetaData, commit);
+		collectProcessMetricsOfRefactoredCommit(superCommitMetaData, commitHandle, allRefactoringCommits);
 
-		processRenames(refactoringRenames, jGitRenames, superCommitMetaData);
+		processRenames(refactoringRenames, jGitRenames, superCommitMetaData, commitHandle);
 
 		// we go now change by change in the commit to update the process metrics there
 		// Also if a stable instance is found it is stored with the metrics in the DB
-		collectProcessMetricsOfStableCommits(commit, superCommitMetaData, entries, diffFormatter, cKTimeoutInSeconds);
+		collectProcessMetricsOfStableCommits(commit, superCommitMetaData, commitHandle, entries, cKTimeoutInSeconds);
 	}
 
 	// Collect the ProcessMetrics of the RefactoringCommit before this commit
 	// happened and update the database entry with it
 	private void collectProcessMetricsOfRefactoredCommit(CommitMetaData superCommitMetaData,
-			List<RefactoringCommit> allRefactoringCommits) {
+			CommitHandle commitHandle, List<RefactoringCommit> allRefactoringCommits) {
 		for (RefactoringCommit refactoringCommit : allRefactoringCommits) {
 			String fileName = refactoringCommit.filePath;
 			ProcessMetricTracker currentProcessMetricsTracker = pmDatabase.find(fileName);
@@ -92,26 +104,27 @@ public class ProcessMetricsCollector {
 			refactoringCommit.processMetrics = dbProcessMetrics;
 			refactoringCommit.merge();
 
-			pmDatabase.reportRefactoring(fileName, superCommitMetaData);
+			pmDatabase.reportRefactoring(fileName, commitHandle);
 		}
 	}
 
 	// update the process metrics for all renames that were missed by
 	// RefactoringMiner
 	private void processRenames(Set<ImmutablePair<String, String>> refactoringRenames,
-			Set<ImmutablePair<String, String>> jGitRenames, CommitMetaData superCommitMetadata) {
+			Set<ImmutablePair<String, String>> jGitRenames, CommitMetaData superCommitMetadata,
+			CommitHandle commitHandle) {
 		// get all renames detected by RefactoringMiner
 		if (refactoringRenames != null) {
-			for (ImmutablePair<String, String> rename : refactoringRenames) {
-				// check if the class file name was changed, not only the class name
-				if (!rename.left.equals(rename.right)) {
-					pmDatabase.renameFile(rename.left, rename.right, superCommitMetadata);
-					// hotfix for the case in which we rename a file but missed the refactoring
-					if (pmDatabase.find(rename.right).getCommitCountThreshold() > 0)
-						pmDatabase.reportRefactoring(rename.right, superCommitMetadata);
-					log.debug("Renamed " + rename.left + " to " + rename.right + " in PMDatabase.");
-				}
-			}
+			// check if the class file name was changed, not only the class name
+			List<ImmutablePair<String, String>> fileRenames = refactoringRenames.stream()
+					.filter(rename -> !rename.left.equals(rename.right)).collect(Collectors.toList());
+			renameFiles(fileRenames, commitHandle, rename -> {
+				// hotfix for the case in which we rename a file but missed the refactoring
+				ProcessMetricTracker pmTracker = pmDatabase.find(rename.right);
+				if (pmTracker != null && pmTracker.getCommitCountThreshold() > 0)
+					pmDatabase.reportRefactoring(rename.right, commitHandle);
+				log.debug("Renamed " + rename.left + " to " + rename.right + " in PMDatabase.");
+			});
 		}
 
 		// process the renames missed by refactoringminer
@@ -123,10 +136,40 @@ public class ProcessMetricsCollector {
 				log.debug("Refactoringminer missed these refactorings: " + jGitRenames
 						+ LogUtils.createErrorState(superCommitMetadata.commitId, project));
 				// update the missed renames in the PM database
-				for (ImmutablePair<String, String> rename : jGitRenames) {
+				renameFiles(jGitRenames, commitHandle, rename -> {
 					log.debug("Renamed " + rename.left + " to " + rename.right + " in PMDatabase.");
-					pmDatabase.renameFile(rename.left, rename.right, superCommitMetadata);
-					pmDatabase.reportRefactoring(rename.right, superCommitMetadata);
+					pmDatabase.reportRefactoring(rename.right, commitHandle);
+				});
+			}
+		}
+	}
+
+	// Rename the class files in the PM database, each rename is followed by the given action
+	// The renames moving all class files of a directory to another one, e.g. by a move source folder or rename
+	// package refactoring, move the directory at once
+	private void renameFiles(Collection<ImmutablePair<String, String>> renames, CommitHandle commitHandle,
+			Consumer<ImmutablePair<String, String>> afterRename) {
+		Map<ImmutablePair<String, String>, List<ImmutablePair<String, String>>> directoryMoves = new LinkedHashMap<>();
+		for (ImmutablePair<String, String> rename : renames) {
+			ImmutablePair<String, String> movedDirectories = movedDirectories(rename.left, rename.right);
+			directoryMoves.computeIfAbsent(movedDirectories != null ? movedDirectories : rename,
+					directories -> new ArrayList<>()).add(rename);
+		}
+
+		for (Map.Entry<ImmutablePair<String, String>, List<ImmutablePair<String, String>>> directoryMove
+				: directoryMoves.entrySet()) {
+			String oldDirectory = directoryMove.getKey().left;
+			String newDirectory = directoryMove.getKey().right;
+			List<ImmutablePair<String, String>> directoryRenames = directoryMove.getValue();
+			if (directoryRenames.size() > 1 && pmDatabase.countFiles(oldDirectory) == directoryRenames.size()
+					&& directoryRenames.stream().allMatch(rename -> pmDatabase.find(rename.left) != null)
+					&& pmDatabase.renameDirectory(oldDirectory, newDirectory)) {
+				log.debug("Moved " + oldDirectory + " to " + newDirectory + " in PMDatabase.");
+				directoryRenames.forEach(afterRename);
+			} else {
+				for (ImmutablePair<String, String> rename : directoryRenames) {
+					pmDatabase.renameFile(rename.left, rename.right, commitHandle);
+					afterRename.accept(rename);
 				}
 			}
 		}
@@ -137,7 +180,7 @@ public class ProcessMetricsCollector {
 	// Increase the PMTracker for all class files, that were not refactored but
 	// changed on this commit
 	private void collectProcessMetricsOfStableCommits(RevCommit commit, CommitMetaData superCommitMetaData,
-			List<DiffEntry> entries, DiffFormatter diffFormatter, int cKTimeoutInSeconds) throws IOException {
+			CommitHandle commitHandle, List<DiffEntry> entries, int cKTimeoutInSeconds) throws IOException {
 		for (DiffEntry entry : entries) {
 			String fileName = enforceUnixPaths(entry.getNewPath());
 
@@ -158,19 +201,17 @@ public class ProcessMetricsCollector {
 			}
 
 			// collect number of lines deleted and added in that file
-			List<Edit> editList = diffFormatter.toFileHeader(entry).toEditList();
-			int linesDeleted = calculateLinesDeleted(editList);
-			int linesAdded = calculateLinesAdded(editList);
+			LineChurnCalculator.Churn churn = lineChurnCalculator.calculate(entry);
 
 			// we increase the counter here. This means a class will go to the 'non
 			// refactored' bucket
 			// only after we see it X times (and not involved in a refactoring, otherwise,
 			// counters are resetted).
-			ProcessMetricTracker pmTracker = pmDatabase.reportChanges(fileName, superCommitMetaData,
-					commit.getAuthorIdent().getName(), linesAdded, linesDeleted);
-
-			// The last commit passed the stability threshold for this class file
-			if (pmTracker.calculateStability(project.commitCountThresholdsInt)) {
+			// The tracker is only returned if the last commit passed the stability threshold for this class file
+			ProcessMetricTracker pmTracker = pmDatabase.reportChanges(fileName, commitHandle,
+					superCommitMetaData.messageCategories, commit.getAuthorIdent().getName(), churn.getLinesAdded(),
+					churn.getLinesDeleted(), project.commitCountThresholdsInt);
+			if (pmTracker != null) {
 				outputNonRefactoredClass(pmTracker, cKTimeoutInSeconds);
 
 				// we then reset the counter, and start again.
@@ -180,74 +221,74 @@ public class ProcessMetricsCollector {
 					log.debug("Reset pmTracker for class " + pmTracker.getFileName() + " with threshold: "
 							+ pmTracker.getCommitCountThreshold() + " because it is the max threshold("
 							+ project.maxCommitThreshold + ").");
-					pmTracker.resetCounter(new CommitMetaData(commit, superCommitMetaData.commitNumber, project));
+					pmDatabase.reportRefactoring(pmTracker.getFileName(), commitHandle);
 				}
 			}
 		}
 	}
 
 	// Store the refactoring instances in the DB
-	private void outputNonRefactoredClass(ProcessMetricTracker pmTracker, int cKTimeoutInSeconds) throws IOException {
-		String tempDir = null;
+	private void outputNonRefactoredClass(ProcessMetricTracker pmTracker, int cKTimeoutInSeconds) {
 		try {
-			String commitBackThen = pmTracker.getBaseCommitMetaData().commitId;
+			CommitHandle baseCommit = pmTracker.getBaseCommit();
+			String commitBackThen = baseCommit.getCommitId().name();
 			log.debug("Class " + pmTracker.getFileName()
 					+ " is an example of a not refactored instance with the stable commit: " + commitBackThen);
 
 			// we extract the source code from back then (as that's the one that never
 			// deserved a refactoring)
-			String sourceCodeBackThen = readFileFromGit(repository, commitBackThen, pmTracker.getFileName());
-			// create a temp dir to store the source code files and run CK there
-			tempDir = createTmpDir();
+			ObjectId blobBackThen = blobReader.getBlobId(baseCommit.getCommitId(), pmTracker.getFileName());
 
 			// we save it in the permanent storage...
 			writeFile(fileStoragePath + pmTracker.getFileName() + "/" + "not-refactored/" + pmTracker.getFileName(),
-					sourceCodeBackThen);
-			// ... as well as in the temp one, so that we can calculate the CK metrics
-			writeFile(tempDir + pmTracker.getFileName(), sourceCodeBackThen);
-			var baseCommitData = pmTracker.getBaseCommitMetaData();
-			if (baseCommitData.id == null) {
-				pmTracker.getBaseCommitMetaData().persist();
+					blobReader.read(blobBackThen));
+			// ... and calculate the CK metrics, unless the same file content was already analyzed before
+			List<CKClassSnapshot> ckResults = CKUtils.calculate(ckResultCache, blobReader, blobBackThen,
+					pmTracker.getFileName(), commitBackThen, project.gitUrl, cKTimeoutInSeconds);
+			// the commit is read and stored with its first stable instance only
+			if (baseCommit.getCommitMetaDataId() == null) {
+				CommitMetaData baseCommitData = baseCommit.toCommitMetaData(blobReader);
+				baseCommitData.persist();
+				baseCommit.setCommitMetaDataId(baseCommitData.id);
 			}
 
-			CommitMetaData commitMetaData = CommitMetaData.findById(pmTracker.getBaseCommitMetaData().id);
-			List<StableCommit> stableCommits = codeMetrics(commitMetaData, tempDir, pmTracker.getCommitCountThreshold(),
-					cKTimeoutInSeconds);
+			CommitMetaData commitMetaData = CommitMetaData.findById(baseCommit.getCommitMetaDataId());
+			List<StableCommit> stableCommits = codeMetrics(commitMetaData, pmTracker.getFileName(), ckResults,
+					pmTracker.getCommitCountThreshold());
 
 			// print its process metrics in the same process metrics file
 			// note that we print the process metrics back then (X commits ago)
 			if (!stableCommits.isEmpty()) {
 				// don't store duplicate entries of the same process metrics
 				ProcessMetrics processMetrics = new ProcessMetrics(pmTracker.getBaseProcessMetrics());
-				processMetrics.persist();
 				for (StableCommit stableCommit : stableCommits) {
 					stableCommit.processMetrics = processMetrics;
-					stableCommit.persist();
 				}
+				batchPersister.persistAll(stableCommits);
 			}
 
 		} catch (Exception e) {
 			log.error(e.getClass().getCanonicalName() + " while processing stable process metrics."
-					+ createErrorState(pmTracker.getBaseCommitMetaData().commitId, project), e);
-		} finally {
-			cleanTempDir(tempDir);
+					+ createErrorState(pmTracker.getBaseCommit().getCommitId().name(), project), e);
 		}
 	}
 
-	// TODO: Fix this, as it generates many duplicates
-	private List<StableCommit> codeMetrics(CommitMetaData commitMetaData, String tempDir, int commitThreshold,
-			int cKTimeoutInSeconds) throws InterruptedException {
+	// The class metrics are shared by all instances of a class and the method metrics by all
+	// instances of a method; identical metrics are only stored once (see MetricRegistry)
+	// The CK results might be cached for the same content under another path, so the instances get the fileName
+	private List<StableCommit> codeMetrics(CommitMetaData commitMetaData, String fileName,
+			List<CKClassSnapshot> ckResults, int commitThreshold) {
 		Preconditions.checkNotNull(commitMetaData);
 		Preconditions.checkNotNull(project);
 
 		List<StableCommit> stableCommits = new ArrayList<>();
 
-		CKUtils.calculate(tempDir, commitMetaData.commitId, project.gitUrl, ck -> {
+		for (CKClassSnapshot ck : ckResults) {
 			String cleanedCkClassName = cleanDollarSign(ck.getClassName());
 			ClassMetric classMetric = extractClassMetrics(ck, project);
 
-			Set<CKMethodResult> methods = ck.getMethods();
-			for (CKMethodResult ckMethodResult : methods) {
+			List<CKMethodSnapshot> methods = ck.getMethods();
+			for (CKMethodSnapshot ckMethodResult : methods) {
 				MethodMetric methodMetrics = extractMethodMetrics(ckMethodResult, project);
 
 				Set<Map.Entry<String, Integer>> variables = ckMethodResult.getVariablesUsage().entrySet();
@@ -255,7 +296,7 @@ public class ProcessMetricsCollector {
 					VariableMetric variableMetric = new VariableMetric(entry.getKey(), entry.getValue(), project);
 
 					StableCommit stableCommitV = new StableCommit(project, commitMetaData,
-							enforceUnixPaths(ck.getFile()).replace(tempDir, ""), cleanedCkClassName, classMetric,
+							fileName, cleanedCkClassName, classMetric,
 							methodMetrics, variableMetric, null, RefactoringUtils.Level.VARIABLE.ordinal(),
 							commitThreshold);
 
@@ -263,7 +304,7 @@ public class ProcessMetricsCollector {
 				}
 
 				StableCommit stableCommitM = new StableCommit(project, commitMetaData,
-						enforceUnixPaths(ck.getFile()).replace(tempDir, ""), cleanedCkClassName, classMetric,
+						fileName, cleanedCkClassName, classMetric,
 						methodMetrics, null, null, RefactoringUtils.Level.METHOD.ordinal(), commitThreshold);
 				stableCommits.add(stableCommitM);
 			}
@@ -278,17 +319,17 @@ public class ProcessMetricsCollector {
 				FieldMetric fieldMetrics = new FieldMetric(field, totalAppearances, project);
 
 				StableCommit stableCommitF = new StableCommit(project, commitMetaData,
-						enforceUnixPaths(ck.getFile()).replace(tempDir, ""), cleanedCkClassName, classMetric, null,
+						fileName, cleanedCkClassName, classMetric, null,
 						null, fieldMetrics, Level.ATTRIBUTE.ordinal(), commitThreshold);
 
 				stableCommits.add(stableCommitF);
 			}
 
 			StableCommit stableCommit = new StableCommit(project, commitMetaData,
-					enforceUnixPaths(ck.getFile()).replace(tempDir, ""), cleanedCkClassName, classMetric, null, null,
+					fileName, cleanedCkClassName, classMetric, null, null,
 					null, RefactoringUtils.Level.CLASS.ordinal(), commitThreshold);
 			stableCommits.add(stableCommit);
-		}, cKTimeoutInSeconds);
+		}
 
 		return stableCommits;
 	}
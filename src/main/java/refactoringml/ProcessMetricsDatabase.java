@@ -0,0 +1,61 @@
+package refactoringml;
+
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import refactoringml.util.CommitMessageClassifier.Category;
+
+// The process metrics of the class files of a project, while its history is mined. PMDatabase keeps a
+// ProcessMetricTracker per file, ColumnarPMDatabase only keeps the counters of the files in primitive columns and
+// creates trackers on demand, for repositories with too many files for the former.
+public interface ProcessMetricsDatabase {
+
+	// Retrieve the process metrics tracker for the given fileName, or null if the file is not tracked
+	ProcessMetricTracker find(String fileName);
+
+	// Report the rename of a file, see PMDatabase.renameFile
+	// Returns the process metrics tracker of the renamed class file under its new name, if it existed in the database
+	ProcessMetricTracker renameFile(String oldFileName, String newFileName, CommitHandle commit);
+
+	// Report the move of all class files in the old directory and its subdirectories to the new one
+	// Returns false if nothing was moved, because the directory cannot be moved as a whole, see PathTrie.moveDirectory
+	boolean renameDirectory(String oldDirectory, String newDirectory);
+
+	// Amount of class files in the given directory and its subdirectories
+	int countFiles(String directory);
+
+	// Remove the given fileName from the process metrics database
+	// Returns the old process metrics tracker of the deleted class file, if any existed in the database
+	ProcessMetricTracker removeFile(String fileName);
+
+	// Report a commit changing the given class file, with the categories of the commit message
+	// Returns the tracker of the file if it passed one of the commit thresholds with this commit, otherwise null
+	ProcessMetricTracker reportChanges(String fileName, CommitHandle commit, Set<Category> messageCategories,
+			String authorName, int linesAdded, int linesDeleted, List<Integer> commitThresholds);
+
+	// Reset the tracker with latest refactoring and its commit
+	// the commitCounter will be zero again
+	void reportRefactoring(String fileName, CommitHandle commit);
+
+	// Find all stable instances in the database, i.e. the class files passing one of the commit thresholds, and
+	// count them as passed like ProcessMetricTracker.calculateStability
+	default List<ProcessMetricTracker> findStableInstances(List<Integer> commitThresholds) {
+		return findStableInstances(commitThresholds, null);
+	}
+
+	// Same, only the class files passing the given one of the commit thresholds, or all of them if it is null
+	List<ProcessMetricTracker> findStableInstances(List<Integer> commitThresholds, Integer commitThreshold);
+
+	// Amount of class files in the database
+	int size();
+
+	// Visit all trackers in the database one by one, e.g. to write a checkpoint
+	void forEachTracker(Consumer<? super ProcessMetricTracker> action);
+
+	// Visit the base commits of the trackers, at least once each
+	void forEachBaseCommit(Consumer<? super CommitHandle> action);
+
+	// Add a tracker restored from a checkpoint
+	void restore(ProcessMetricTracker pmTracker);
+}
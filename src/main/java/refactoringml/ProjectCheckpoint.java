@@ -0,0 +1,255 @@
+package refactoringml;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+
+import refactoringml.db.ProcessMetrics;
+import refactoringml.db.Project;
+
+// State of a project after one of its commits was processed and committed to the database:
+// the trackers of the PMDatabase, the commit and the exceptions so far. Rows of the project
+// with an id above maxRowId were stored after the checkpoint and must be deleted before
+// the project is resumed from it.
+public class ProjectCheckpoint {
+	private static final int MAGIC = 0x524d4c43;
+	// increase when the file layout changes, older checkpoints are rejected then
+	private static final int VERSION = 2;
+
+	private final Project project;
+	private final String lastCommitHash;
+	private final int lastCommitNumber;
+	private final int exceptionsCount;
+	private final long maxRowId;
+	private final ProcessMetricsDatabase pmDatabase;
+
+	public ProjectCheckpoint(Project project, String lastCommitHash, int lastCommitNumber, int exceptionsCount,
+			long maxRowId, ProcessMetricsDatabase pmDatabase) {
+		this.project = project;
+		this.lastCommitHash = lastCommitHash;
+		this.lastCommitNumber = lastCommitNumber;
+		this.exceptionsCount = exceptionsCount;
+		this.maxRowId = maxRowId;
+		this.pmDatabase = pmDatabase;
+	}
+
+	public static Path path(Path checkpointsPath, Project project) {
+		return checkpointsPath.resolve(project.id + ".checkpoint");
+	}
+
+	// Write the checkpoint to a temporary file first, so that a crash while writing
+	// keeps the previous checkpoint
+	public void write(Path file) throws IOException {
+		Files.createDirectories(file.getParent());
+		Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+				write(out);
+			}
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	// Read a checkpoint, the restored metrics and commits belong to the given project
+	public static ProjectCheckpoint read(Path file, Project project) throws IOException {
+		return read(file, project, new PMDatabase());
+	}
+
+	// Same, the trackers are restored into the given empty database
+	public static ProjectCheckpoint read(Path file, Project project, ProcessMetricsDatabase pmDatabase)
+			throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() != MAGIC)
+				throw new IOException(file + " is not a checkpoint");
+			int version = in.readInt();
+			if (version != VERSION)
+				throw new IOException(
+						String.format("Checkpoint %s has version %d, expected %d", file, version, VERSION));
+			long projectId = in.readLong();
+			String gitUrl = readString(in);
+			if (projectId != project.id || !gitUrl.equals(project.gitUrl))
+				throw new IOException(String.format("Checkpoint %s belongs to project %d (%s), not to %d (%s)", file,
+						projectId, gitUrl, project.id, project.gitUrl));
+
+			String lastCommitHash = readString(in);
+			int lastCommitNumber = in.readInt();
+			int exceptionsCount = in.readInt();
+			long maxRowId = in.readLong();
+
+			// many trackers share the same base commit
+			int commitCount = in.readInt();
+			List<CommitHandle> commits = new ArrayList<>(commitCount);
+			for (int i = 0; i < commitCount; i++)
+				commits.add(readCommit(in, project, maxRowId));
+
+			int trackerCount = in.readInt();
+			for (int i = 0; i < trackerCount; i++) {
+				String fileName = readString(in);
+				int commit = in.readInt();
+				int currentCommitThreshold = in.readInt();
+				ProcessMetrics baseProcessMetrics = readProcessMetrics(in, project);
+				ProcessMetrics currentProcessMetrics = readProcessMetrics(in, project);
+				pmDatabase.restore(new ProcessMetricTracker(fileName, commit < 0 ? null : commits.get(commit),
+						baseProcessMetrics, currentProcessMetrics, currentCommitThreshold));
+			}
+			return new ProjectCheckpoint(project, lastCommitHash, lastCommitNumber, exceptionsCount, maxRowId,
+					pmDatabase);
+		}
+	}
+
+	private void write(DataOutputStream out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+
+		Map<CommitHandle, Integer> commits = new IdentityHashMap<>();
+		List<CommitHandle> commitList = new ArrayList<>();
+		pmDatabase.forEachBaseCommit(commit -> {
+			if (!commits.containsKey(commit)) {
+				commits.put(commit, commitList.size());
+				commitList.add(commit);
+			}
+		});
+
+		out.writeLong(project.id);
+		writeString(out, project.gitUrl);
+		writeString(out, lastCommitHash);
+		out.writeInt(lastCommitNumber);
+		out.writeInt(exceptionsCount);
+		out.writeLong(maxRowId);
+
+		out.writeInt(commitList.size());
+		for (CommitHandle commit : commitList)
+			writeCommit(out, commit);
+
+		// the trackers are streamed, a columnar database creates each one only while it is written
+		out.writeInt(pmDatabase.size());
+		try {
+			pmDatabase.forEachTracker(tracker -> {
+				try {
+					writeTracker(out, tracker, commits);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	private static void writeTracker(DataOutputStream out, ProcessMetricTracker tracker,
+			Map<CommitHandle, Integer> commits) throws IOException {
+		writeString(out, tracker.getFileName());
+		CommitHandle commit = tracker.getBaseCommit();
+		out.writeInt(commit == null ? -1 : commits.get(commit));
+		out.writeInt(tracker.getCommitCountThreshold());
+		writeProcessMetrics(out, tracker.getBaseProcessMetrics());
+		writeProcessMetrics(out, tracker.getCurrentProcessMetrics());
+	}
+
+	private static void writeCommit(DataOutputStream out, CommitHandle commit) throws IOException {
+		out.writeLong(commit.getCommitMetaDataId() == null ? -1 : commit.getCommitMetaDataId());
+		byte[] commitId = new byte[Constants.OBJECT_ID_LENGTH];
+		commit.getCommitId().copyRawTo(commitId, 0);
+		out.write(commitId);
+		out.writeInt(commit.getCommitNumber());
+	}
+
+	private static CommitHandle readCommit(DataInputStream in, Project project, long maxRowId) throws IOException {
+		long id = in.readLong();
+		byte[] commitId = new byte[Constants.OBJECT_ID_LENGTH];
+		in.readFully(commitId);
+		CommitHandle commit = new CommitHandle(in.readInt(), ObjectId.fromRaw(commitId), project);
+		// a commit stored after the checkpoint is stored again once its tracker is stable
+		commit.setCommitMetaDataId(id < 0 || id > maxRowId ? null : id);
+		return commit;
+	}
+
+	private static void writeProcessMetrics(DataOutputStream out, ProcessMetrics processMetrics) throws IOException {
+		out.writeInt(processMetrics.qtyOfCommits);
+		out.writeInt(processMetrics.linesAdded);
+		out.writeInt(processMetrics.linesDeleted);
+		out.writeInt(processMetrics.bugFixCount);
+		out.writeInt(processMetrics.refactoringsInvolved);
+		Map<String, Integer> authors = processMetrics.getAllAuthors();
+		out.writeInt(authors.size());
+		for (Map.Entry<String, Integer> author : authors.entrySet()) {
+			writeString(out, author.getKey());
+			out.writeInt(author.getValue());
+		}
+	}
+
+	private static ProcessMetrics readProcessMetrics(DataInputStream in, Project project) throws IOException {
+		int qtyOfCommits = in.readInt();
+		int linesAdded = in.readInt();
+		int linesDeleted = in.readInt();
+		int bugFixCount = in.readInt();
+		int refactoringsInvolved = in.readInt();
+		int authorCount = in.readInt();
+		Map<String, Integer> authors = new HashMap<>(authorCount * 2);
+		for (int i = 0; i < authorCount; i++)
+			authors.put(readString(in), in.readInt());
+		return new ProcessMetrics(qtyOfCommits, linesAdded, linesDeleted, bugFixCount, refactoringsInvolved, authors,
+				project);
+	}
+
+	// writeUTF is limited to 64KB
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		if (s == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0)
+			return null;
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	public Project getProject() {
+		return project;
+	}
+
+	public String getLastCommitHash() {
+		return lastCommitHash;
+	}
+
+	public int getLastCommitNumber() {
+		return lastCommitNumber;
+	}
+
+	public int getExceptionsCount() {
+		return exceptionsCount;
+	}
+
+	public long getMaxRowId() {
+		return maxRowId;
+	}
+
+	public ProcessMetricsDatabase getPmDatabase() {
+		return pmDatabase;
+	}
+}
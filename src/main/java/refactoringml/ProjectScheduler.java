@@ -0,0 +1,195 @@
+package refactoringml;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import org.jboss.logging.Logger;
+
+import refactoringml.util.ProjectCostEstimator;
+
+// Runs projects on a fixed set of threads, the project with the highest estimated cost first, so that
+// a huge project does not start last and delay the end of the whole run.
+// Projects are read ahead into a window of limited size and ordered within it. Projects with a cost
+// below smallProjectCost wait in a separate lane with its own threads, so that they keep being mined
+// while all other threads are busy with huge projects. The other threads take small projects when no
+// large one is waiting.
+// Projects of unknown cost, e.g. not cloned yet, are neither small nor large: they wait in input order and
+// are taken by the threads of either lane once no project of their own lane is waiting.
+public class ProjectScheduler {
+	private static final Logger log = Logger.getLogger(ProjectScheduler.class);
+
+	// highest cost first, in input order for the same cost
+	private static final Comparator<ScheduledProject> ORDER = Comparator
+			.comparingLong((ScheduledProject project) -> project.cost).reversed()
+			.thenComparingInt(project -> project.lineNumber);
+
+	private final PriorityQueue<ScheduledProject> largeProjects = new PriorityQueue<>(ORDER);
+	private final PriorityQueue<ScheduledProject> smallProjects = new PriorityQueue<>(ORDER);
+	private final Queue<ScheduledProject> unknownProjects = new ArrayDeque<>();
+	private final Semaphore window;
+	private final long smallProjectCost;
+	private final Consumer<ScheduledProject> processor;
+	// null to start a project as soon as a thread is free
+	private final AdmissionController admissionController;
+	private final List<Thread> threads = new ArrayList<>();
+	// estimates the costs of submitted projects in input order, so that the caller goes on reading the input
+	private final ExecutorService estimator = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "project-cost-estimator");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private boolean closed;
+
+	public static class ScheduledProject {
+		private final String line;
+		private final int lineNumber;
+		private final long cost;
+
+		public ScheduledProject(String line, int lineNumber, long cost) {
+			this.line = line;
+			this.lineNumber = lineNumber;
+			this.cost = cost;
+		}
+
+		public String getLine() {
+			return line;
+		}
+
+		public int getLineNumber() {
+			return lineNumber;
+		}
+
+		public long getCost() {
+			return cost;
+		}
+	}
+
+	public ProjectScheduler(int threads, int smallLaneThreads, int window, long smallProjectCost,
+			Consumer<ScheduledProject> processor) {
+		this(threads, smallLaneThreads, window, smallProjectCost, processor, null);
+	}
+
+	// threads: amount of threads in total, smallLaneThreads of them only mine small projects
+	// window: amount of projects waiting to be started, the more the better the order
+	// admissionController: decides when a thread may start the project it took, null to start it right away
+	public ProjectScheduler(int threads, int smallLaneThreads, int window, long smallProjectCost,
+			Consumer<ScheduledProject> processor, AdmissionController admissionController) {
+		this.window = new Semaphore(Math.max(1, window));
+		this.smallProjectCost = smallProjectCost;
+		this.processor = processor;
+		this.admissionController = admissionController;
+
+		// at least one thread takes the large projects
+		int smallLane = Math.max(0, Math.min(smallLaneThreads, threads - 1));
+		for (int i = 0; i < threads; i++) {
+			boolean small = i < smallLane;
+			Thread thread = new Thread(() -> work(small), (small ? "small-project-" : "project-") + i);
+			this.threads.add(thread);
+			thread.start();
+		}
+	}
+
+	// Blocks while the window is full
+	public void submit(ScheduledProject project) throws InterruptedException {
+		window.acquire();
+		add(project);
+	}
+
+	// Blocks while the window is full. The cost is estimated in the background, the project waits in the window
+	// meanwhile. A cost that cannot be estimated is unknown.
+	public void submit(String line, int lineNumber, LongSupplier cost) throws InterruptedException {
+		window.acquire();
+		try {
+			estimator.execute(() -> {
+				long estimatedCost = ProjectCostEstimator.UNKNOWN_COST;
+				try {
+					estimatedCost = cost.getAsLong();
+				} catch (RuntimeException e) {
+					log.warnf(e, "Could not estimate the cost of %s", line);
+				}
+				add(new ScheduledProject(line, lineNumber, estimatedCost));
+			});
+		} catch (RejectedExecutionException e) {
+			window.release();
+			throw new IllegalStateException("The scheduler does not accept projects anymore", e);
+		}
+	}
+
+	// No more projects are submitted, the threads end once all waiting projects are mined
+	public void close() throws InterruptedException {
+		// the projects still being estimated are waiting as well
+		estimator.shutdown();
+		estimator.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		synchronized (this) {
+			closed = true;
+			notifyAll();
+		}
+	}
+
+	public void awaitTermination() throws InterruptedException {
+		for (Thread thread : threads)
+			thread.join();
+	}
+
+	// The window slot of the project is acquired already
+	private synchronized void add(ScheduledProject project) {
+		if (closed) {
+			window.release();
+			throw new IllegalStateException("The scheduler does not accept projects anymore");
+		}
+		if (project.cost == ProjectCostEstimator.UNKNOWN_COST)
+			unknownProjects.add(project);
+		else
+			(project.cost < smallProjectCost ? smallProjects : largeProjects).add(project);
+		notifyAll();
+	}
+
+	// Returns null once the scheduler is closed and no project is waiting for this lane
+	private synchronized ScheduledProject take(boolean smallLane) throws InterruptedException {
+		while (true) {
+			ScheduledProject project = smallLane ? smallProjects.poll() : largeProjects.poll();
+			if (project == null)
+				project = unknownProjects.poll();
+			// the threads of the large lane also take small projects
+			if (project == null && !smallLane)
+				project = smallProjects.poll();
+			if (project != null) {
+				window.release();
+				return project;
+			}
+			if (closed)
+				return null;
+			wait();
+		}
+	}
+
+	private void work(boolean smallLane) {
+		try {
+			for (ScheduledProject project = take(smallLane); project != null; project = take(smallLane)) {
+				if (admissionController != null)
+					admissionController.admit(project);
+				try {
+					processor.accept(project);
+				} catch (RuntimeException e) {
+					log.errorf(e, "Could not process %s", project.line);
+				} finally {
+					if (admissionController != null)
+						admissionController.finished(project);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -6,12 +6,9 @@ import static refactoringml.util.CKUtils.extractMethodMetrics;
 import static refactoringml.util.FilePathUtils.enforceUnixPaths;
 import static refactoringml.util.FilePathUtils.fileNameOnly;
 import static refactoringml.util.FilePathUtils.lastSlashDir;
-import static refactoringml.util.FileUtils.cleanTempDir;
-import static refactoringml.util.FileUtils.createTmpDir;
 import static refactoringml.util.FileUtils.fileDoesNotExist;
 import static refactoringml.util.FileUtils.writeFile;
 import static refactoringml.util.JGitUtils.getMapWithOldAndNewFiles;
-import static refactoringml.util.JGitUtils.readFileFromGit;
 import static refactoringml.util.LogUtils.createErrorState;
 import static refactoringml.util.LogUtils.createRefactoringErrorState;
 import static refactoringml.util.LogUtils.shortSummary;
@@ -28,19 +25,20 @@ import static refactoringml.util.RefactoringUtils.refactoringTypeInNumber;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-
-import com.github.mauricioaniche.ck.CKMethodResult;
+import java.util.Set;
 
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.eclipse.jgit.diff.DiffEntry;
-import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.jboss.logging.Logger;
 import org.refactoringminer.api.Refactoring;
 
+import refactoringml.db.BatchPersister;
 import refactoringml.db.ClassMetric;
 import refactoringml.db.CommitMetaData;
 import refactoringml.db.FieldMetric;
@@ -48,25 +46,31 @@ import refactoringml.db.MethodMetric;
 import refactoringml.db.Project;
 import refactoringml.db.RefactoringCommit;
 import refactoringml.db.VariableMetric;
+import refactoringml.util.BlobReader;
+import refactoringml.util.CKClassSnapshot;
+import refactoringml.util.CKMethodSnapshot;
+import refactoringml.util.CKResultCache;
 import refactoringml.util.CKUtils;
 import refactoringml.util.RefactoringUtils;
 
 public class RefactoringAnalyzer {
-	private String tempDir;
 	private Project project;
-	private Repository repository;
+	private BlobReader blobReader;
 	private boolean storeFullSourceCode;
 	private String fileStorageDir;
+	private CKResultCache ckResultCache;
+	private BatchPersister batchPersister;
 
 	private static final Logger log = Logger.getLogger(RefactoringAnalyzer.class);
 
-	public RefactoringAnalyzer(Project project, Repository repository, String fileStorageDir,
-			boolean storeFullSourceCode) {
+	public RefactoringAnalyzer(Project project, BlobReader blobReader, String fileStorageDir,
+			boolean storeFullSourceCode, CKResultCache ckResultCache, BatchPersister batchPersister) {
 		this.project = project;
-		this.repository = repository;
+		this.blobReader = blobReader;
 		this.storeFullSourceCode = storeFullSourceCode;
-		this.tempDir = null;
 		this.fileStorageDir = lastSlashDir(fileStorageDir);
+		this.ckResultCache = ckResultCache;
+		this.batchPersister = batchPersister;
 	}
 
 	public List<RefactoringCommit> collectCommitData(RevCommit commit, CommitMetaData superCommitMetaData,
@@ -166,18 +170,15 @@ public class RefactoringAnalyzer {
 
 		try {
 			/**
-			 * Now, we get the contents of the file in the previous version, which we use to
-			 * extract the features.
+			 * Now, we get the file in the previous version, which we use to extract the
+			 * features. The CK results are cached by the blob of the file.
 			 */
-			String sourceCodeInPreviousVersion = readFileFromGit(repository, parentCommitId, fileName);
-			tempDir = createTmpDir();
-			writeFile(tempDir + "/" + fileName, sourceCodeInPreviousVersion);
-
-			RefactoringCommit refactoringCommit = calculateCkMetrics(refactoredClassNames, superCommitMetaData,
-					refactoring, refactoringSummary, cKTimeoutInSeconds);
-			cleanTempDir(tempDir);
+			ObjectId blobInPreviousVersion = blobReader.getBlobId(parentCommitId, fileName);
+			List<CKClassSnapshot> ckResults = CKUtils.calculate(ckResultCache, blobReader, blobInPreviousVersion,
+					fileName, superCommitMetaData.commitId, project.gitUrl, cKTimeoutInSeconds);
 
-			return refactoringCommit;
+			return calculateCkMetrics(fileName, ckResults, refactoredClassNames, superCommitMetaData, refactoring,
+					refactoringSummary);
 		} catch (IOException e) {
 			/**
 			 * We could not open the file in the previous commit. This should not happen.
@@ -192,51 +193,49 @@ public class RefactoringAnalyzer {
 	}
 
 	private void storeSourceCode(long id, Refactoring refactoring, RevCommit currentCommit) throws IOException {
-
-		RevCommit commitParent = currentCommit.getParent(0);
-
 		// for the before refactoring, we get its source code in the previous commit
-		for (ImmutablePair<String, String> pair : refactoring.getInvolvedClassesBeforeRefactoring()) {
-			String fileName = pair.getLeft();
-
-			try {
-				String sourceCode = readFileFromGit(repository, commitParent, fileName);
-				writeFile(fileStorageDir + id + "/before/" + fileNameOnly(fileName), sourceCode);
-			} catch (Exception e) {
-				log.error("Could not write raw source code for file before refactoring, id=" + id + ", file name="
-						+ fileName
-						+ createRefactoringErrorState(currentCommit.getName(), project, refactoring.toString().trim()),
-						e);
-			}
-		}
-
+		storeSourceCode(id, refactoring, currentCommit, currentCommit.getParent(0),
+				refactoring.getInvolvedClassesBeforeRefactoring(), "before");
 		// for the after refactoring, we get its source code in the current commit
-		for (ImmutablePair<String, String> pair : refactoring.getInvolvedClassesAfterRefactoring()) {
-			String fileName = pair.getLeft();
+		storeSourceCode(id, refactoring, currentCommit, currentCommit, refactoring.getInvolvedClassesAfterRefactoring(),
+				"after");
+	}
+
+	// All files of the refactoring are looked up in the commit at once
+	private void storeSourceCode(long id, Refactoring refactoring, RevCommit currentCommit, RevCommit commit,
+			Set<ImmutablePair<String, String>> involvedClasses, String version) throws IOException {
+		Set<String> fileNames = new LinkedHashSet<>();
+		for (ImmutablePair<String, String> pair : involvedClasses)
+			fileNames.add(pair.getLeft());
+		Map<String, ObjectId> blobIds = blobReader.getBlobIds(commit, fileNames);
 
+		for (String fileName : fileNames) {
 			try {
-				String sourceCode = readFileFromGit(repository, currentCommit, fileName);
-				writeFile(fileStorageDir + id + "/after/" + fileNameOnly(fileName), sourceCode);
+				ObjectId blobId = blobIds.get(fileName);
+				if (blobId == null)
+					throw new IllegalArgumentException("No path found in " + commit.getName() + ": " + fileName);
+				writeFile(fileStorageDir + id + "/" + version + "/" + fileNameOnly(fileName), blobReader.read(blobId));
 			} catch (Exception e) {
-				log.error("Could not write raw source code for file after refactoring, id=" + id + ", file name="
-						+ fileName
+				log.error("Could not write raw source code for file " + version + " refactoring, id=" + id
+						+ ", file name=" + fileName
 						+ createRefactoringErrorState(currentCommit.getName(), project, refactoring.toString().trim()),
 						e);
 			}
 		}
 	}
 
-	private RefactoringCommit calculateCkMetrics(ImmutablePair<String, String> refactoredClasses,
-			CommitMetaData commitMetaData, Refactoring refactoring, String refactoringSummary, int cKTimeoutInSeconds)
-			throws InterruptedException {
+	// The CK results might be cached for the same content under another path, so the instances get the fileName
+	private RefactoringCommit calculateCkMetrics(String fileName, List<CKClassSnapshot> ckResults,
+			ImmutablePair<String, String> refactoredClasses, CommitMetaData commitMetaData, Refactoring refactoring,
+			String refactoringSummary) {
 		final List<RefactoringCommit> refactorings = new ArrayList<>();
-		CKUtils.calculate(tempDir, commitMetaData.commitId, project.gitUrl, ck -> {
+		for (CKClassSnapshot ck : ckResults) {
 			String cleanedCkClassName = cleanDollarSign(ck.getClassName());
 
-			// Ignore all subclass callbacks from CK, that are not relevant in this case
+			// Ignore all subclass results from CK, that are not relevant in this case
 			if (!cleanedCkClassName.equals(refactoredClasses.getLeft())
 					&& !cleanedCkClassName.equals(refactoredClasses.getRight())) {
-				return;
+				continue;
 			}
 			// collect the class level metrics
 			ClassMetric classMetric = extractClassMetrics(ck, project);
@@ -248,7 +247,7 @@ public class RefactoringAnalyzer {
 				String fullRefactoredMethod = CKUtils
 						.simplifyFullMethodName(RefactoringUtils.fullMethodName(getRefactoredMethod(refactoring)));
 
-				Optional<CKMethodResult> ckMethod = ck.getMethods().stream().filter(
+				Optional<CKMethodSnapshot> ckMethod = ck.getMethods().stream().filter(
 						x -> CKUtils.simplifyFullMethodName(x.getMethodName()).equalsIgnoreCase(fullRefactoredMethod))
 						.findFirst();
 
@@ -263,9 +262,9 @@ public class RefactoringAnalyzer {
 							+ refactoredClasses.getLeft() + "/" + refactoredClasses.getRight()
 							+ "\nAll methods found by CK: " + methods
 							+ createRefactoringErrorState(commitMetaData.commitId, project, refactoringSummary));
-					return;
+					continue;
 				} else {
-					CKMethodResult ckMethodResult = ckMethod.get();
+					CKMethodSnapshot ckMethodResult = ckMethod.get();
 					methodMetrics = extractMethodMetrics(ckMethodResult, project);
 
 					if (isVariableLevelRefactoring(refactoring)) {
@@ -297,12 +296,12 @@ public class RefactoringAnalyzer {
 			}
 
 			// assemble the final object
-			RefactoringCommit refactoringCommit = new RefactoringCommit(project, commitMetaData,
-					enforceUnixPaths(ck.getFile()).replace(tempDir, ""), cleanedCkClassName,
-					refactoring.getRefactoringType().getDisplayName(), refactoringTypeInNumber(refactoring),
-					refactoringSummary, classMetric, methodMetrics, variableMetrics, fieldMetrics);
+			RefactoringCommit refactoringCommit = new RefactoringCommit(project, commitMetaData, fileName,
+					cleanedCkClassName, refactoring.getRefactoringType().getDisplayName(),
+					refactoringTypeInNumber(refactoring), refactoringSummary, classMetric, methodMetrics,
+					variableMetrics, fieldMetrics);
 			refactorings.add(refactoringCommit);
-		}, cKTimeoutInSeconds);
+		}
 
 		/**
 		 * It is possible that we did not find the class among the results of CK.
@@ -316,9 +315,7 @@ public class RefactoringAnalyzer {
 			log.error("CK did not find class " + refactoredClasses.getLeft() + "/" + refactoredClasses.getRight()
 					+ createRefactoringErrorState(commitMetaData.commitId, project, refactoringSummary));
 		} else {
-			for (RefactoringCommit refactoringCommit : refactorings) {
-				refactoringCommit.persist();
-			}
+			batchPersister.persistAll(refactorings);
 		}
 
 		return refactorings.isEmpty() ? null : refactorings.get(0);
@@ -0,0 +1,193 @@
+package refactoringml;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.jboss.logging.Logger;
+
+import refactoringml.util.JGitUtils;
+
+// Clones the repositories of the next projects while the current ones are mined, so that the mining threads do
+// not wait for the network and the disk. A project is passed on once its repository is cloned, also when the
+// clone failed, so that the failure is handled like any other when the project is mined.
+// The clones of the prefetched projects may use at most diskBudget bytes: before a repository is cloned, the
+// clones of mined projects are deleted, the least recently mined first. While the clones waiting to be mined or
+// being mined already use the whole budget, no more repositories are cloned.
+public class RepositoryPrefetcher {
+	private static final Logger log = Logger.getLogger(RepositoryPrefetcher.class);
+
+	@FunctionalInterface
+	public interface Cloner {
+		// Clone the repository unless the clone exists already
+		void cloneRepository(String gitUrl, Path repositoriesPath) throws Exception;
+	}
+
+	private static class Clone {
+		private long size;
+		// projects prefetched but not mined yet
+		private int users;
+	}
+
+	private final Path repositoriesPath;
+	// 0 for no limit
+	private final long diskBudget;
+	private final Cloner cloner;
+	private final ExecutorService pool;
+	private final Semaphore slots;
+	private final Map<Path, Clone> clones = new HashMap<>();
+	// clones without users, the least recently used first
+	private final LinkedHashSet<Path> evictable = new LinkedHashSet<>();
+	// clones being written, no other project may use them at the same time
+	private final Set<Path> cloning = new HashSet<>();
+	private long usedBytes;
+	private long evicted;
+
+	// threads: amount of repositories cloned at the same time, prefetch blocks while all are busy
+	public RepositoryPrefetcher(int threads, long diskBudget, Path repositoriesPath, Cloner cloner) {
+		this.repositoriesPath = repositoriesPath;
+		this.diskBudget = diskBudget;
+		this.cloner = cloner;
+		this.slots = new Semaphore(Math.max(1, threads));
+		AtomicInteger threadNumber = new AtomicInteger();
+		this.pool = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+			Thread thread = new Thread(r, "prefetch-" + threadNumber.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	// Clones the repository in the background and runs next once it is cloned. Local repositories are not cloned,
+	// next runs right away. Blocks while all threads are busy.
+	public void prefetch(String gitUrl, Runnable next) throws InterruptedException {
+		if (JGitUtils.isLocal(gitUrl)) {
+			next.run();
+			return;
+		}
+		slots.acquire();
+		try {
+			pool.execute(() -> {
+				try {
+					cloneWithinBudget(gitUrl);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				} finally {
+					slots.release();
+				}
+				next.run();
+			});
+		} catch (RuntimeException e) {
+			slots.release();
+			throw e;
+		}
+	}
+
+	// The project is mined, its clone may be deleted to make room for the next ones
+	public synchronized void finished(String gitUrl) {
+		if (JGitUtils.isLocal(gitUrl))
+			return;
+		Path clonePath = JGitUtils.getClonePath(gitUrl, repositoriesPath);
+		Clone clone = clones.get(clonePath);
+		if (clone == null || clone.users == 0)
+			return;
+		if (--clone.users == 0)
+			evictable.add(clonePath);
+		notifyAll();
+	}
+
+	// Waits for the running clones, projects submitted afterwards are rejected
+	public void shutdown() throws InterruptedException {
+		pool.shutdown();
+		pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+	}
+
+	public synchronized long getUsedBytes() {
+		return usedBytes;
+	}
+
+	public synchronized long getEvicted() {
+		return evicted;
+	}
+
+	private void cloneWithinBudget(String gitUrl) throws InterruptedException {
+		Path clonePath = JGitUtils.getClonePath(gitUrl, repositoriesPath);
+		if (!acquire(clonePath))
+			return;
+
+		long size = 0;
+		try {
+			long start = System.currentTimeMillis();
+			cloner.cloneRepository(gitUrl, repositoriesPath);
+			size = Files.exists(clonePath) ? FileUtils.sizeOfDirectory(clonePath.toFile()) : 0;
+			log.debugf("Prefetched %s in %d ms (%d MB)", gitUrl, System.currentTimeMillis() - start,
+					size / 1024 / 1024);
+		} catch (Exception e) {
+			// the project fails when it is mined and tries to clone again
+			log.warnf(e, "Could not prefetch %s", gitUrl);
+		} finally {
+			release(clonePath, size);
+		}
+	}
+
+	// Makes room for the clone and marks it as used. Returns false if the clone exists and is used already.
+	private synchronized boolean acquire(Path clonePath) throws InterruptedException {
+		while (cloning.contains(clonePath))
+			wait();
+		Clone clone = clones.get(clonePath);
+		if (clone != null) {
+			clone.users++;
+			evictable.remove(clonePath);
+			return false;
+		}
+
+		while (diskBudget > 0 && usedBytes >= diskBudget) {
+			if (!evictable.isEmpty())
+				evict();
+			else if (clones.isEmpty())
+				break;
+			else
+				wait();
+		}
+		cloning.add(clonePath);
+		return true;
+	}
+
+	private synchronized void release(Path clonePath, long size) {
+		cloning.remove(clonePath);
+		Clone clone = new Clone();
+		clone.size = size;
+		clone.users = 1;
+		clones.put(clonePath, clone);
+		usedBytes += size;
+		notifyAll();
+	}
+
+	private synchronized void evict() {
+		Iterator<Path> iterator = evictable.iterator();
+		Path clonePath = iterator.next();
+		iterator.remove();
+		Clone clone = clones.remove(clonePath);
+		usedBytes -= clone.size;
+		evicted++;
+		try {
+			FileUtils.deleteDirectory(clonePath.toFile());
+			log.debugf("Deleted the clone %s (%d MB) to stay within the disk budget", clonePath,
+					clone.size / 1024 / 1024);
+		} catch (IOException e) {
+			log.warnf(e, "Could not delete the clone %s", clonePath);
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package refactoringml;
+
+import java.util.UUID;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.transaction.Transactional;
+
+import org.jboss.logging.Logger;
+
+import refactoringml.db.RunLedgerEntry;
+import refactoringml.db.RunLedgerEntry.State;
+
+// Records the state of every project of a run in the RunLedgerEntry table, every change in its own
+// transaction. Replaces the failed projects file, which was rewritten by all threads at once.
+@ApplicationScoped
+public class RunLedger {
+	private static final Logger log = Logger.getLogger(RunLedger.class);
+
+	private final String runId = UUID.randomUUID().toString();
+
+	@Transactional
+	public void record(String gitUrl, String datasetName, int inputLine, State state, Throwable failure) {
+		new RunLedgerEntry(runId, gitUrl, datasetName, inputLine, state, failure).persist();
+	}
+
+	// Records the change, but only logs if that fails, as the ledger must not stop the mining
+	public void tryRecord(String gitUrl, String datasetName, int inputLine, State state, Throwable failure) {
+		try {
+			record(gitUrl, datasetName, inputLine, state, failure);
+		} catch (RuntimeException e) {
+			log.errorf(e, "Could not record %s as %s in the run ledger", gitUrl, state);
+		}
+	}
+
+	// Whether the project was mined successfully in this or an earlier run
+	@Transactional
+	public boolean isDone(String gitUrl) {
+		return RunLedgerEntry.isDone(gitUrl);
+	}
+
+	public String getRunId() {
+		return runId;
+	}
+}
@@ -0,0 +1,64 @@
+package refactoringml;
+
+import java.util.TreeSet;
+
+import org.jboss.logging.Logger;
+
+// Keeps track of the lines of the input file that are being processed, to report
+// the progress and the line a crashed run can be restarted from.
+// All lines before that one are done, some later lines might be done as well.
+public class RunProgress {
+	private static final Logger log = Logger.getLogger(RunProgress.class);
+
+	private final TreeSet<Integer> inFlight = new TreeSet<>();
+	private final long startTime = System.currentTimeMillis();
+	// the line after the last line read so far
+	private int nextLine;
+	private int done;
+	private int failed;
+
+	// firstLine: the first line of the input file processed in this run, starting at 1
+	public RunProgress(int firstLine) {
+		this.nextLine = firstLine;
+	}
+
+	public synchronized void started(int line) {
+		inFlight.add(line);
+		nextLine = Math.max(nextLine, line + 1);
+	}
+
+	// A line was read, but will not be processed, e.g. because it is empty
+	public synchronized void skipped(int line) {
+		nextLine = Math.max(nextLine, line + 1);
+	}
+
+	public synchronized void finished(int line, String project, boolean succeeded) {
+		inFlight.remove(line);
+		if (succeeded)
+			done++;
+		else
+			failed++;
+
+		double minutes = (System.currentTimeMillis() - startTime) / 1000.0 / 60.0;
+		log.infof("Finished %s (line %d, %s). %d projects done and %d failed in %.1f minutes, %d in progress. "
+				+ "To continue after a crash, start at line %d.", project, line, succeeded ? "done" : "failed", done,
+				failed, minutes, inFlight.size(), getRestartLine());
+	}
+
+	// The line a new run has to start at to process everything not done yet
+	public synchronized int getRestartLine() {
+		return inFlight.isEmpty() ? nextLine : inFlight.first();
+	}
+
+	public synchronized int getDone() {
+		return done;
+	}
+
+	public synchronized int getFailed() {
+		return failed;
+	}
+
+	public synchronized int getInFlight() {
+		return inFlight.size();
+	}
+}
@@ -0,0 +1,60 @@
+package refactoringml;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+// The trackers of a PMDatabase that pass one of the commit thresholds, bucketed by the threshold they pass with
+// their current commit counter, see ProcessMetricTracker.passedThreshold. The database updates a tracker in the
+// index whenever it changes it, so finding the stable instances only checks the trackers in the buckets.
+// Trackers changed outside of the database may stay in their bucket, they are checked again when queried.
+class StabilityIndex {
+	private final List<Integer> commitThresholds;
+	// the trackers passing each threshold, ordered by the threshold
+	private final Map<Integer, Set<ProcessMetricTracker>> buckets = new TreeMap<>();
+
+	StabilityIndex(List<Integer> commitThresholds, Collection<ProcessMetricTracker> pmTrackers) {
+		this.commitThresholds = List.copyOf(commitThresholds);
+		for (int threshold : this.commitThresholds)
+			buckets.put(threshold, new HashSet<>());
+		for (ProcessMetricTracker pmTracker : pmTrackers)
+			update(pmTracker);
+	}
+
+	// Whether the index buckets the trackers by the given thresholds
+	boolean isFor(List<Integer> commitThresholds) {
+		return this.commitThresholds.equals(commitThresholds);
+	}
+
+	// Move the tracker to the bucket of the threshold it passes now, if any
+	void update(ProcessMetricTracker pmTracker) {
+		remove(pmTracker);
+		int threshold = passedThreshold(pmTracker);
+		if (threshold >= 0)
+			buckets.get(threshold).add(pmTracker);
+	}
+
+	void remove(ProcessMetricTracker pmTracker) {
+		for (Set<ProcessMetricTracker> bucket : buckets.values())
+			bucket.remove(pmTracker);
+	}
+
+	// The trackers in the bucket of the given threshold, or in all buckets if the threshold is null
+	List<ProcessMetricTracker> candidates(Integer commitThreshold) {
+		List<ProcessMetricTracker> candidates = new ArrayList<>();
+		for (Map.Entry<Integer, Set<ProcessMetricTracker>> bucket : buckets.entrySet()) {
+			if (commitThreshold == null || commitThreshold.equals(bucket.getKey()))
+				candidates.addAll(bucket.getValue());
+		}
+		return candidates;
+	}
+
+	int passedThreshold(ProcessMetricTracker pmTracker) {
+		return ProcessMetricTracker.passedThreshold(pmTracker.getCommitCounter(), pmTracker.getCommitCountThreshold(),
+				commitThresholds);
+	}
+}
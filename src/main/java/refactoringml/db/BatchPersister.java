@@ -0,0 +1,87 @@
+package refactoringml.db;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import javax.persistence.EntityManager;
+
+import io.quarkus.hibernate.orm.panache.Panache;
+
+// Persists instances together with their metrics, grouped by entity type.
+// Hibernate queues the inserts in the order of the persist calls and only batches
+// consecutive inserts of the same table, while persisting an instance through
+// the cascades alternates between all metric tables. Must be used inside a transaction.
+// Class and method metrics that were already stored are referenced instead (see MetricRegistry).
+public class BatchPersister {
+	private final int flushSize;
+	private final MetricRegistry metricRegistry;
+	// entities persisted since the last flush
+	private int pending;
+
+	// flushSize: flush the session after that many entities; 0 to leave it to the end of the transaction
+	public BatchPersister(int flushSize, MetricRegistry metricRegistry) {
+		this.flushSize = flushSize;
+		this.metricRegistry = metricRegistry;
+	}
+
+	public void persistAll(Collection<? extends Instance> instances) {
+		EntityManager entityManager = Panache.getEntityManager();
+		for (Instance instance : instances) {
+			if (instance.classMetrics != null && instance.classMetrics.id == null)
+				instance.classMetrics = metricRegistry.deduplicate(instance.classMetrics, entityManager);
+			if (instance.methodMetrics != null && instance.methodMetrics.id == null)
+				instance.methodMetrics = metricRegistry.deduplicate(instance.methodMetrics, entityManager);
+		}
+
+		// one metric object is often shared by several instances, e.g. the class
+		// metrics of all instances of a class
+		persistEach(entityManager, instances, instance -> instance.commitMetaData);
+		persistEach(entityManager, instances, instance -> instance.classMetrics);
+		persistEach(entityManager, instances, instance -> instance.methodMetrics);
+		persistEach(entityManager, instances, instance -> instance.variableMetrics);
+		persistEach(entityManager, instances, instance -> instance.fieldMetrics);
+		persistEach(entityManager, instances, instance -> instance.processMetrics);
+		persistEach(entityManager, instances, instance -> instance);
+
+		if (flushSize > 0 && pending >= flushSize) {
+			entityManager.flush();
+			pending = 0;
+		}
+	}
+
+	// Must be called after the transaction that used this persister was committed
+	public void afterCommit() {
+		metricRegistry.commit();
+		pending = 0;
+	}
+
+	// Must be called after the transaction that used this persister was rolled back
+	public void afterRollback() {
+		metricRegistry.rollback();
+		pending = 0;
+	}
+
+	public MetricRegistry getMetricRegistry() {
+		return metricRegistry;
+	}
+
+	private void persistEach(EntityManager entityManager, Collection<? extends Instance> instances,
+			Function<Instance, PooledEntity> entity) {
+		Set<PooledEntity> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+		List<PooledEntity> toPersist = new ArrayList<>();
+		for (Instance instance : instances) {
+			PooledEntity e = entity.apply(instance);
+			if (e != null && e.id == null && seen.add(e))
+				toPersist.add(e);
+		}
+
+		for (PooledEntity e : toPersist)
+			entityManager.persist(e);
+		pending += toPersist.size();
+	}
+}
@@ -2,18 +2,19 @@ package refactoringml.db;
 
 import java.util.Collection;
 
-import javax.persistence.CascadeType;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
 
-import io.quarkus.hibernate.orm.panache.PanacheEntity;
-
 @Entity
 @Table(name = "ClassMetric")
-public class ClassMetric extends PanacheEntity {
+public class ClassMetric extends PooledEntity {
 
 	public boolean isInnerClass;
 	public int classCbo;
@@ -62,7 +63,13 @@ public class ClassMetric extends PanacheEntity {
 	@ManyToOne
 	public Project project;
 
-	@OneToMany(cascade = CascadeType.ALL, mappedBy = "classMetrics", targetEntity = RefactoringCommit.class)
+	// Hash over all metric values, used to store identical class metrics only once (see MetricRegistry)
+	// It leaves out the class on purpose: a row holds metric values only, and instances of different classes or
+	// commits with the same values share it
+	@Column(length = 32)
+	public String contentHash;
+
+	@OneToMany(mappedBy = "classMetrics", targetEntity = RefactoringCommit.class)
 	public Collection<Instance> instances;
 
 	// @OneToOne(cascade = CascadeType.ALL, mappedBy = "classMetrics")
@@ -129,6 +136,53 @@ public class ClassMetric extends PanacheEntity {
 		this.project = project;
 	}
 
+	public String computeContentHash() {
+		Hasher hasher = Hashing.murmur3_128().newHasher();
+		hasher.putBoolean(isInnerClass);
+		hasher.putInt(classCbo);
+		hasher.putInt(classWmc);
+		hasher.putInt(classRfc);
+		hasher.putInt(classLcom);
+		hasher.putInt(classTCC);
+		hasher.putInt(classLCC);
+		hasher.putInt(classNumberOfMethods);
+		hasher.putInt(classNumberOfStaticMethods);
+		hasher.putInt(classNumberOfPublicMethods);
+		hasher.putInt(classNumberOfPrivateMethods);
+		hasher.putInt(classNumberOfProtectedMethods);
+		hasher.putInt(classNumberOfDefaultMethods);
+		hasher.putInt(classNumberOfVisibleMethods);
+		hasher.putInt(classNumberOfAbstractMethods);
+		hasher.putInt(classNumberOfFinalMethods);
+		hasher.putInt(classNumberOfSynchronizedMethods);
+		hasher.putInt(classNumberOfFields);
+		hasher.putInt(classNumberOfStaticFields);
+		hasher.putInt(classNumberOfPublicFields);
+		hasher.putInt(classNumberOfPrivateFields);
+		hasher.putInt(classNumberOfProtectedFields);
+		hasher.putInt(classNumberOfDefaultFields);
+		hasher.putInt(classNumberOfFinalFields);
+		hasher.putInt(classNumberOfSynchronizedFields);
+		hasher.putInt(classNosi);
+		hasher.putInt(classLoc);
+		hasher.putInt(classReturnQty);
+		hasher.putInt(classLoopQty);
+		hasher.putInt(classComparisonsQty);
+		hasher.putInt(classTryCatchQty);
+		hasher.putInt(classParenthesizedExpsQty);
+		hasher.putInt(classStringLiteralsQty);
+		hasher.putInt(classNumbersQty);
+		hasher.putInt(classAssignmentsQty);
+		hasher.putInt(classMathOperationsQty);
+		hasher.putInt(classVariablesQty);
+		hasher.putInt(classMaxNestedBlocks);
+		hasher.putInt(classAnonymousClassesQty);
+		hasher.putInt(classSubClassesQty);
+		hasher.putInt(classLambdasQty);
+		hasher.putInt(classUniqueWordsQty);
+		return hasher.hash().toString();
+	}
+
 	@Override
 	public String toString() {
 		return "ClassMetric{" + "isInnerClass=" + isInnerClass + ", classCbo=" + classCbo + ", classWmc=" + classWmc
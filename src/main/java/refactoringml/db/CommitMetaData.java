@@ -2,6 +2,7 @@ package refactoringml.db;
 
 import java.util.Calendar;
 import java.util.GregorianCalendar;
+import java.util.Set;
 
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
@@ -11,15 +12,16 @@ import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
+import javax.persistence.Transient;
 
 import org.eclipse.jgit.revwalk.RevCommit;
 
-import io.quarkus.hibernate.orm.panache.PanacheEntity;
+import refactoringml.util.CommitMessageClassifier;
 import refactoringml.util.JGitUtils;
 
 @Entity
 @Table(name = "CommitMetaData")
-public class CommitMetaData extends PanacheEntity {
+public class CommitMetaData extends PooledEntity {
 
     //use the unique commit hash to relate from Yes and No to this one
     // for RefactoringCommit, this commit points to the commit the refactoring has happened
@@ -45,6 +47,10 @@ public class CommitMetaData extends PanacheEntity {
     // (we calculate the metrics in the version of file *before* the refactoring)
     public String parentCommitId;
 
+    //categories of the commit message, e.g. bug fix, classified once for all files changed by the commit
+    @Transient
+    public Set<CommitMessageClassifier.Category> messageCategories;
+
     @ManyToOne(cascade = CascadeType.REMOVE)
     @JoinColumn(nullable = false)
 	public Project project;
@@ -2,11 +2,9 @@ package refactoringml.db;
 
 import javax.persistence.*;
 
-import io.quarkus.hibernate.orm.panache.PanacheEntity;
-
 @Entity
 @Table(name = "FieldMetric")
-public class FieldMetric extends PanacheEntity {
+public class FieldMetric extends PooledEntity {
 
 	@Column(nullable = true)
 	public String fieldName;
@@ -8,11 +8,9 @@ import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.MappedSuperclass;
 
-import io.quarkus.hibernate.orm.panache.PanacheEntity;
-
 //Base class for all commits saved in the DB
 @MappedSuperclass
-public abstract class Instance extends PanacheEntity {
+public abstract class Instance extends PooledEntity {
 
     @ManyToOne(cascade = CascadeType.REMOVE)
     @JoinColumn(nullable = false)
@@ -36,10 +34,11 @@ public abstract class Instance extends PanacheEntity {
     // TODO: make this an enum, for better readibility
     public int level;
 
-    @ManyToOne(cascade = CascadeType.ALL)
+    // Shared by all instances with the same metrics (see MetricRegistry), so removing an instance keeps them
+    @ManyToOne(cascade = { CascadeType.PERSIST, CascadeType.MERGE })
     public ClassMetric classMetrics;
 
-    @ManyToOne(cascade = CascadeType.ALL)
+    @ManyToOne(cascade = { CascadeType.PERSIST, CascadeType.MERGE })
     public MethodMetric methodMetrics;
 
     @ManyToOne(cascade = CascadeType.ALL)
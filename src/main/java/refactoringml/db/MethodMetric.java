@@ -1,5 +1,7 @@
 package refactoringml.db;
 
+import java.nio.charset.StandardCharsets;
+
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -7,11 +9,12 @@ import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 
-import io.quarkus.hibernate.orm.panache.PanacheEntity;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 
 @Entity
 @Table(name = "MethodMetric")
-public class MethodMetric extends PanacheEntity {
+public class MethodMetric extends PooledEntity {
 
 	@Column(nullable = true, length = 2000)
 	public String fullMethodName;
@@ -71,6 +74,12 @@ public class MethodMetric extends PanacheEntity {
 	@JoinColumn(nullable = false)
 	public Project project;
 
+	// Hash over the method name and all metric values, used to store identical method metrics only once (see
+	// MetricRegistry)
+	// It leaves out the class on purpose, instances of methods with the same name and values share a row
+	@Column(length = 32)
+	public String contentHash;
+
 	public MethodMetric() {
 	}
 
@@ -115,6 +124,38 @@ public class MethodMetric extends PanacheEntity {
 		return fullMethodName == null ? "" : fullMethodName;
 	}
 
+	public String computeContentHash() {
+		Hasher hasher = Hashing.murmur3_128().newHasher();
+		// the separator keeps e.g. ("ab", "c") and ("a", "bc") apart
+		hasher.putString(getFullMethodName(), StandardCharsets.UTF_8).putChar('\0');
+		hasher.putString(shortMethodName == null ? "" : shortMethodName, StandardCharsets.UTF_8).putChar('\0');
+		hasher.putInt(startLine);
+		hasher.putInt(methodCbo);
+		hasher.putInt(methodWmc);
+		hasher.putInt(methodRfc);
+		hasher.putInt(methodLoc);
+		hasher.putInt(methodReturnQty);
+		hasher.putInt(methodVariablesQty);
+		hasher.putInt(methodParametersQty);
+		hasher.putInt(methodInvocationsQty);
+		hasher.putInt(methodInvocationsLocalQty);
+		hasher.putInt(methodInvocationsIndirectLocalQty);
+		hasher.putInt(methodLoopQty);
+		hasher.putInt(methodComparisonsQty);
+		hasher.putInt(methodTryCatchQty);
+		hasher.putInt(methodParenthesizedExpsQty);
+		hasher.putInt(methodStringLiteralsQty);
+		hasher.putInt(methodNumbersQty);
+		hasher.putInt(methodAssignmentsQty);
+		hasher.putInt(methodMathOperationsQty);
+		hasher.putInt(methodMaxNestedBlocks);
+		hasher.putInt(methodAnonymousClassesQty);
+		hasher.putInt(methodSubClassesQty);
+		hasher.putInt(methodLambdasQty);
+		hasher.putInt(methodUniqueWordsQty);
+		return hasher.hash().toString();
+	}
+
 	@Override
 	public String toString() {
 		return "MethodMetric{" + "fullMethodName='" + fullMethodName + '\'' + ", shortMethodName='" + shortMethodName
@@ -0,0 +1,84 @@
+package refactoringml.db;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+
+// Remembers the class and method metrics stored for a project by their content hash,
+// so that identical metrics, e.g. of a class that is stable for several thresholds or
+// of all methods of a class, are stored once and referenced by id afterwards.
+// Metrics persisted in the current transaction are pending until it commits, a rollback
+// forgets them, as their rows were never written.
+// Metrics are looked up in memory only; once forgotten, identical metrics are stored again.
+public class MetricRegistry {
+	// content hash -> id, least recently used are forgotten first
+	private final Map<String, Long> stored;
+	private final Map<String, PooledEntity> pending = new HashMap<>();
+	private long reused;
+
+	public MetricRegistry(int maxEntries) {
+		this.stored = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	public ClassMetric deduplicate(ClassMetric metric, EntityManager entityManager) {
+		if (metric.contentHash == null)
+			metric.contentHash = metric.computeContentHash();
+		return deduplicate(ClassMetric.class, metric, metric.contentHash, entityManager);
+	}
+
+	public MethodMetric deduplicate(MethodMetric metric, EntityManager entityManager) {
+		if (metric.contentHash == null)
+			metric.contentHash = metric.computeContentHash();
+		return deduplicate(MethodMetric.class, metric, metric.contentHash, entityManager);
+	}
+
+	// Returns the metric to reference instead of the given one, or the given metric
+	// if it is the first with this content.
+	private <T extends PooledEntity> T deduplicate(Class<T> type, T metric, String contentHash,
+			EntityManager entityManager) {
+		String key = type.getSimpleName() + contentHash;
+		PooledEntity pendingMetric = pending.get(key);
+		if (pendingMetric != null) {
+			if (pendingMetric != metric)
+				reused++;
+			return type.cast(pendingMetric);
+		}
+
+		Long id = stored.get(key);
+		if (id != null) {
+			reused++;
+			return entityManager.getReference(type, id);
+		}
+
+		pending.put(key, metric);
+		return metric;
+	}
+
+	// The transaction that persisted the pending metrics was committed
+	public void commit() {
+		for (Map.Entry<String, PooledEntity> entry : pending.entrySet()) {
+			if (entry.getValue().id != null)
+				stored.put(entry.getKey(), entry.getValue().id);
+		}
+		pending.clear();
+	}
+
+	// The transaction that persisted the pending metrics was rolled back
+	public void rollback() {
+		pending.clear();
+	}
+
+	// Amount of metrics that were referenced instead of stored again
+	public long getReused() {
+		return reused;
+	}
+}
@@ -0,0 +1,28 @@
+package refactoringml.db;
+
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.MappedSuperclass;
+import javax.persistence.SequenceGenerator;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+
+// Base class for the entities we write many of per commit.
+// Like PanacheEntity, but the ids come from a sequence that hands out blocks of
+// ids, so Hibernate does not need a round trip per row and can batch the inserts.
+@MappedSuperclass
+public abstract class PooledEntity extends PanacheEntityBase {
+	// must match the INCREMENT BY of the sequence in the database
+	public static final int ID_ALLOCATION_SIZE = 50;
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "refactoringmlSequence")
+	@SequenceGenerator(name = "refactoringmlSequence", sequenceName = "refactoringml_sequence", allocationSize = ID_ALLOCATION_SIZE)
+	public Long id;
+
+	@Override
+	public String toString() {
+		return this.getClass().getSimpleName() + "<" + id + ">";
+	}
+}
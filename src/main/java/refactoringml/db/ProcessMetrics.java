@@ -1,24 +1,24 @@
 package refactoringml.db;
 
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.function.Predicate;
 
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
 import javax.persistence.Table;
 import javax.persistence.Transient;
 
-import io.quarkus.hibernate.orm.panache.PanacheEntity;
+import refactoringml.util.AuthorRegistry;
+import refactoringml.util.IntIntMap;
 
 @Entity
 @Table(name = "ProcessMetrics")
-public class ProcessMetrics extends PanacheEntity {
+public class ProcessMetrics extends PooledEntity {
 
 	// number of commits making changes to this class
 	@Column(nullable = true)
@@ -49,9 +49,19 @@ public class ProcessMetrics extends PanacheEntity {
 	@JoinColumn(nullable = false)
 	public Project project;
 
-	// all authors with commits affecting this class file
+	// the commits of all authors affecting this class file, by the id of the author in the project
 	@Transient
-	private Map<String, Integer> allAuthors = new HashMap<>();
+	private IntIntMap authorCommits = new IntIntMap();
+	// the authors are shared with a copy of these process metrics, until one of both changes
+	@Transient
+	private boolean authorCommitsShared;
+	@Transient
+	private int maxAuthorCommits;
+	// the author columns are only computed when the process metrics are stored
+	@Transient
+	private boolean authorsChanged;
+	@Transient
+	private AuthorRegistry authors;
 
 	public ProcessMetrics() {
 	}
@@ -64,69 +74,100 @@ public class ProcessMetrics extends PanacheEntity {
 		this.bugFixCount = bugFixCount;
 		this.refactoringsInvolved = refactoringsInvolved;
 		this.project = project;
+		this.authors = project != null ? project.authors : new AuthorRegistry();
+		this.authorsChanged = true;
+	}
+
+	// Restore ProcessMetrics with all their authors, e.g. from a checkpoint
+	public ProcessMetrics(int qtyOfCommits, int linesAdded, int linesDeleted, int bugFixCount,
+			int refactoringsInvolved, Map<String, Integer> allAuthors, Project project) {
+		this(qtyOfCommits, linesAdded, linesDeleted, bugFixCount, refactoringsInvolved, project);
+		this.authorCommits = new IntIntMap(allAuthors.size());
+		for (Map.Entry<String, Integer> author : allAuthors.entrySet())
+			addAuthorCommits(authors.intern(author.getKey()), author.getValue());
+	}
+
+	// Create ProcessMetrics with a copy of the commits of their authors, by the id of the author in the project
+	public ProcessMetrics(int qtyOfCommits, int linesAdded, int linesDeleted, int bugFixCount,
+			int refactoringsInvolved, IntIntMap authorCommits, Project project) {
+		this(qtyOfCommits, linesAdded, linesDeleted, bugFixCount, refactoringsInvolved, project);
+		this.authorCommits = new IntIntMap(authorCommits);
+		this.authorCommits.forEach((author, commits) -> maxAuthorCommits = Math.max(maxAuthorCommits, commits));
 	}
 
-	// Deep copy the ProcessMetrics collected by ProcessMetricTracker
+	// Copy the ProcessMetrics collected by ProcessMetricTracker. The authors are only copied once one of both
+	// ProcessMetrics changes them.
 	public ProcessMetrics(ProcessMetrics pm) {
-		this(pm.qtyOfCommits, pm.linesAdded, pm.linesDeleted, pm.bugFixCount, pm.refactoringsInvolved,pm.project);
-		this.allAuthors = new HashMap<>(pm.getAllAuthors());
-		updateAuthors();
+		this(pm.qtyOfCommits, pm.linesAdded, pm.linesDeleted, pm.bugFixCount, pm.refactoringsInvolved, pm.project);
+		this.authors = pm.authors;
+		this.authorCommits = pm.authorCommits;
+		this.maxAuthorCommits = pm.maxAuthorCommits;
+		this.authorCommitsShared = true;
+		pm.authorCommitsShared = true;
 	}
 
 	public void updateAuthorCommits(String authorName) {
-		if (!allAuthors.containsKey(authorName)) {
-			allAuthors.put(authorName, 1);
-		} else {
-			allAuthors.put(authorName, allAuthors.get(authorName) + 1);
-		}
-		updateAuthors();
+		addAuthorCommits(authors.intern(authorName), 1);
 	}
 
 	// Properties
 	public int qtyOfAuthors() {
-		return allAuthors.size();
+		return authorCommits.size();
 	}
 
 	public int qtyMinorAuthors() {
-		return countAuthors(author -> allAuthors.get(author) < fivePercent());
+		return qtyOfAuthors() - qtyMajorAuthors();
 	}
 
 	public int qtyMajorAuthors() {
-		return countAuthors(author -> allAuthors.get(author) >= fivePercent());
+		double fivePercent = qtyOfCommits * 0.05;
+		int[] majorAuthors = { 0 };
+		authorCommits.forEach((author, commits) -> {
+			if (commits >= fivePercent)
+				majorAuthors[0]++;
+		});
+		return majorAuthors[0];
 	}
 
 	public double authorOwnership() {
-		if (allAuthors.entrySet().isEmpty())
+		if (authorCommits.size() == 0)
 			return 0;
 
-		String mostRecurrentAuthor = Collections
-				.max(allAuthors.entrySet(), Comparator.comparingInt(Map.Entry::getValue)).getKey();
-
-		return allAuthors.get(mostRecurrentAuthor) / (double) qtyOfCommits;
+		// the commits of the most recurrent author
+		return maxAuthorCommits / (double) qtyOfCommits;
 	}
 
 	public Map<String, Integer> getAllAuthors() {
+		Map<String, Integer> allAuthors = new HashMap<>(authorCommits.size() * 2);
+		authorCommits.forEach((author, commits) -> allAuthors.put(authors.getName(author), commits));
 		return allAuthors;
 	}
 
 	// utils
-	private double fivePercent() {
-		return qtyOfCommits * 0.05;
-	}
-
-	private int countAuthors(Predicate<String> predicate) {
-		return (int) allAuthors.keySet().stream().filter(predicate).count();
+	private void addAuthorCommits(int author, int commits) {
+		if (authorCommitsShared) {
+			authorCommits = new IntIntMap(authorCommits);
+			authorCommitsShared = false;
+		}
+		maxAuthorCommits = Math.max(maxAuthorCommits, authorCommits.add(author, commits));
+		authorsChanged = true;
 	}
 
-	private void updateAuthors() {
+	@PrePersist
+	@PreUpdate
+	void updateAuthors() {
+		if (!authorsChanged)
+			return;
 		this.qtyOfAuthors = qtyOfAuthors();
 		this.qtyMinorAuthors = qtyMinorAuthors();
 		this.qtyMajorAuthors = qtyMajorAuthors();
 		this.authorOwnership = authorOwnership();
+		authorsChanged = false;
 	}
 
 	@Override
 	public String toString() {
+		updateAuthors();
 		return toString(qtyOfCommits, linesAdded, linesDeleted, qtyOfAuthors, qtyMinorAuthors, qtyMajorAuthors,
 				authorOwnership, bugFixCount, refactoringsInvolved);
 	}
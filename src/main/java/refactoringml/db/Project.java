@@ -4,6 +4,7 @@ import javax.persistence.*;
 import javax.transaction.Transactional;
 
 import io.quarkus.hibernate.orm.panache.PanacheEntity;
+import refactoringml.util.AuthorRegistry;
 import refactoringml.util.JGitUtils;
 
 import java.util.*;
@@ -41,6 +42,9 @@ public class Project extends PanacheEntity {
 	// stable commits after the highest K was fulfilled
 	@Transient
 	public int maxCommitThreshold;
+	// the authors of the commits of this project, the process metrics of its files refer to them by id
+	@Transient
+	public AuthorRegistry authors = new AuthorRegistry();
 
 	public long javaLoc;
 
@@ -77,6 +81,15 @@ public class Project extends PanacheEntity {
 		this.javaLoc = this.productionLoc + this.testLoc;
 		this.isLocal = JGitUtils.isLocal(gitUrl);
 
+		this.commitCountThresholds = commitCountThresholds;
+		parseCommitCountThresholds();
+		this.exceptionsCount = c.getExceptionsCount();
+	}
+
+	// Fill the transient thresholds, also for projects loaded from the database,
+	// e.g. to resume them
+	@PostLoad
+	void parseCommitCountThresholds() {
 		// clean the string to be more robust
 		String cleanCommitCountThresholds = commitCountThresholds.replaceAll("[^\\d,.]", "");
 		List<String> rawCommitThresholds = Arrays.asList(cleanCommitCountThresholds.split(","));
@@ -85,7 +98,6 @@ public class Project extends PanacheEntity {
 				.sorted(Comparator.naturalOrder()).collect(Collectors.toList());
 		this.commitCountThresholds = commitCountThresholdsInt.toString();
 		this.maxCommitThreshold = Collections.max(this.commitCountThresholdsInt);
-		this.exceptionsCount = c.getExceptionsCount();
 	}
 
 	// Every time an exception is reaching the App class, the db is rollback but not
@@ -106,6 +118,41 @@ public class Project extends PanacheEntity {
 		return Project.find("gitUrl", gitUrl).singleResultOptional().isPresent();
 	}
 
+	public static Optional<Project> findByGitUrl(String gitUrl) {
+		return Project.find("gitUrl", gitUrl).singleResultOptional();
+	}
+
+	// All tables with rows of a project besides the project itself, referencing
+	// tables first
+	private static final List<Class<? extends PooledEntity>> PROJECT_ROWS = List.of(StableCommit.class,
+			RefactoringCommit.class, ProcessMetrics.class, VariableMetric.class, FieldMetric.class,
+			MethodMetric.class, ClassMetric.class, CommitMetaData.class);
+
+	// The highest id of all rows stored for this project. As ids only grow,
+	// all rows stored later on have a higher id. Must be used inside a transaction.
+	public long maxRowId() {
+		long maxRowId = 0;
+		for (Class<? extends PooledEntity> table : PROJECT_ROWS) {
+			Long tableMax = getEntityManager()
+					.createQuery("SELECT MAX(id) FROM " + table.getSimpleName() + " WHERE project = :project",
+							Long.class)
+					.setParameter("project", this).getSingleResult();
+			if (tableMax != null)
+				maxRowId = Math.max(maxRowId, tableMax);
+		}
+		return maxRowId;
+	}
+
+	// Delete all rows of this project with an id above the given one, i.e. the
+	// rows stored after it. Must be used inside a transaction.
+	public void deleteRowsAfter(long rowId) {
+		for (Class<? extends PooledEntity> table : PROJECT_ROWS) {
+			getEntityManager()
+					.createQuery("DELETE FROM " + table.getSimpleName() + " WHERE project = :project AND id > :id")
+					.setParameter("project", this).setParameter("id", rowId).executeUpdate();
+		}
+	}
+
 	public void merge() {
 		getEntityManager().merge(this);
 	}
@@ -0,0 +1,74 @@
+package refactoringml.db;
+
+import java.util.Calendar;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntity;
+
+// One state change of a project in a run of the DataCollector. Entries are only ever added,
+// so that concurrent threads and crashed runs can not lose or corrupt earlier ones.
+@Entity
+@Table(name = "RunLedgerEntry", indexes = { @Index(columnList = "gitUrl, state"), @Index(columnList = "runId") })
+public class RunLedgerEntry extends PanacheEntity {
+
+	public enum State {
+		QUEUED, RUNNING, DONE, FAILED
+	}
+
+	// identifies the run of the DataCollector
+	@Column(length = 36)
+	public String runId;
+	public String gitUrl;
+	public String datasetName;
+	// line of the project in the input file
+	public int inputLine;
+
+	@Enumerated(EnumType.STRING)
+	@Column(length = 16)
+	public State state;
+
+	@Temporal(TemporalType.TIMESTAMP)
+	public Calendar timestamp;
+
+	// for FAILED: the class and message of the exception
+	public String failureClass;
+	@Column(length = 2000)
+	public String failureMessage;
+
+	@Deprecated // hibernate purposes
+	public RunLedgerEntry() {
+	}
+
+	public RunLedgerEntry(String runId, String gitUrl, String datasetName, int inputLine, State state,
+			Throwable failure) {
+		this.runId = runId;
+		this.gitUrl = gitUrl;
+		this.datasetName = datasetName;
+		this.inputLine = inputLine;
+		this.state = state;
+		this.timestamp = Calendar.getInstance();
+		if (failure != null) {
+			this.failureClass = failure.getClass().getCanonicalName();
+			String message = String.valueOf(failure.getMessage());
+			this.failureMessage = message.length() > 2000 ? message.substring(0, 2000) : message;
+		}
+	}
+
+	public static boolean isDone(String gitUrl) {
+		return count("gitUrl = ?1 AND state = ?2", gitUrl, State.DONE) > 0;
+	}
+
+	@Override
+	public String toString() {
+		return "RunLedgerEntry{" + "runId=" + runId + ", gitUrl=" + gitUrl + ", inputLine=" + inputLine + ", state="
+				+ state + ", timestamp=" + timestamp + ", failureClass=" + failureClass + '}';
+	}
+}
@@ -7,11 +7,9 @@ import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 
-import io.quarkus.hibernate.orm.panache.PanacheEntity;
-
 @Entity
 @Table(name = "VariableMetric")
-public class VariableMetric extends PanacheEntity {
+public class VariableMetric extends PooledEntity {
 
 	@Column(nullable = true)
 	public String variableName;
@@ -0,0 +1,33 @@
+package refactoringml.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Interns the names of the authors of a project to int ids, so that the process metrics of its files count the
+// commits of each author by id instead of by name.
+public class AuthorRegistry {
+
+	private final Map<String, Integer> ids = new HashMap<>();
+	private final List<String> names = new ArrayList<>();
+
+	// Returns the id of the author, new authors get the next id
+	public synchronized int intern(String name) {
+		Integer id = ids.get(name);
+		if (id == null) {
+			id = names.size();
+			ids.put(name, id);
+			names.add(name);
+		}
+		return id;
+	}
+
+	public synchronized String getName(int id) {
+		return names.get(id);
+	}
+
+	public synchronized int size() {
+		return names.size();
+	}
+}
@@ -0,0 +1,157 @@
+package refactoringml.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+
+// Reads the files of the commits of a repository. It keeps one object reader open for the whole run, remembers the
+// trees of the recently read commits and the paths already resolved in them, and resolves all paths asked for at
+// once in a single tree walk.
+// The tree ids are read from the headers of the commits, without a RevWalk, which would keep every commit and tree it
+// ever parsed. So only the cached commits are kept in memory.
+// Like the object reader, it may only be used by one thread at a time.
+public class BlobReader implements AutoCloseable {
+
+	// The paths of a commit resolved so far, missing paths are mapped to null
+	private static class CommitTree {
+		private final ObjectId tree;
+		private final Map<String, ObjectId> blobs = new HashMap<>();
+
+		private CommitTree(ObjectId tree) {
+			this.tree = tree;
+		}
+	}
+
+	// a commit object starts with the id of its tree: "tree <hex id>\n"
+	private static final int TREE_ID_OFFSET = "tree ".length();
+
+	private final ObjectReader reader;
+	private final Map<ObjectId, CommitTree> trees;
+
+	public BlobReader(Repository repository, int cachedCommits) {
+		this.reader = repository.newObjectReader();
+		this.trees = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<ObjectId, CommitTree> eldest) {
+				return size() > cachedCommits;
+			}
+		};
+	}
+
+	// Returns the id of the blob stored under the given path in the given commit
+	public ObjectId getBlobId(AnyObjectId commitId, String path) throws IOException {
+		ObjectId blobId = getBlobIds(commitId, List.of(path)).get(path);
+		if (blobId == null)
+			throw new IllegalArgumentException("No path found in " + commitId.getName() + ": " + path);
+		return blobId;
+	}
+
+	public ObjectId getBlobId(String commit, String path) throws IOException {
+		return getBlobId(ObjectId.fromString(commit), path);
+	}
+
+	// Returns the ids of the blobs stored under the given paths in the given commit. Paths that do not exist in the
+	// commit are left out. All paths not resolved before are resolved in one tree walk.
+	public Map<String, ObjectId> getBlobIds(AnyObjectId commitId, Collection<String> paths) throws IOException {
+		CommitTree commitTree = commitTree(commitId);
+		Set<String> unresolved = new HashSet<>();
+		for (String path : paths) {
+			if (!commitTree.blobs.containsKey(path))
+				unresolved.add(path);
+		}
+		if (!unresolved.isEmpty())
+			resolve(commitTree, unresolved);
+
+		Map<String, ObjectId> blobIds = new HashMap<>();
+		for (String path : paths) {
+			ObjectId blobId = commitTree.blobs.get(path);
+			if (blobId != null)
+				blobIds.put(path, blobId);
+		}
+		return blobIds;
+	}
+
+	// Returns the content of the blob, without copying it when the object reader has it in memory already
+	public ByteBuffer read(AnyObjectId blobId) throws IOException {
+		return ByteBuffer.wrap(reader.open(blobId, Constants.OBJ_BLOB).getCachedBytes(Integer.MAX_VALUE))
+				.asReadOnlyBuffer();
+	}
+
+	public String readString(AnyObjectId blobId) throws IOException {
+		return StandardCharsets.UTF_8.decode(read(blobId)).toString();
+	}
+
+	// Returns the content of the file stored under the given path in the given commit
+	public ByteBuffer readFile(AnyObjectId commitId, String path) throws IOException {
+		return read(getBlobId(commitId, path));
+	}
+
+	// Returns the commit with its message, which is not kept in memory unlike the trees of the commits
+	public RevCommit readCommit(AnyObjectId commitId) throws IOException {
+		return RevCommit.parse(reader.open(commitId, Constants.OBJ_COMMIT).getCachedBytes());
+	}
+
+	@Override
+	public void close() {
+		reader.close();
+	}
+
+	private CommitTree commitTree(AnyObjectId commitId) throws IOException {
+		CommitTree commitTree = trees.get(commitId);
+		if (commitTree == null) {
+			byte[] commit = reader.open(commitId, Constants.OBJ_COMMIT).getCachedBytes();
+			commitTree = new CommitTree(ObjectId.fromString(commit, TREE_ID_OFFSET));
+			trees.put(commitId.copy(), commitTree);
+		}
+		return commitTree;
+	}
+
+	// One walk from the root tree, which only enters the directories on the way to the given paths
+	private void resolve(CommitTree commitTree, Set<String> paths) throws IOException {
+		List<String> invalidPaths = new ArrayList<>();
+		List<String> validPaths = new ArrayList<>();
+		for (String path : paths) {
+			// the path filters do not accept these, and no blob is stored under them
+			if (path.isEmpty() || path.startsWith("/") || path.endsWith("/"))
+				invalidPaths.add(path);
+			else
+				validPaths.add(path);
+		}
+		for (String path : invalidPaths)
+			commitTree.blobs.put(path, null);
+		if (validPaths.isEmpty())
+			return;
+
+		try (TreeWalk treeWalk = new TreeWalk(reader)) {
+			treeWalk.addTree(commitTree.tree);
+			treeWalk.setRecursive(true);
+			treeWalk.setFilter(PathFilterGroup.createFromStrings(validPaths));
+			while (treeWalk.next()) {
+				String path = treeWalk.getPathString();
+				if (paths.contains(path) && treeWalk.getFileMode(0).getObjectType() == Constants.OBJ_BLOB)
+					commitTree.blobs.put(path, treeWalk.getObjectId(0));
+			}
+		}
+		for (String path : validPaths)
+			commitTree.blobs.putIfAbsent(path, null);
+	}
+}
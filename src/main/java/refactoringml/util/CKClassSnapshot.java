@@ -0,0 +1,122 @@
+package refactoringml.util;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.mauricioaniche.ck.CKClassResult;
+import com.github.mauricioaniche.ck.CKMethodResult;
+
+// A serializable copy of everything we use from a CKClassResult, so that the
+// CK results of a file can be cached and reused (see CKResultCache).
+// The results are cached by the content of the file, so they do not keep its path: the same content might be found
+// under other paths later on, e.g. after a move source folder refactoring or in a copied file.
+public class CKClassSnapshot implements Serializable {
+	private static final long serialVersionUID = 2L;
+
+	private final String className;
+	private final String type;
+	final int cbo;
+	final int wmc;
+	final int rfc;
+	final int lcom;
+	final float tightClassCohesion;
+	final float looseClassCohesion;
+	final int numberOfMethods;
+	final int numberOfStaticMethods;
+	final int numberOfPublicMethods;
+	final int numberOfPrivateMethods;
+	final int numberOfProtectedMethods;
+	final int numberOfDefaultMethods;
+	final int numberOfVisibleMethods;
+	final int numberOfAbstractMethods;
+	final int numberOfFinalMethods;
+	final int numberOfSynchronizedMethods;
+	final int numberOfFields;
+	final int numberOfStaticFields;
+	final int numberOfPublicFields;
+	final int numberOfPrivateFields;
+	final int numberOfProtectedFields;
+	final int numberOfDefaultFields;
+	final int numberOfFinalFields;
+	final int numberOfSynchronizedFields;
+	final int nosi;
+	final int loc;
+	final int returnQty;
+	final int loopQty;
+	final int comparisonsQty;
+	final int tryCatchQty;
+	final int parenthesizedExpsQty;
+	final int stringLiteralsQty;
+	final int numbersQty;
+	final int assignmentsQty;
+	final int mathOperationsQty;
+	final int variablesQty;
+	final int maxNestedBlocks;
+	final int anonymousClassesQty;
+	final int innerClassesQty;
+	final int lambdasQty;
+	final int uniqueWordsQty;
+	private final ArrayList<CKMethodSnapshot> methods;
+
+	public CKClassSnapshot(CKClassResult ck) {
+		this.className = ck.getClassName();
+		this.type = ck.getType();
+		this.cbo = ck.getCbo();
+		this.wmc = ck.getWmc();
+		this.rfc = ck.getRfc();
+		this.lcom = ck.getLcom();
+		this.tightClassCohesion = ck.getTightClassCohesion();
+		this.looseClassCohesion = ck.getLooseClassCohesion();
+		this.numberOfMethods = ck.getNumberOfMethods();
+		this.numberOfStaticMethods = ck.getNumberOfStaticMethods();
+		this.numberOfPublicMethods = ck.getNumberOfPublicMethods();
+		this.numberOfPrivateMethods = ck.getNumberOfPrivateMethods();
+		this.numberOfProtectedMethods = ck.getNumberOfProtectedMethods();
+		this.numberOfDefaultMethods = ck.getNumberOfDefaultMethods();
+		this.numberOfVisibleMethods = ck.getVisibleMethods().size();
+		this.numberOfAbstractMethods = ck.getNumberOfAbstractMethods();
+		this.numberOfFinalMethods = ck.getNumberOfFinalMethods();
+		this.numberOfSynchronizedMethods = ck.getNumberOfSynchronizedMethods();
+		this.numberOfFields = ck.getNumberOfFields();
+		this.numberOfStaticFields = ck.getNumberOfStaticFields();
+		this.numberOfPublicFields = ck.getNumberOfPublicFields();
+		this.numberOfPrivateFields = ck.getNumberOfPrivateFields();
+		this.numberOfProtectedFields = ck.getNumberOfProtectedFields();
+		this.numberOfDefaultFields = ck.getNumberOfDefaultFields();
+		this.numberOfFinalFields = ck.getNumberOfFinalFields();
+		this.numberOfSynchronizedFields = ck.getNumberOfSynchronizedFields();
+		this.nosi = ck.getNosi();
+		this.loc = ck.getLoc();
+		this.returnQty = ck.getReturnQty();
+		this.loopQty = ck.getLoopQty();
+		this.comparisonsQty = ck.getComparisonsQty();
+		this.tryCatchQty = ck.getTryCatchQty();
+		this.parenthesizedExpsQty = ck.getParenthesizedExpsQty();
+		this.stringLiteralsQty = ck.getStringLiteralsQty();
+		this.numbersQty = ck.getNumbersQty();
+		this.assignmentsQty = ck.getAssignmentsQty();
+		this.mathOperationsQty = ck.getMathOperationsQty();
+		this.variablesQty = ck.getVariablesQty();
+		this.maxNestedBlocks = ck.getMaxNestedBlocks();
+		this.anonymousClassesQty = ck.getAnonymousClassesQty();
+		this.innerClassesQty = ck.getInnerClassesQty();
+		this.lambdasQty = ck.getLambdasQty();
+		this.uniqueWordsQty = ck.getUniqueWordsQty();
+		this.methods = new ArrayList<>();
+		for (CKMethodResult method : ck.getMethods())
+			methods.add(new CKMethodSnapshot(method));
+	}
+
+	public String getClassName() {
+		return className;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	public List<CKMethodSnapshot> getMethods() {
+		return methods;
+	}
+}
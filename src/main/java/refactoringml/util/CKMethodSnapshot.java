@@ -0,0 +1,83 @@
+package refactoringml.util;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.github.mauricioaniche.ck.CKMethodResult;
+
+// A serializable copy of everything we use from a CKMethodResult, so that the
+// CK results of a file can be cached and reused (see CKResultCache).
+public class CKMethodSnapshot implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final String methodName;
+	final int startLine;
+	final int cbo;
+	final int wmc;
+	final int rfc;
+	final int loc;
+	final int returnQty;
+	final int variablesQty;
+	final int parametersQty;
+	final int methodInvocationsQty;
+	final int methodInvocationsLocalQty;
+	final int methodInvocationsIndirectLocalQty;
+	final int loopQty;
+	final int comparisonsQty;
+	final int tryCatchQty;
+	final int parenthesizedExpsQty;
+	final int stringLiteralsQty;
+	final int numbersQty;
+	final int assignmentsQty;
+	final int mathOperationsQty;
+	final int maxNestedBlocks;
+	final int anonymousClassesQty;
+	final int innerClassesQty;
+	final int lambdasQty;
+	final int uniqueWordsQty;
+	private final HashMap<String, Integer> variablesUsage;
+	private final HashMap<String, Integer> fieldUsage;
+
+	public CKMethodSnapshot(CKMethodResult ck) {
+		this.methodName = ck.getMethodName();
+		this.startLine = ck.getStartLine();
+		this.cbo = ck.getCbo();
+		this.wmc = ck.getWmc();
+		this.rfc = ck.getRfc();
+		this.loc = ck.getLoc();
+		this.returnQty = ck.getReturnQty();
+		this.variablesQty = ck.getVariablesQty();
+		this.parametersQty = ck.getParametersQty();
+		this.methodInvocationsQty = ck.getMethodInvocations().size();
+		this.methodInvocationsLocalQty = ck.getMethodInvocationsLocal().size();
+		this.methodInvocationsIndirectLocalQty = ck.getMethodInvocationsIndirectLocal().keySet().size();
+		this.loopQty = ck.getLoopQty();
+		this.comparisonsQty = ck.getComparisonsQty();
+		this.tryCatchQty = ck.getTryCatchQty();
+		this.parenthesizedExpsQty = ck.getParenthesizedExpsQty();
+		this.stringLiteralsQty = ck.getStringLiteralsQty();
+		this.numbersQty = ck.getNumbersQty();
+		this.assignmentsQty = ck.getAssignmentsQty();
+		this.mathOperationsQty = ck.getMathOperationsQty();
+		this.maxNestedBlocks = ck.getMaxNestedBlocks();
+		this.anonymousClassesQty = ck.getAnonymousClassesQty();
+		this.innerClassesQty = ck.getInnerClassesQty();
+		this.lambdasQty = ck.getLambdasQty();
+		this.uniqueWordsQty = ck.getUniqueWordsQty();
+		this.variablesUsage = new HashMap<>(ck.getVariablesUsage());
+		this.fieldUsage = new HashMap<>(ck.getFieldUsage());
+	}
+
+	public String getMethodName() {
+		return methodName;
+	}
+
+	public Map<String, Integer> getVariablesUsage() {
+		return variablesUsage;
+	}
+
+	public Map<String, Integer> getFieldUsage() {
+		return fieldUsage;
+	}
+}
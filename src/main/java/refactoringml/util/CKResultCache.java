@@ -0,0 +1,161 @@
+package refactoringml.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import com.github.mauricioaniche.ck.CK;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.jboss.logging.Logger;
+
+// Caches the CK results of a file by the id of its git blob, i.e. by its content.
+// The same file content is often measured many times, e.g. for several refactorings
+// in the same class or for stable instances of files that did not change in between.
+// The results are kept in memory with LRU eviction and, optionally, on disk, so that
+// they survive between projects and runs.
+public class CKResultCache {
+	private static final Logger log = Logger.getLogger(CKResultCache.class);
+
+	// The cached results are only valid for the CK version that produced them, read from the CK jar on the classpath,
+	// null if it cannot be determined
+	public static final String CK_VERSION = ckVersion();
+
+	private final Map<ObjectId, List<CKClassSnapshot>> memory;
+	// null if the disk tier is disabled
+	private final Path diskDirectory;
+
+	private long hits;
+	private long misses;
+
+	public CKResultCache(int maxEntries, Path diskDirectory) {
+		this(maxEntries, diskDirectory, CK_VERSION);
+	}
+
+	// The results on disk are stored per CK version, without a version the disk tier is disabled
+	public CKResultCache(int maxEntries, Path diskDirectory, String ckVersion) {
+		this.memory = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<ObjectId, List<CKClassSnapshot>> eldest) {
+				return size() > maxEntries;
+			}
+		});
+		if (diskDirectory != null && ckVersion == null)
+			log.warn("The version of CK is unknown, so its results are not cached on disk in " + diskDirectory);
+		this.diskDirectory = diskDirectory != null && ckVersion != null ? diskDirectory.resolve(ckVersion) : null;
+	}
+
+	// A cache that only keeps the results in memory
+	public CKResultCache(int maxEntries) {
+		this(maxEntries, null);
+	}
+
+	// Returns the cached CK results of the given blob, or null if it was not analyzed yet
+	public List<CKClassSnapshot> get(ObjectId blobId) {
+		List<CKClassSnapshot> result = memory.get(blobId);
+		if (result == null && diskDirectory != null) {
+			result = readFromDisk(blobId);
+			if (result != null)
+				memory.put(blobId.copy(), result);
+		}
+
+		synchronized (this) {
+			if (result == null)
+				misses++;
+			else
+				hits++;
+		}
+		return result;
+	}
+
+	// Store the CK results of the given blob. Only store results of successful CK runs.
+	public void put(ObjectId blobId, List<CKClassSnapshot> result) {
+		List<CKClassSnapshot> snapshots = Collections.unmodifiableList(new ArrayList<>(result));
+		memory.put(blobId.copy(), snapshots);
+		if (diskDirectory != null)
+			writeToDisk(blobId, snapshots);
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	// The version in the manifest of the CK jar, or else the one in the Maven metadata it was built with
+	private static String ckVersion() {
+		String version = CK.class.getPackage().getImplementationVersion();
+		if (version != null)
+			return version;
+		try (InputStream in = CK.class
+				.getResourceAsStream("/META-INF/maven/com.github.mauricioaniche/ck/pom.properties")) {
+			if (in == null)
+				return null;
+			Properties properties = new Properties();
+			properties.load(in);
+			return properties.getProperty("version");
+		} catch (IOException e) {
+			log.warn("Could not read the version of CK", e);
+			return null;
+		}
+	}
+
+	// git like layout: the first two characters of the id are the directory
+	private Path diskPath(ObjectId blobId) {
+		String name = blobId.getName();
+		return diskDirectory.resolve(name.substring(0, 2)).resolve(name.substring(2));
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<CKClassSnapshot> readFromDisk(ObjectId blobId) {
+		Path path = diskPath(blobId);
+		if (!Files.exists(path))
+			return null;
+
+		try (InputStream in = Files.newInputStream(path); ObjectInputStream objectIn = new ObjectInputStream(in)) {
+			return Collections.unmodifiableList((List<CKClassSnapshot>) objectIn.readObject());
+		} catch (IOException | ClassNotFoundException | ClassCastException e) {
+			// a broken entry is treated as a miss, and overwritten once the file is analyzed again
+			log.warn("Could not read the cached CK results of blob " + blobId.getName() + " from " + path, e);
+			return null;
+		}
+	}
+
+	// Write to a temp file first and then move it, so that concurrent readers never see half written entries
+	private void writeToDisk(ObjectId blobId, List<CKClassSnapshot> snapshots) {
+		Path path = diskPath(blobId);
+		Path tempFile = null;
+		try {
+			Files.createDirectories(path.getParent());
+			tempFile = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+			try (OutputStream out = Files.newOutputStream(tempFile);
+					ObjectOutputStream objectOut = new ObjectOutputStream(out)) {
+				objectOut.writeObject(new ArrayList<>(snapshots));
+			}
+			Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			log.warn("Could not write the CK results of blob " + blobId.getName() + " to " + path, e);
+			try {
+				if (tempFile != null)
+					Files.deleteIfExists(tempFile);
+			} catch (IOException e1) {
+				log.debug("Could not delete " + tempFile, e1);
+			}
+		}
+	}
+}
@@ -2,21 +2,26 @@ package refactoringml.util;
 
 import static refactoringml.util.RefactoringUtils.cleanMethodName;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.FutureTask;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
-import com.github.mauricioaniche.ck.CK;
-import com.github.mauricioaniche.ck.CKClassResult;
-import com.github.mauricioaniche.ck.CKMethodResult;
 import com.github.mauricioaniche.ck.CKNotifier;
+import com.github.mauricioaniche.ck.MetricsExecutor;
+import com.github.mauricioaniche.ck.util.MetricsFinder;
 
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jgit.lib.ObjectId;
 import org.jboss.logging.Logger;
 
 import refactoringml.db.ClassMetric;
@@ -30,33 +35,98 @@ public class CKUtils {
 	
 	private static final Logger log = Logger.getLogger(CKUtils.class);
 
+	// CK looks up its metric classes via reflection, which is too expensive to
+	// repeat for every file. The finder creates new metric instances on every call.
+	private static final MetricsFinder METRICS_FINDER = new MetricsFinder();
+
+	static {
+		// the finder loads the metric classes lazily, so do it once before it is used by several threads
+		METRICS_FINDER.allClassLevelMetrics();
+		METRICS_FINDER.allMethodLevelMetrics(true);
+	}
+
+	// All CK runs share this pool, see configureWorkerPool
+	private static volatile CKWorkerPool workerPool = new CKWorkerPool(Runtime.getRuntime().availableProcessors(),
+			4, 300);
+
+	// Replace the shared CK worker pool, e.g. to size it according to the configuration
+	// The tasks waiting in the old pool still run there
+	public static void configureWorkerPool(int threads, int maxStuckWorkers, int queueTimeoutInSeconds) {
+		CKWorkerPool oldPool = workerPool;
+		workerPool = new CKWorkerPool(threads, maxStuckWorkers, queueTimeoutInSeconds);
+		oldPool.shutdown();
+	}
+
+	public static CKWorkerPool getWorkerPool() {
+		return workerPool;
+	}
+
 	// TODO: figure out if we could parallelize the CK tool for various class files
 	// on the same commit
-	// Calls the CK.calculate with a timeout.
-	public static void calculate(String tempdir, String commitHash, String projectUrl, CKNotifier ckNotifier, int timeoutInSeconds)
-			throws InterruptedException {
-		ExecutorService executor = Executors.newFixedThreadPool(1);
-		FutureTask<Void> timeoutTask = new FutureTask<>(() -> {
-			long startTimeCK = System.currentTimeMillis();
-			new CK().calculate(tempdir, ckNotifier);
-			log.debug("CK miner took " + (System.currentTimeMillis() - startTimeCK)
-					+ " milliseconds to calculate the metrics for file: " + tempdir + " on commit: " + commitHash
-					+ " from project " + projectUrl);
-			return null;
-		});
-		executor.submit(timeoutTask);
-
+	// Runs CK on the given source code with a timeout, without writing it to disk.
+	// The filePath is only used as the name of the compilation unit and is what
+	// CKClassResult#getFile returns.
+	// Returns false if CK failed or timed out, i.e. the notifier might not have seen all classes.
+	public static boolean calculate(String sourceCode, String filePath, String commitHash, String projectUrl,
+			CKNotifier ckNotifier, int timeoutInSeconds) throws InterruptedException {
 		try {
-			timeoutTask.get(timeoutInSeconds, TimeUnit.SECONDS);
+			workerPool.run(() -> {
+				long startTimeCK = System.currentTimeMillis();
+				MetricsExecutor metricsExecutor = new MetricsExecutor(METRICS_FINDER::allClassLevelMetrics,
+						() -> METRICS_FINDER.allMethodLevelMetrics(true), ckNotifier);
+				metricsExecutor.acceptAST(filePath, parse(sourceCode, filePath));
+				log.debug("CK miner took " + (System.currentTimeMillis() - startTimeCK)
+						+ " milliseconds to calculate the metrics for file: " + filePath + " on commit: " + commitHash
+						+ " from project " + projectUrl);
+				return null;
+			}, timeoutInSeconds);
+			return true;
 		} catch (TimeoutException e) {
-			log.error("CK failed to calculate metrics for " + tempdir + " on the commit " + commitHash
+			log.error("CK failed to calculate metrics for " + filePath + " on the commit " + commitHash
 					+ " from the project: " + projectUrl + " with a timeout of " + timeoutInSeconds + " seconds.", e);
 		} catch (ExecutionException e) {
-			log.error("Failed to calculate CK metrics for " + tempdir + " on the commit " + commitHash
+			log.error("Failed to calculate CK metrics for " + filePath + " on the commit " + commitHash
 					+ " from the project: " + projectUrl, e);
-		} finally {
-			executor.shutdownNow();
 		}
+		return false;
+	}
+
+	// Parse a single file the same way CK does, but from memory: Java 11, with
+	// (recovered) bindings and no classpath besides the JRE.
+	private static CompilationUnit parse(String sourceCode, String filePath) {
+		ASTParser parser = ASTParser.newParser(AST.JLS11);
+		parser.setResolveBindings(true);
+		parser.setBindingsRecovery(true);
+		Map<String, String> options = JavaCore.getOptions();
+		JavaCore.setComplianceOptions(JavaCore.VERSION_11, options);
+		parser.setCompilerOptions(options);
+		parser.setEnvironment(null, null, null, true);
+		parser.setUnitName(filePath);
+		parser.setSource(sourceCode.toCharArray());
+		return (CompilationUnit) parser.createAST(null);
+	}
+
+	// Calculates the CK metrics of the file stored in the given blob. If the same blob was
+	// already analyzed, the cached results are returned without running CK again.
+	// Results of failed CK runs are returned, but never cached.
+	public static List<CKClassSnapshot> calculate(CKResultCache cache, BlobReader blobReader, ObjectId blobId,
+			String fileName, String commitHash, String projectUrl, int timeoutInSeconds)
+			throws IOException, InterruptedException {
+		List<CKClassSnapshot> cachedResult = cache.get(blobId);
+		if (cachedResult != null)
+			return cachedResult;
+
+		// a timed out CK run might still report classes later on, so we only hand out copies
+		List<CKClassSnapshot> result = Collections.synchronizedList(new ArrayList<>());
+		boolean success = calculate(blobReader.readString(blobId), fileName, commitHash, projectUrl,
+				ck -> result.add(new CKClassSnapshot(ck)), timeoutInSeconds);
+		List<CKClassSnapshot> resultCopy;
+		synchronized (result) {
+			resultCopy = new ArrayList<>(result);
+		}
+		if (success)
+			cache.put(blobId, resultCopy);
+		return resultCopy;
 	}
 
 	/**
@@ -159,35 +229,32 @@ public class CKUtils {
 		return classType.equals("innerclass");
 	}
 
-	// Extract the class metrics from a CKClassResult
-	public static ClassMetric extractClassMetrics(CKClassResult ck, Project project) {
-		return new ClassMetric(CKUtils.evaluateSubclass(ck.getType()), ck.getCbo(), ck.getWmc(), ck.getRfc(),
-				ck.getLcom(), ck.getTightClassCohesion(), ck.getLooseClassCohesion(), ck.getNumberOfMethods(),
-				ck.getNumberOfStaticMethods(), ck.getNumberOfPublicMethods(), ck.getNumberOfPrivateMethods(),
-				ck.getNumberOfProtectedMethods(), ck.getNumberOfDefaultMethods(), ck.getVisibleMethods().size(),
-				ck.getNumberOfAbstractMethods(), ck.getNumberOfFinalMethods(), ck.getNumberOfSynchronizedMethods(),
-				ck.getNumberOfFields(), ck.getNumberOfStaticFields(), ck.getNumberOfPublicFields(),
-				ck.getNumberOfPrivateFields(), ck.getNumberOfProtectedFields(), ck.getNumberOfDefaultFields(),
-				ck.getNumberOfFinalFields(), ck.getNumberOfSynchronizedFields(), ck.getNosi(), ck.getLoc(),
-				ck.getReturnQty(), ck.getLoopQty(), ck.getComparisonsQty(), ck.getTryCatchQty(),
-				ck.getParenthesizedExpsQty(), ck.getStringLiteralsQty(), ck.getNumbersQty(), ck.getAssignmentsQty(),
-				ck.getMathOperationsQty(), ck.getVariablesQty(), ck.getMaxNestedBlocks(), ck.getAnonymousClassesQty(),
-				ck.getInnerClassesQty(), ck.getLambdasQty(), ck.getUniqueWordsQty(), project);
+	// Extract the class metrics from a CKClassSnapshot
+	public static ClassMetric extractClassMetrics(CKClassSnapshot ck, Project project) {
+		return new ClassMetric(CKUtils.evaluateSubclass(ck.getType()), ck.cbo, ck.wmc, ck.rfc, ck.lcom,
+				ck.tightClassCohesion, ck.looseClassCohesion, ck.numberOfMethods, ck.numberOfStaticMethods,
+				ck.numberOfPublicMethods, ck.numberOfPrivateMethods, ck.numberOfProtectedMethods,
+				ck.numberOfDefaultMethods, ck.numberOfVisibleMethods, ck.numberOfAbstractMethods,
+				ck.numberOfFinalMethods, ck.numberOfSynchronizedMethods, ck.numberOfFields, ck.numberOfStaticFields,
+				ck.numberOfPublicFields, ck.numberOfPrivateFields, ck.numberOfProtectedFields,
+				ck.numberOfDefaultFields, ck.numberOfFinalFields, ck.numberOfSynchronizedFields, ck.nosi, ck.loc,
+				ck.returnQty, ck.loopQty, ck.comparisonsQty, ck.tryCatchQty, ck.parenthesizedExpsQty,
+				ck.stringLiteralsQty, ck.numbersQty, ck.assignmentsQty, ck.mathOperationsQty, ck.variablesQty,
+				ck.maxNestedBlocks, ck.anonymousClassesQty, ck.innerClassesQty, ck.lambdasQty, ck.uniqueWordsQty,
+				project);
 	}
 
-	// Extract the method metrics from a CKMethodResult
-	public static MethodMetric extractMethodMetrics(CKMethodResult ckMethodResult, Project project) {
+	// Extract the method metrics from a CKMethodSnapshot
+	public static MethodMetric extractMethodMetrics(CKMethodSnapshot ckMethodResult, Project project) {
 		return new MethodMetric(CKUtils.simplifyFullMethodName(ckMethodResult.getMethodName()),
-				cleanMethodName(ckMethodResult.getMethodName()), ckMethodResult.getStartLine(), ckMethodResult.getCbo(),
-				ckMethodResult.getWmc(), ckMethodResult.getRfc(), ckMethodResult.getLoc(),
-				ckMethodResult.getReturnQty(), ckMethodResult.getVariablesQty(), ckMethodResult.getParametersQty(),
-				ckMethodResult.getMethodInvocations().size(), ckMethodResult.getMethodInvocationsLocal().size(),
-				ckMethodResult.getMethodInvocationsIndirectLocal().keySet().size(), ckMethodResult.getLoopQty(),
-				ckMethodResult.getComparisonsQty(), ckMethodResult.getTryCatchQty(),
-				ckMethodResult.getParenthesizedExpsQty(), ckMethodResult.getStringLiteralsQty(),
-				ckMethodResult.getNumbersQty(), ckMethodResult.getAssignmentsQty(),
-				ckMethodResult.getMathOperationsQty(), ckMethodResult.getMaxNestedBlocks(),
-				ckMethodResult.getAnonymousClassesQty(), ckMethodResult.getInnerClassesQty(),
-				ckMethodResult.getLambdasQty(), ckMethodResult.getUniqueWordsQty(), project);
+				cleanMethodName(ckMethodResult.getMethodName()), ckMethodResult.startLine, ckMethodResult.cbo,
+				ckMethodResult.wmc, ckMethodResult.rfc, ckMethodResult.loc, ckMethodResult.returnQty,
+				ckMethodResult.variablesQty, ckMethodResult.parametersQty, ckMethodResult.methodInvocationsQty,
+				ckMethodResult.methodInvocationsLocalQty, ckMethodResult.methodInvocationsIndirectLocalQty,
+				ckMethodResult.loopQty, ckMethodResult.comparisonsQty, ckMethodResult.tryCatchQty,
+				ckMethodResult.parenthesizedExpsQty, ckMethodResult.stringLiteralsQty, ckMethodResult.numbersQty,
+				ckMethodResult.assignmentsQty, ckMethodResult.mathOperationsQty, ckMethodResult.maxNestedBlocks,
+				ckMethodResult.anonymousClassesQty, ckMethodResult.innerClassesQty, ckMethodResult.lambdasQty,
+				ckMethodResult.uniqueWordsQty, project);
 	}
 }
\ No newline at end of file
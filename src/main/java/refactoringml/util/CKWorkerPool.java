@@ -0,0 +1,164 @@
+package refactoringml.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.logging.Logger;
+
+// A bounded pool of threads running CK, shared by all projects.
+// JDT ignores interrupts, so a CK task that runs into its timeout can keep its thread
+// busy for a long time. Such a task is quarantined: the caller gets a TimeoutException
+// right away, the pool gets an extra thread to replace the stuck one, and it shrinks
+// back once the stuck task finally ends. At most maxStuckWorkers threads are replaced,
+// so pathological files cannot make the pool grow without bounds. Once all threads are stuck
+// nevertheless, waiting for a free worker times out after queueTimeoutInSeconds, so the callers
+// go on without the CK metrics of their file instead of waiting as long as the stuck tasks.
+public class CKWorkerPool {
+	private static final Logger log = Logger.getLogger(CKWorkerPool.class);
+
+	private static final int NEW = 0;
+	private static final int RUNNING = 1;
+	private static final int DONE = 2;
+	private static final int QUARANTINED = 3;
+
+	private final ThreadPoolExecutor executor;
+	private final int threads;
+	private final int maxStuckWorkers;
+	private final int queueTimeoutInSeconds;
+	// workers currently busy with a quarantined task
+	private final AtomicInteger stuckWorkers = new AtomicInteger();
+	// all tasks that were quarantined since the pool was created
+	private final AtomicLong quarantinedTasks = new AtomicLong();
+	// workers that are stuck, but could not be replaced because of maxStuckWorkers
+	private int missingWorkers;
+
+	public CKWorkerPool(int threads, int maxStuckWorkers, int queueTimeoutInSeconds) {
+		this.threads = Math.max(1, threads);
+		this.maxStuckWorkers = Math.max(0, maxStuckWorkers);
+		this.queueTimeoutInSeconds = Math.max(1, queueTimeoutInSeconds);
+		AtomicInteger threadCount = new AtomicInteger();
+		ThreadFactory threadFactory = runnable -> {
+			Thread thread = new Thread(runnable, "ck-worker-" + threadCount.incrementAndGet());
+			// a stuck worker should never keep the JVM alive
+			thread.setDaemon(true);
+			return thread;
+		};
+		this.executor = new ThreadPoolExecutor(this.threads, this.threads, 60L, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), threadFactory);
+	}
+
+	// Runs the task on the pool and waits for it. The timeout only starts once a
+	// worker picked up the task, waiting for a free worker has its own timeout.
+	public <T> T run(Callable<T> callable, int timeoutInSeconds)
+			throws InterruptedException, ExecutionException, TimeoutException {
+		CKTask<T> task = new CKTask<>(callable);
+		executor.execute(task);
+		try {
+			// unless a worker picked up the task in the meantime
+			if (!task.started.await(queueTimeoutInSeconds, TimeUnit.SECONDS) && task.state.compareAndSet(NEW, DONE)) {
+				task.cancel(false);
+				executor.remove(task);
+				throw new TimeoutException("No CK worker was free within " + queueTimeoutInSeconds + " seconds, "
+						+ stuckWorkers.get() + " workers are stuck");
+			}
+			return task.get(timeoutInSeconds, TimeUnit.SECONDS);
+		} catch (TimeoutException e) {
+			quarantine(task);
+			throw e;
+		} catch (InterruptedException e) {
+			// nobody waits for the result anymore
+			task.cancel(false);
+			throw e;
+		}
+	}
+
+	public int getStuckWorkers() {
+		return stuckWorkers.get();
+	}
+
+	public long getQuarantinedTasks() {
+		return quarantinedTasks.get();
+	}
+
+	// No more tasks are accepted, the waiting ones still run, so that their callers get their results
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	private void quarantine(CKTask<?> task) {
+		if (!task.state.compareAndSet(RUNNING, QUARANTINED))
+			return; // finished just in time
+
+		quarantinedTasks.incrementAndGet();
+		int stuck = stuckWorkers.incrementAndGet();
+		// JDT will most likely ignore this, but CK might not
+		task.cancel(true);
+
+		synchronized (this) {
+			if (stuck <= maxStuckWorkers) {
+				executor.setMaximumPoolSize(threads + stuck - missingWorkers);
+				executor.setCorePoolSize(threads + stuck - missingWorkers);
+			} else {
+				missingWorkers++;
+				log.error("There are " + stuck + " stuck CK workers, which is more than the maximum of "
+						+ maxStuckWorkers + " that will be replaced. CK runs with " + (threads - missingWorkers)
+						+ " threads until they finish.");
+			}
+		}
+	}
+
+	// Called by the stuck worker once its quarantined task ends
+	private void release() {
+		int stuck = stuckWorkers.decrementAndGet();
+		synchronized (this) {
+			if (missingWorkers > 0) {
+				missingWorkers--;
+			} else {
+				executor.setCorePoolSize(threads + stuck - missingWorkers);
+				executor.setMaximumPoolSize(threads + stuck - missingWorkers);
+			}
+		}
+		log.info("A stuck CK worker finished its task, " + stuck + " workers are still stuck.");
+	}
+
+	private class CKTask<T> extends FutureTask<T> {
+		private final AtomicInteger state = new AtomicInteger(NEW);
+		private final CountDownLatch started = new CountDownLatch(1);
+
+		private CKTask(Callable<T> callable) {
+			super(callable);
+		}
+
+		@Override
+		public void run() {
+			if (!state.compareAndSet(NEW, RUNNING)) {
+				started.countDown();
+				return;
+			}
+			started.countDown();
+			try {
+				super.run();
+			} finally {
+				if (!state.compareAndSet(RUNNING, DONE))
+					release();
+			}
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			// a task that did not start yet never will
+			state.compareAndSet(NEW, DONE);
+			started.countDown();
+			return super.cancel(mayInterruptIfRunning);
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package refactoringml.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+// All commits of a branch in the order they are mined, oldest first, built in a single pass over the history.
+// A commit is referenced by its position in the index, its commit number in the history is the position plus one.
+// Only ids, parents, authors and times are kept in arrays, the commits are parsed again when they are mined, so
+// that the messages and trees of the whole history are never in memory at the same time.
+public class CommitIndex {
+
+	private static final int ID_LENGTH = Constants.OBJECT_ID_LENGTH;
+
+	// the raw ids of all commits, one after another
+	private final byte[] ids;
+	// positions of the commits sorted by id, to find a commit by its id
+	private final int[] sortedByIds;
+	// the parents of commit i are in parents[parentOffsets[i]] up to parents[parentOffsets[i + 1]]
+	private final int[] parentOffsets;
+	private final int[] parents;
+	private final int[] authorIds;
+	private final List<String> authors;
+	// seconds since the epoch
+	private final int[] commitTimes;
+
+	private CommitIndex(byte[] ids, int[] sortedByIds, int[] parentOffsets, int[] parents, int[] authorIds,
+			List<String> authors, int[] commitTimes) {
+		this.ids = ids;
+		this.sortedByIds = sortedByIds;
+		this.parentOffsets = parentOffsets;
+		this.parents = parents;
+		this.authorIds = authorIds;
+		this.authors = authors;
+		this.commitTimes = commitTimes;
+	}
+
+	// Indexes all commits reachable from the given branch, in the order of a reverse RevWalk
+	public static CommitIndex build(Repository repository, String branch) throws IOException {
+		ObjectId start = repository.resolve(branch);
+		List<RevCommit> commits = new ArrayList<>();
+		// the author of every commit, newest first like the walk
+		List<Integer> authorIdsNewestFirst = new ArrayList<>();
+		Map<String, Integer> authorIdsByName = new HashMap<>();
+		List<String> authors = new ArrayList<>();
+		try (RevWalk walk = new RevWalk(repository)) {
+			if (start != null)
+				walk.markStart(walk.parseCommit(start));
+			for (RevCommit commit = walk.next(); commit != null; commit = walk.next()) {
+				commits.add(commit);
+				String author = commit.getAuthorIdent().getName();
+				authorIdsNewestFirst.add(authorIdsByName.computeIfAbsent(author, name -> {
+					authors.add(name);
+					return authors.size() - 1;
+				}));
+				// the walk keeps all commits until it is closed, so their bodies are released right away
+				commit.disposeBody();
+			}
+
+			int size = commits.size();
+			byte[] ids = new byte[size * ID_LENGTH];
+			int[] authorIds = new int[size];
+			int[] commitTimes = new int[size];
+			int parentCount = 0;
+			// the walk returned the newest commit first
+			Collections.reverse(commits);
+			for (int i = 0; i < size; i++) {
+				RevCommit commit = commits.get(i);
+				commit.copyRawTo(ids, i * ID_LENGTH);
+				commitTimes[i] = commit.getCommitTime();
+				authorIds[i] = authorIdsNewestFirst.get(size - 1 - i);
+				parentCount += commit.getParentCount();
+			}
+
+			int[] sortedByIds = IntStream.range(0, size).boxed()
+					.sorted((a, b) -> commits.get(a).compareTo(commits.get(b))).mapToInt(Integer::intValue).toArray();
+			int[] parentOffsets = new int[size + 1];
+			int[] parents = new int[parentCount];
+			CommitIndex index = new CommitIndex(ids, sortedByIds, parentOffsets, parents, authorIds, authors,
+					commitTimes);
+			int offset = 0;
+			for (int i = 0; i < size; i++) {
+				parentOffsets[i] = offset;
+				for (RevCommit parent : commits.get(i).getParents())
+					parents[offset++] = index.indexOf(parent);
+			}
+			parentOffsets[size] = offset;
+			return index;
+		}
+	}
+
+	public int size() {
+		return authorIds.length;
+	}
+
+	public ObjectId getId(int index) {
+		return ObjectId.fromRaw(ids, index * ID_LENGTH);
+	}
+
+	public String getName(int index) {
+		return getId(index).getName();
+	}
+
+	// The position of the commit with the given id, -1 if it is not in the index
+	public int indexOf(AnyObjectId id) {
+		int low = 0;
+		int high = sortedByIds.length - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int comparison = id.compareTo(ids, sortedByIds[middle] * ID_LENGTH);
+			if (comparison == 0)
+				return sortedByIds[middle];
+			if (comparison < 0)
+				high = middle - 1;
+			else
+				low = middle + 1;
+		}
+		return -1;
+	}
+
+	// The position of the commit with the given hash, -1 if it is not in the index or not a valid hash
+	public int indexOf(String commitHash) {
+		return ObjectId.isId(commitHash) ? indexOf(ObjectId.fromString(commitHash)) : -1;
+	}
+
+	public int getParentCount(int index) {
+		return parentOffsets[index + 1] - parentOffsets[index];
+	}
+
+	// The position of the nth parent of the commit
+	public int getParent(int index, int nth) {
+		return parents[parentOffsets[index] + nth];
+	}
+
+	public String getAuthor(int index) {
+		return authors.get(authorIds[index]);
+	}
+
+	// Commits of the same author have the same id
+	public int getAuthorId(int index) {
+		return authorIds[index];
+	}
+
+	public int getAmountOfAuthors() {
+		return authors.size();
+	}
+
+	public int getCommitTime(int index) {
+		return commitTimes[index];
+	}
+
+	// Parses the commit to mine it: its message and author, and the headers of its parents, e.g. their trees.
+	// The walk should not retain bodies, the body of the commit can be disposed once it is mined.
+	public RevCommit parseCommit(RevWalk walk, int index) throws IOException {
+		RevCommit commit = walk.parseCommit(getId(index));
+		walk.parseBody(commit);
+		for (RevCommit parent : commit.getParents())
+			walk.parseHeaders(parent);
+		return commit;
+	}
+}
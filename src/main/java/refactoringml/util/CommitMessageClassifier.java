@@ -0,0 +1,117 @@
+package refactoringml.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Classifies commits by the keywords in their messages, e.g. as bug fixes. A message falls into a category if it
+// contains one of the keywords of the category anywhere, ignoring the case. All keywords of all categories are
+// searched in one pass over the message with an Aho-Corasick automaton, so a commit is classified once for all
+// categories, however many keywords there are. A new classification is a new category with its keywords.
+// The classifier is immutable, so it may be shared by all threads.
+public class CommitMessageClassifier {
+
+	public enum Category {
+		BUG_FIX
+	}
+
+	public static final List<String> DEFAULT_BUG_FIX_KEYWORDS = List.of("bug", "error", "mistake", "fault", "wrong",
+			"fail", "fix");
+
+	// The classifier for the default keywords
+	public static final CommitMessageClassifier DEFAULT = new CommitMessageClassifier(
+			Map.of(Category.BUG_FIX, DEFAULT_BUG_FIX_KEYWORDS));
+
+	// characters not in any keyword
+	private static final int OTHER = 0;
+
+	// the index of the characters of the keywords in the rows of the transitions, 0 for all others
+	private final Map<Character, Integer> alphabet = new HashMap<>();
+	// the same for ASCII characters, without boxing them
+	private final int[] asciiAlphabet = new int[128];
+	// the next state for each state and character, the state 0 is the start
+	private final int[][] transitions;
+	// the categories whose keywords end in each state, as bits
+	private final int[] matches;
+	private final int allCategories;
+
+	public CommitMessageClassifier(Map<Category, ? extends Collection<String>> keywords) {
+		// the trie of the keywords
+		List<Map<Integer, Integer>> children = new ArrayList<>();
+		List<Integer> stateMatches = new ArrayList<>();
+		children.add(new HashMap<>());
+		stateMatches.add(0);
+		int categories = 0;
+		for (Map.Entry<Category, ? extends Collection<String>> category : keywords.entrySet()) {
+			int bit = 1 << category.getKey().ordinal();
+			for (String keyword : category.getValue()) {
+				if (keyword.isEmpty())
+					continue;
+				categories |= bit;
+				int state = 0;
+				for (char c : keyword.toCharArray()) {
+					int symbol = alphabet.computeIfAbsent(Character.toLowerCase(c), ignored -> alphabet.size() + 1);
+					Integer next = children.get(state).get(symbol);
+					if (next == null) {
+						next = children.size();
+						children.add(new HashMap<>());
+						stateMatches.add(0);
+						children.get(state).put(symbol, next);
+					}
+					state = next;
+				}
+				stateMatches.set(state, stateMatches.get(state) | bit);
+			}
+		}
+		this.allCategories = categories;
+		for (Map.Entry<Character, Integer> symbol : alphabet.entrySet()) {
+			if (symbol.getKey() < asciiAlphabet.length)
+				asciiAlphabet[symbol.getKey()] = symbol.getValue();
+		}
+
+		// breadth first, so the fallback of a state is complete before the states below it
+		int states = children.size();
+		this.transitions = new int[states][alphabet.size() + 1];
+		this.matches = new int[states];
+		int[] fallbacks = new int[states];
+		Deque<Integer> queue = new ArrayDeque<>();
+		queue.add(0);
+		while (!queue.isEmpty()) {
+			int state = queue.poll();
+			matches[state] = stateMatches.get(state) | matches[fallbacks[state]];
+			for (int symbol = OTHER; symbol <= alphabet.size(); symbol++) {
+				Integer child = children.get(state).get(symbol);
+				if (child == null) {
+					transitions[state][symbol] = state == 0 ? 0 : transitions[fallbacks[state]][symbol];
+				} else {
+					fallbacks[child] = state == 0 ? 0 : transitions[fallbacks[state]][symbol];
+					transitions[state][symbol] = child;
+					queue.add(child);
+				}
+			}
+		}
+	}
+
+	public Set<Category> classify(String message) {
+		int found = 0;
+		int state = 0;
+		for (int i = 0; i < message.length() && found != allCategories; i++) {
+			char c = Character.toLowerCase(message.charAt(i));
+			state = transitions[state][c < asciiAlphabet.length ? asciiAlphabet[c] : alphabet.getOrDefault(c, OTHER)];
+			found |= matches[state];
+		}
+
+		Set<Category> categories = EnumSet.noneOf(Category.class);
+		for (Category category : Category.values()) {
+			if ((found & (1 << category.ordinal())) != 0)
+				categories.add(category);
+		}
+		return categories;
+	}
+}
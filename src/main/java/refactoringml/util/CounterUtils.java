@@ -6,7 +6,9 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
 import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -15,6 +17,13 @@ import java.util.List;
 import java.util.stream.Collectors;
 
 import org.apache.commons.io.IOUtils;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
 import org.jboss.logging.Logger;
 
 // TODO Add constructor to CK LOC calculator and call the ck version.
@@ -181,6 +190,56 @@ public class CounterUtils {
 		return res;
 	}
 
+	// Counts the Java files of the given commit from the object database, for clones without a working tree
+	public static CounterResult countProductionAndTestFiles(Repository repository, ObjectId commitId)
+			throws IOException {
+		var res = new CounterResult();
+		long productionFiles = 0;
+		long testFiles = 0;
+		long productionLoc = 0;
+		long testLoc = 0;
+		// an empty repository has no commit
+		if (commitId != null) {
+			try (RevWalk revWalk = new RevWalk(repository); TreeWalk treeWalk = new TreeWalk(repository)) {
+				treeWalk.addTree(revWalk.parseCommit(commitId).getTree());
+				treeWalk.setRecursive(true);
+				treeWalk.setFilter(PathSuffixFilter.create(".java"));
+				while (treeWalk.next()) {
+					// like the regular files of a working tree, so no symbolic links or submodules
+					if ((treeWalk.getRawMode(0) & FileMode.TYPE_MASK) != FileMode.TYPE_FILE)
+						continue;
+					String path = treeWalk.getPathString();
+					long loc = countLines(repository, treeWalk.getObjectId(0), path, res);
+					if (isTestFile(path)) {
+						testFiles++;
+						testLoc += loc;
+					} else {
+						productionFiles++;
+						productionLoc += loc;
+					}
+				}
+			}
+		}
+		res.setCounterResultProperties(productionFiles, testFiles, productionLoc, testLoc);
+		return res;
+	}
+
+	private static long countLines(Repository repository, ObjectId blobId, String path, CounterResult counterResult) {
+		try {
+			byte[] bytes = repository.open(blobId, Constants.OBJ_BLOB).getBytes();
+			// fails on malformed input, like reading the file from the working tree
+			var contents = StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(bytes)).toString();
+			return (long) calculate(contents);
+		} catch (MalformedInputException mie) {
+			counterResult.incrementExceptionsCount();
+			log.warnf(mie, "File with path %s has unmappable sequence", path);
+			return 0;
+		} catch (Exception e) {
+			counterResult.incrementExceptionsCount();
+			throw new RuntimeException(e);
+		}
+	}
+
 	private static long countLines(Path filePath, CounterResult counterResult) {
 		try {
 			var contents = Files.readString(filePath);
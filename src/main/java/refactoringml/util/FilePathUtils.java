@@ -1,6 +1,10 @@
 package refactoringml.util;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
 
 public class FilePathUtils {
 
@@ -36,6 +40,30 @@ public class FilePathUtils {
 		return unixPath + (unixPath.endsWith("/")?"":"/");
 	}
 
+	/*
+	The directories moved by the rename of a file, i.e. the old and new path without their common end, e.g.
+	src/main/java -> src/java for a rename of src/main/java/a/B.java to src/java/a/B.java.
+	Null if the file name changed, or if no directories outside of each other were moved.
+	*/
+	public static ImmutablePair<String, String> movedDirectories(String oldPath, String newPath) {
+		List<String> oldDirectories = Arrays.asList(oldPath.split("/"));
+		List<String> newDirectories = Arrays.asList(newPath.split("/"));
+		int oldEnd = oldDirectories.size() - 1;
+		int newEnd = newDirectories.size() - 1;
+		ImmutablePair<String, String> moved = null;
+		while (oldEnd > 0 && newEnd > 0 && oldDirectories.get(oldEnd).equals(newDirectories.get(newEnd))) {
+			String oldDirectory = String.join("/", oldDirectories.subList(0, oldEnd--));
+			String newDirectory = String.join("/", newDirectories.subList(0, newEnd--));
+			if (!isInDirectory(oldDirectory, newDirectory) && !isInDirectory(newDirectory, oldDirectory))
+				moved = ImmutablePair.of(oldDirectory, newDirectory);
+		}
+		return moved;
+	}
+
+	private static boolean isInDirectory(String directory, String path) {
+		return path.equals(directory) || path.startsWith(directory + "/");
+	}
+
 	/*
 		Enforce uniform path formatting for cross-platform support.
 		On Windows jgit.Diffentry.getPath() and ck.getFile use different file separator e.g.
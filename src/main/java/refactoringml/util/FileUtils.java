@@ -1,11 +1,12 @@
 package refactoringml.util;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.List;
+import java.nio.file.StandardOpenOption;
 import java.util.Scanner;
-import java.util.stream.Collectors;
 import static refactoringml.util.FilePathUtils.*;
 
 public class FileUtils {
@@ -84,22 +85,18 @@ public class FileUtils {
 		ps.close();
 	}
 
-	// Write the toString of an object to a file at the given path. Creates a new
-	// file and directory at the path if necessary.
-	public static void appendToFile(File file, String content) throws IOException {
-		try (FileWriter fr = new FileWriter(file, true)) {
-			fr.write(content);
+	// Write the bytes to a new file at the given path, as they are. Creates a new directory at
+	// the path if necessary.
+	public static void writeFile(String filePath, ByteBuffer content) throws IOException {
+		new File(dirsOnly(filePath)).mkdirs();
+		try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer bytes = content.duplicate();
+			while (bytes.hasRemaining())
+				channel.write(bytes);
 		}
 	}
 
-	// remove all matching lines from the file
-	public static void removeFromFile(File file, String condition) throws IOException {
-		List<String> lines = Files.readAllLines(file.toPath());
-		List<String> cleanedLines = lines.stream().filter(line -> !line.contains(condition))
-				.collect(Collectors.toList());
-		org.apache.commons.io.FileUtils.writeLines(file, cleanedLines, false);
-	}
-
 	// Write the content to a new file at the given path. Creates a new directory at
 	// the path if necessary.
 	public static String readFile(String filePath) throws FileNotFoundException {
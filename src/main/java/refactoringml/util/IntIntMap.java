@@ -0,0 +1,95 @@
+package refactoringml.util;
+
+import java.util.Arrays;
+
+// A map from non negative int keys to int values, without boxing them. The entries are stored in two arrays with
+// open addressing, so copying the map only copies two arrays.
+public class IntIntMap {
+
+	@FunctionalInterface
+	public interface EntryConsumer {
+		void accept(int key, int value);
+	}
+
+	private static final int FREE = -1;
+
+	private int[] keys;
+	private int[] values;
+	private int size;
+
+	public IntIntMap() {
+		this(4);
+	}
+
+	public IntIntMap(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+		keys = new int[capacity];
+		Arrays.fill(keys, FREE);
+		values = new int[capacity];
+	}
+
+	public IntIntMap(IntIntMap map) {
+		keys = map.keys.clone();
+		values = map.values.clone();
+		size = map.size;
+	}
+
+	// Returns the value of the key, or 0 if it has none
+	public int get(int key) {
+		int slot = slot(key);
+		return keys[slot] == FREE ? 0 : values[slot];
+	}
+
+	// Adds the delta to the value of the key, a key without a value starts at 0. Returns the new value.
+	public int add(int key, int delta) {
+		if (key < 0)
+			throw new IllegalArgumentException("Negative key " + key);
+		int slot = slot(key);
+		if (keys[slot] == FREE) {
+			if ((size + 1) * 2 > keys.length) {
+				grow();
+				slot = slot(key);
+			}
+			keys[slot] = key;
+			size++;
+		}
+		values[slot] += delta;
+		return values[slot];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void forEach(EntryConsumer consumer) {
+		for (int slot = 0; slot < keys.length; slot++) {
+			if (keys[slot] != FREE)
+				consumer.accept(keys[slot], values[slot]);
+		}
+	}
+
+	// The slot of the key, or the free slot where it belongs
+	private int slot(int key) {
+		int mask = keys.length - 1;
+		int hash = key * 0x9E3779B9;
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		while (keys[slot] != FREE && keys[slot] != key)
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	private void grow() {
+		int[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new int[oldKeys.length * 2];
+		Arrays.fill(keys, FREE);
+		values = new int[oldKeys.length * 2];
+		for (int slot = 0; slot < oldKeys.length; slot++) {
+			if (oldKeys[slot] != FREE) {
+				int newSlot = slot(oldKeys[slot]);
+				keys[newSlot] = oldKeys[slot];
+				values[newSlot] = oldValues[slot];
+			}
+		}
+	}
+}
@@ -3,7 +3,8 @@ package refactoringml.util;
 import static refactoringml.util.RefactoringUtils.refactoredFilesAndClasses;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.GregorianCalendar;
@@ -15,17 +16,20 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.eclipse.jgit.api.CloneCommand;
 import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.TransportCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.diff.DiffFormatter;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.RevSort;
 import org.eclipse.jgit.revwalk.RevWalk;
-import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.transport.CredentialsProvider;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import org.eclipse.jgit.util.io.DisabledOutputStream;
 import org.refactoringminer.api.Refactoring;
 
@@ -35,17 +39,68 @@ public class JGitUtils {
 
 	}
 
+	// file:// urls are cloned like remote repositories, e.g. to test the cloning
 	public static boolean isLocal(String gitUrl) {
-		return !(gitUrl.startsWith("https") || gitUrl.startsWith("git"));
-	}
-
-	public static int numberOfCommits(Git git) throws GitAPIException {
-		Iterable<RevCommit> commits = git.log().call();
-		int count = 0;
-		for (RevCommit ignored : commits) {
-			count++;
+		return !(gitUrl.startsWith("https") || gitUrl.startsWith("git") || gitUrl.startsWith("file:"));
+	}
+
+	// Local repositories are used where they are, all others are cloned into the repositories path
+	public static Path getClonePath(String gitUrl, Path repositoriesPath) {
+		return isLocal(gitUrl) ? Paths.get(gitUrl) : repositoriesPath.resolve(extractProjectNameFromGitUrl(gitUrl));
+	}
+
+	// Clone the repository into the clone path. A bare clone has no working tree and only the main branch.
+	// credentials: null if the repository does not need authentication
+	public static Git cloneRepository(String gitUrl, Path clonePath, boolean bare, CredentialsProvider credentials)
+			throws GitAPIException {
+		CloneCommand command = withCredentials(Git.cloneRepository(), credentials).setDirectory(clonePath.toFile())
+				.setURI(gitUrl);
+		String mainBranch = bare ? remoteMainBranch(gitUrl, credentials) : null;
+		if (mainBranch != null) {
+			// the main branch ends up in refs/heads of the bare clone, with HEAD pointing to it
+			command.setBare(true).setCloneAllBranches(false).setBranchesToClone(List.of(mainBranch))
+					.setBranch(mainBranch);
+		} else {
+			command.setBare(bare).setCloneAllBranches(true);
+		}
+		return command.call();
+	}
+
+	// The branch HEAD of the remote repository points to, null if the remote does not tell
+	public static String remoteMainBranch(String gitUrl, CredentialsProvider credentials) throws GitAPIException {
+		Map<String, Ref> refs = withCredentials(Git.lsRemoteRepository(), credentials).setRemote(gitUrl).callAsMap();
+		Ref head = refs.get(Constants.HEAD);
+		if (head == null)
+			return null;
+		if (head.isSymbolic())
+			return head.getTarget().getName();
+		// servers that do not advertise the target of HEAD: take the branch at the same commit
+		return refs.values().stream()
+				.filter(ref -> ref.getName().startsWith(Constants.R_HEADS)
+						&& head.getObjectId().equals(ref.getObjectId()))
+				.map(Ref::getName).findFirst().orElse(null);
+	}
+
+	public static <C extends TransportCommand<C, ?>> C withCredentials(C command, CredentialsProvider credentials) {
+		if (credentials != null)
+			command.setCredentialsProvider(credentials);
+		return command;
+	}
+
+	// Counts the commits reachable from HEAD, without keeping their messages in memory
+	public static int numberOfCommits(Git git) throws IOException {
+		ObjectId head = git.getRepository().resolve(Constants.HEAD);
+		if (head == null)
+			return 0;
+		try (RevWalk walk = new RevWalk(git.getRepository())) {
+			walk.setRetainBody(false);
+			walk.markStart(walk.parseCommit(head));
+			int count = 0;
+			while (walk.next() != null) {
+				count++;
+			}
+			return count;
 		}
-		return count;
 	}
 
 	public static String getHead(Git git) throws IOException {
@@ -56,26 +111,6 @@ public class JGitUtils {
 		return git.getRepository().getBranch();
 	}
 
-	public static String readFileFromGit(Repository repo, RevCommit commit, String filepath) throws IOException {
-		try (TreeWalk walk = TreeWalk.forPath(repo, filepath, commit.getTree())) {
-			if (walk != null) {
-				byte[] bytes = repo.open(walk.getObjectId(0)).getBytes();
-				return new String(bytes, StandardCharsets.UTF_8);
-			} else {
-				throw new IllegalArgumentException("No path found in " + commit.getName() + ": " + filepath);
-			}
-		}
-	}
-
-	public static String readFileFromGit(Repository repo, String commit, String filepath) throws IOException {
-		ObjectId commitId = ObjectId.fromString(commit);
-		try (RevWalk revWalk = new RevWalk(repo)) {
-			RevCommit revCommit = revWalk.parseCommit(commitId);
-
-			return readFileFromGit(repo, revCommit, filepath);
-		}
-	}
-
 	public static String extractProjectNameFromGitUrl(String gitUrl) {
 		String[] splittedGitUrl = gitUrl.split("/");
 		return splittedGitUrl[splittedGitUrl.length - 1].replace(".git", "");
@@ -88,13 +123,6 @@ public class JGitUtils {
 		return commitTime;
 	}
 
-	public static RevWalk getReverseWalk(Repository repo, String mainBranch) throws IOException {
-		RevWalk walk = new RevWalk(repo);
-		walk.markStart(walk.parseCommit(repo.resolve(mainBranch)));
-		walk.sort(RevSort.REVERSE);
-		return walk;
-	}
-
 	// Generate the commit url with repository url and the commit ID
 	// Local repositories without remote are formatted as: @local/repository/commit
 	// Id
@@ -132,6 +160,18 @@ public class JGitUtils {
 		return diffFormatter;
 	}
 
+	// Only the paths the filter lets through are diffed, and renames are only detected among them. Rename detection
+	// gives up on diffs with more than renameLimit added or deleted files, and needs renameScore percent of
+	// similarity to pair them.
+	public static DiffFormatter createDiffFormatter(Repository repository, TreeFilter pathFilter, int renameLimit,
+			int renameScore) {
+		var diffFormatter = createDiffFormatter(repository);
+		diffFormatter.setPathFilter(pathFilter);
+		diffFormatter.getRenameDetector().setRenameLimit(renameLimit);
+		diffFormatter.getRenameDetector().setRenameScore(renameScore);
+		return diffFormatter;
+	}
+
 	// Calculate the JGit diff-entries for the given repository and commit
 	public static List<DiffEntry> calculateDiffEntries(RevCommit commit, DiffFormatter diffFormatter)
 			throws IOException {
@@ -0,0 +1,52 @@
+package refactoringml.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.eclipse.jgit.ignore.FastIgnoreRule;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+// Only lets a diff see Java files. Set on a DiffFormatter, the other files are skipped before renames are detected,
+// so no content similarity is computed for images, fixtures or generated resources.
+// Paths matching one of the exclusion patterns (in .gitignore syntax, e.g. "**/generated/") are skipped as well,
+// excluded directories without entering them.
+public class JavaFileFilter extends TreeFilter {
+
+	private final List<FastIgnoreRule> exclusions = new ArrayList<>();
+
+	public JavaFileFilter(Collection<String> exclusionPatterns) {
+		for (String pattern : exclusionPatterns) {
+			if (!pattern.isBlank())
+				exclusions.add(new FastIgnoreRule(pattern.trim()));
+		}
+	}
+
+	@Override
+	public boolean include(TreeWalk walker) {
+		String path = walker.getPathString();
+		boolean directory = walker.isSubtree();
+		for (FastIgnoreRule exclusion : exclusions) {
+			if (exclusion.isMatch(path, directory))
+				return false;
+		}
+		return directory || FileUtils.isJavaFile(path);
+	}
+
+	@Override
+	public boolean shouldBeRecursive() {
+		return true;
+	}
+
+	// it has no state
+	@Override
+	public TreeFilter clone() {
+		return this;
+	}
+
+	@Override
+	public String toString() {
+		return "JAVA_FILES" + (exclusions.isEmpty() ? "" : " EXCLUDING " + exclusions);
+	}
+}
@@ -0,0 +1,202 @@
+package refactoringml.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.diff.Sequence;
+import org.eclipse.jgit.diff.SequenceComparator;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+
+// Counts the lines added and deleted by the change of a file, like the edit list of DiffFormatter.toFileHeader, but
+// without its overhead: the histogram diff runs over 64 bit hashes of the lines, which are cached per blob, so the
+// next change of the file reuses the hashes of its current version. Added, deleted and unchanged files are counted
+// without a diff. Files with more than maxLines lines are not diffed either, their churn is approximated by the lines
+// only found in one of both versions.
+// Like the BlobReader, it may only be used by one thread at a time.
+public class LineChurnCalculator {
+
+	public static class Churn {
+		private final int linesAdded;
+		private final int linesDeleted;
+
+		public Churn(int linesAdded, int linesDeleted) {
+			this.linesAdded = linesAdded;
+			this.linesDeleted = linesDeleted;
+		}
+
+		public int getLinesAdded() {
+			return linesAdded;
+		}
+
+		public int getLinesDeleted() {
+			return linesDeleted;
+		}
+	}
+
+	// The hashes of the lines of a blob, including their line breaks like the lines of a RawText
+	private static class LineHashes extends Sequence {
+		private final long[] hashes;
+
+		private LineHashes(long[] hashes) {
+			this.hashes = hashes;
+		}
+
+		@Override
+		public int size() {
+			return hashes.length;
+		}
+	}
+
+	private static final SequenceComparator<LineHashes> COMPARATOR = new SequenceComparator<>() {
+		@Override
+		public boolean equals(LineHashes a, int ai, LineHashes b, int bi) {
+			return a.hashes[ai] == b.hashes[bi];
+		}
+
+		@Override
+		public int hash(LineHashes seq, int ptr) {
+			long hash = seq.hashes[ptr];
+			return (int) (hash ^ (hash >>> 32));
+		}
+	};
+
+	// 64 bit FNV-1a
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private static final LineHashes NO_LINES = new LineHashes(new long[0]);
+	// a diff with a binary file has no edits
+	private static final LineHashes BINARY = new LineHashes(new long[0]);
+	private static final Churn NO_CHURN = new Churn(0, 0);
+
+	private final BlobReader blobReader;
+	private final int maxLines;
+	private final Map<ObjectId, LineHashes> lineHashes;
+	private final DiffAlgorithm diffAlgorithm = DiffAlgorithm
+			.getAlgorithm(DiffAlgorithm.SupportedAlgorithm.HISTOGRAM);
+	private long approximated;
+
+	public LineChurnCalculator(BlobReader blobReader, int maxLines, int cachedBlobs) {
+		this.blobReader = blobReader;
+		this.maxLines = maxLines;
+		this.lineHashes = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<ObjectId, LineHashes> eldest) {
+				return size() > cachedBlobs;
+			}
+		};
+	}
+
+	public Churn calculate(DiffEntry entry) throws IOException {
+		// e.g. a rename without changes
+		if (entry.getOldId().equals(entry.getNewId()) && entry.getOldMode() == entry.getNewMode())
+			return NO_CHURN;
+
+		LineHashes before = entry.getChangeType() == DiffEntry.ChangeType.ADD ? NO_LINES
+				: lineHashes(entry.getOldId().toObjectId(), entry.getOldMode());
+		LineHashes after = entry.getChangeType() == DiffEntry.ChangeType.DELETE ? NO_LINES
+				: lineHashes(entry.getNewId().toObjectId(), entry.getNewMode());
+		if (before == BINARY || after == BINARY)
+			return NO_CHURN;
+		if (before.size() == 0 || after.size() == 0)
+			return new Churn(after.size(), before.size());
+		if (Arrays.equals(before.hashes, after.hashes))
+			return NO_CHURN;
+		if (before.size() > maxLines || after.size() > maxLines)
+			return approximate(before, after);
+
+		int linesAdded = 0;
+		int linesDeleted = 0;
+		for (Edit edit : diffAlgorithm.diff(COMPARATOR, before, after)) {
+			linesAdded += edit.getLengthB();
+			linesDeleted += edit.getLengthA();
+		}
+		return new Churn(linesAdded, linesDeleted);
+	}
+
+	// Amount of changes whose churn was approximated, as the file was too large
+	public long getApproximated() {
+		return approximated;
+	}
+
+	// The lines only found in one of both versions. It ignores lines that only moved, so it is at most the churn
+	// of the diff.
+	private Churn approximate(LineHashes before, LineHashes after) {
+		approximated++;
+		Map<Long, Integer> remaining = new HashMap<>();
+		for (long hash : before.hashes)
+			remaining.merge(hash, 1, Integer::sum);
+		int linesAdded = 0;
+		for (long hash : after.hashes) {
+			Integer count = remaining.get(hash);
+			if (count == null)
+				linesAdded++;
+			else if (count == 1)
+				remaining.remove(hash);
+			else
+				remaining.put(hash, count - 1);
+		}
+		int linesDeleted = before.size() - (after.size() - linesAdded);
+		return new Churn(linesAdded, linesDeleted);
+	}
+
+	private LineHashes lineHashes(ObjectId id, FileMode mode) throws IOException {
+		LineHashes hashes = lineHashes.get(id);
+		if (hashes == null) {
+			// like the diff, a submodule is a single line with the id of its commit
+			hashes = mode == FileMode.GITLINK ? new LineHashes(new long[] { hash(id) }) : hashLines(id);
+			lineHashes.put(id.copy(), hashes);
+		}
+		return hashes;
+	}
+
+	private LineHashes hashLines(ObjectId blobId) throws IOException {
+		ByteBuffer content = blobReader.read(blobId);
+		byte[] start = new byte[Math.min(content.remaining(), 8000)];
+		content.duplicate().get(start);
+		if (RawText.isBinary(start))
+			return BINARY;
+
+		long[] hashes = new long[16];
+		int lines = 0;
+		long hash = FNV_OFFSET_BASIS;
+		boolean lineStarted = false;
+		for (int i = content.position(); i < content.limit(); i++) {
+			byte b = content.get(i);
+			hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+			lineStarted = true;
+			if (b == '\n') {
+				if (lines == hashes.length)
+					hashes = Arrays.copyOf(hashes, lines * 2);
+				hashes[lines++] = hash;
+				hash = FNV_OFFSET_BASIS;
+				lineStarted = false;
+			}
+		}
+		// the last line without a line break
+		if (lineStarted) {
+			if (lines == hashes.length)
+				hashes = Arrays.copyOf(hashes, lines + 1);
+			hashes[lines++] = hash;
+		}
+		return new LineHashes(Arrays.copyOf(hashes, lines));
+	}
+
+	private static long hash(ObjectId id) {
+		long hash = FNV_OFFSET_BASIS;
+		for (char c : id.getName().toCharArray())
+			hash = (hash ^ c) * FNV_PRIME;
+		return hash;
+	}
+}
@@ -0,0 +1,200 @@
+package refactoringml.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+import com.google.common.base.Preconditions;
+
+// A map from unix file paths onto values, stored as a tree of their directories. Every directory is stored once for
+// all files in it, and like in a file system a whole directory is moved by re-parenting its node, without touching
+// the files in it.
+public class PathTrie<V> {
+
+	private static final char SEPARATOR = '/';
+
+	private static class Node<V> {
+		private Node<V> parent;
+		private String name;
+		// created with the first child
+		private Map<String, Node<V>> children;
+		private V value;
+		// the amount of values in this node and all nodes below it, nodes without values are removed
+		private int size;
+	}
+
+	private final Node<V> root = new Node<>();
+
+	// Returns the value of the path, or null if it has none
+	public V get(String path) {
+		Node<V> node = find(path);
+		return node == null ? null : node.value;
+	}
+
+	// Returns the previous value of the path, if any
+	public V put(String path, V value) {
+		Preconditions.checkArgument(!path.isEmpty(), "A path is required.");
+		Preconditions.checkNotNull(value);
+		Node<V> node = findOrCreate(path);
+		V previous = node.value;
+		node.value = value;
+		if (previous == null)
+			addSize(node, 1);
+		return previous;
+	}
+
+	// Returns the removed value of the path, if any
+	public V remove(String path) {
+		Node<V> node = find(path);
+		if (node == null || node.value == null)
+			return null;
+		V previous = node.value;
+		node.value = null;
+		addSize(node, -1);
+		prune(node);
+		return previous;
+	}
+
+	public int size() {
+		return root.size;
+	}
+
+	// Amount of values in the given directory and its subdirectories
+	public int size(String directory) {
+		Node<V> node = find(directory);
+		if (node == null)
+			return 0;
+		return node.value == null ? node.size : node.size - 1;
+	}
+
+	/*
+	Move all values in the old directory to the new one, their paths below it stay the same. Only the node of the
+	directory is re-parented. Returns false if the directory cannot be moved as a whole: if it holds no values or is
+	a file itself, if the new directory exists already, or if one of the directories contains the other.
+	*/
+	public boolean moveDirectory(String oldDirectory, String newDirectory) {
+		if (oldDirectory.isEmpty() || newDirectory.isEmpty() || contains(oldDirectory, newDirectory)
+				|| contains(newDirectory, oldDirectory))
+			return false;
+		Node<V> node = find(oldDirectory);
+		if (node == null || node.value != null || find(newDirectory) != null)
+			return false;
+
+		Node<V> oldParent = node.parent;
+		oldParent.children.remove(node.name);
+		addSize(oldParent, -node.size);
+		prune(oldParent);
+
+		int lastSeparator = newDirectory.lastIndexOf(SEPARATOR);
+		Node<V> newParent = lastSeparator < 0 ? root : findOrCreate(newDirectory.substring(0, lastSeparator));
+		node.name = newDirectory.substring(lastSeparator + 1);
+		attach(newParent, node);
+		addSize(newParent, node.size);
+		return true;
+	}
+
+	// Visit all values with their paths
+	public void forEach(BiConsumer<String, ? super V> action) {
+		forEach(root, new StringBuilder(), action);
+	}
+
+	// Visit all values in the given directory and its subdirectories with their paths
+	public void forEach(String directory, BiConsumer<String, ? super V> action) {
+		Node<V> node = find(directory);
+		if (node != null)
+			forEach(node, new StringBuilder(directory), action);
+	}
+
+	public List<V> values() {
+		List<V> values = new ArrayList<>(size());
+		forEach((path, value) -> values.add(value));
+		return values;
+	}
+
+	// Same format as the toString of a map, ordered by path
+	@Override
+	public String toString() {
+		Map<String, V> values = new TreeMap<>();
+		forEach(values::put);
+		return values.toString();
+	}
+
+	private void forEach(Node<V> node, StringBuilder path, BiConsumer<String, ? super V> action) {
+		if (node.children == null)
+			return;
+		int length = path.length();
+		for (Node<V> child : node.children.values()) {
+			if (length > 0)
+				path.append(SEPARATOR);
+			path.append(child.name);
+			if (child.value != null)
+				action.accept(path.toString(), child.value);
+			forEach(child, path, action);
+			path.setLength(length);
+		}
+	}
+
+	// The node of the path, the root for an empty path
+	private Node<V> find(String path) {
+		if (path.isEmpty())
+			return root;
+		Node<V> node = root;
+		int start = 0;
+		while (node != null && start <= path.length()) {
+			int end = path.indexOf(SEPARATOR, start);
+			if (end < 0)
+				end = path.length();
+			node = node.children == null ? null : node.children.get(path.substring(start, end));
+			start = end + 1;
+		}
+		return node;
+	}
+
+	private Node<V> findOrCreate(String path) {
+		Node<V> node = root;
+		int start = 0;
+		while (start <= path.length()) {
+			int end = path.indexOf(SEPARATOR, start);
+			if (end < 0)
+				end = path.length();
+			String name = path.substring(start, end);
+			Node<V> child = node.children == null ? null : node.children.get(name);
+			if (child == null) {
+				child = new Node<>();
+				child.name = name;
+				attach(node, child);
+			}
+			node = child;
+			start = end + 1;
+		}
+		return node;
+	}
+
+	private static <V> void attach(Node<V> parent, Node<V> child) {
+		if (parent.children == null)
+			parent.children = new HashMap<>();
+		parent.children.put(child.name, child);
+		child.parent = parent;
+	}
+
+	private static <V> void addSize(Node<V> node, int delta) {
+		for (; node != null; node = node.parent)
+			node.size += delta;
+	}
+
+	// Remove the node and its parents as long as they hold no values
+	private void prune(Node<V> node) {
+		while (node != root && node.size == 0) {
+			node.parent.children.remove(node.name);
+			node = node.parent;
+		}
+	}
+
+	// Whether the directory contains the path
+	private static boolean contains(String directory, String path) {
+		return path.equals(directory) || path.startsWith(directory + SEPARATOR);
+	}
+}
@@ -0,0 +1,106 @@
+package refactoringml.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.RepositoryCache;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
+import org.eclipse.jgit.util.FS;
+import org.jboss.logging.Logger;
+
+// Estimates how expensive mining a project is from its clone, so that the most expensive projects
+// are started first (see ProjectScheduler). The cost is the number of commits, weighted by the size
+// of the project, as RefactoringMiner and CK work on larger trees and files for larger projects.
+public class ProjectCostEstimator {
+	private static final Logger log = Logger.getLogger(ProjectCostEstimator.class);
+
+	// Cost of projects that are not cloned yet. They might be huge or tiny, so the scheduler starts them
+	// in input order by the threads of whichever lane is free.
+	public static final long UNKNOWN_COST = Long.MAX_VALUE;
+
+	// Counting the lines of code means reading every Java file, the file sizes are enough for an estimate
+	private static final long BYTES_PER_LINE = 30;
+	// A project of this size costs twice as much per commit as a tiny one
+	private static final double DOUBLE_COST_LOC = 100_000;
+	private static final double DOUBLE_COST_PACK_BYTES = 512.0 * 1024 * 1024;
+
+	private ProjectCostEstimator() {
+
+	}
+
+	public static long estimate(Path clonePath) {
+		Path gitDir = clonePath.resolve(".git");
+		// a bare clone is the git directory itself and has no working tree
+		boolean bare = !Files.isDirectory(gitDir);
+		if (bare)
+			gitDir = clonePath;
+		if (!RepositoryCache.FileKey.isGitRepository(gitDir.toFile(), FS.DETECTED))
+			return UNKNOWN_COST;
+
+		try (Git git = Git.open(gitDir.toFile())) {
+			int commits = JGitUtils.numberOfCommits(git);
+			long javaBytes = bare ? sizeOfJavaBlobs(git.getRepository()) : sizeOfJavaFiles(clonePath);
+			long javaLoc = javaBytes / BYTES_PER_LINE;
+			long packBytes = sizeOfPacks(gitDir);
+			long cost = cost(commits, javaLoc, packBytes);
+			log.debugf("Estimated cost of %s: %d (%d commits, about %d lines of Java code, %d bytes of packs)",
+					clonePath, cost, commits, javaLoc, packBytes);
+			return cost;
+		} catch (IOException | RuntimeException e) {
+			log.warnf(e, "Could not estimate the cost of mining %s", clonePath);
+			return UNKNOWN_COST;
+		}
+	}
+
+	// Projects with a long history of since removed code have large packs compared to their current code
+	public static long cost(int commits, long javaLoc, long packBytes) {
+		double sizeFactor = 1 + Math.max(javaLoc / DOUBLE_COST_LOC, packBytes / DOUBLE_COST_PACK_BYTES);
+		return (long) (commits * sizeFactor);
+	}
+
+	private static long sizeOfJavaFiles(Path clonePath) throws IOException {
+		long size = 0;
+		for (String file : FileUtils.getAllJavaFiles(clonePath))
+			size += Files.size(Path.of(file));
+		return size;
+	}
+
+	// The size of the Java files at HEAD, read from the headers of the objects only
+	private static long sizeOfJavaBlobs(Repository repository) throws IOException {
+		ObjectId head = repository.resolve(Constants.HEAD);
+		if (head == null)
+			return 0;
+		try (RevWalk revWalk = new RevWalk(repository); TreeWalk treeWalk = new TreeWalk(repository)) {
+			treeWalk.addTree(revWalk.parseCommit(head).getTree());
+			treeWalk.setRecursive(true);
+			treeWalk.setFilter(PathSuffixFilter.create(".java"));
+			long size = 0;
+			while (treeWalk.next()) {
+				if ((treeWalk.getRawMode(0) & FileMode.TYPE_MASK) == FileMode.TYPE_FILE)
+					size += treeWalk.getObjectReader().getObjectSize(treeWalk.getObjectId(0), Constants.OBJ_BLOB);
+			}
+			return size;
+		}
+	}
+
+	private static long sizeOfPacks(Path gitDir) throws IOException {
+		Path packs = gitDir.resolve("objects").resolve("pack");
+		if (!Files.isDirectory(packs))
+			return 0;
+		try (Stream<Path> files = Files.list(packs)) {
+			long size = 0;
+			for (Path pack : (Iterable<Path>) files.filter(f -> f.toString().endsWith(".pack"))::iterator)
+				size += Files.size(pack);
+			return size;
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package refactoringml.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.refactoringminer.api.Refactoring;
+
+// Caches the refactorings RefactoringMiner detected in a commit by the id of the commit. Forks and copies of the
+// same repository share most of their history, so a commit mined for one project is often mined again for another.
+// The refactorings reference the parsed models of the changed classes, so they are only kept in memory with LRU
+// eviction, and most entries are commits without any refactoring we study.
+public class RefactoringMinerCache {
+
+	private final Map<ObjectId, List<Refactoring>> memory;
+
+	private long hits;
+	private long misses;
+
+	public RefactoringMinerCache(int maxEntries) {
+		this.memory = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<ObjectId, List<Refactoring>> eldest) {
+				return size() > maxEntries;
+			}
+		});
+	}
+
+	// Returns the cached refactorings of the given commit, or null if it was not mined yet
+	public List<Refactoring> get(ObjectId commitId) {
+		List<Refactoring> result = memory.get(commitId);
+		synchronized (this) {
+			if (result == null)
+				misses++;
+			else
+				hits++;
+		}
+		return result;
+	}
+
+	// Store the refactorings of the given commit. Only store results of RefactoringMiner runs that did not fail or
+	// time out.
+	public void put(ObjectId commitId, List<Refactoring> refactorings) {
+		memory.put(commitId.copy(), Collections.unmodifiableList(new ArrayList<>(refactorings)));
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+}
@@ -54,7 +54,6 @@ import java.util.stream.Collectors;
 import com.google.common.collect.Sets;
 
 import org.apache.commons.lang3.tuple.ImmutablePair;
-import org.eclipse.jgit.diff.Edit;
 import org.refactoringminer.api.Refactoring;
 import org.refactoringminer.api.RefactoringType;
 
@@ -138,22 +137,6 @@ public class RefactoringUtils {
 		return otherRefactorings.contains(refactoring.getRefactoringType());
 	}
 
-	public static int calculateLinesAdded(List<Edit> editList) {
-		int linesAdded = 0;
-		for (Edit edit : editList) {
-			linesAdded += edit.getLengthB();
-		}
-		return linesAdded;
-	}
-
-	public static int calculateLinesDeleted(List<Edit> editList) {
-		int linesDeleted = 0;
-		for (Edit edit : editList) {
-			linesDeleted += edit.getLengthA();
-		}
-		return linesDeleted;
-	}
-
 	// TODO: maybe in here we can find a way to add the full qualified names of
 	// types
 	// one needs to explore this 'UMLOperation' object a bit more
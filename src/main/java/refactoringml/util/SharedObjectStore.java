@@ -0,0 +1,135 @@
+package refactoringml.util;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.ResetCommand;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.transport.CredentialsProvider;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.RemoteConfig;
+import org.eclipse.jgit.transport.URIish;
+import org.jboss.logging.Logger;
+
+// A bare repository with the objects of all repositories cloned into the repositories path. The clones borrow its
+// objects through git alternates, so the history that forks and copies of a repository share is only downloaded
+// and stored once: a clone only fetches the objects the store does not have yet, and the store then takes them
+// over from the clone.
+// The store only grows. Its refs (refs/projects/<hash of the git url>/...) keep the objects of all clones
+// reachable, so the clones break if the store is deleted.
+public class SharedObjectStore {
+	private static final Logger log = Logger.getLogger(SharedObjectStore.class);
+
+	private final Repository store;
+
+	public SharedObjectStore(Path path) throws IOException {
+		Repository repository = new FileRepositoryBuilder().setGitDir(path.toFile()).setBare().build();
+		if (!Files.exists(path.resolve("objects")))
+			repository.create(true);
+		this.store = repository;
+	}
+
+	// Clone the repository like JGitUtils.cloneRepository does, borrowing the objects of the store
+	public Git cloneRepository(String gitUrl, Path clonePath, boolean bare, CredentialsProvider credentials)
+			throws GitAPIException, IOException {
+		try (Git init = Git.init().setBare(bare).setDirectory(clonePath.toFile()).call()) {
+			Path alternates = init.getRepository().getDirectory().toPath().resolve("objects").resolve("info")
+					.resolve("alternates");
+			Files.createDirectories(alternates.getParent());
+			Files.writeString(alternates, store.getDirectory().toPath().resolve("objects").toAbsolutePath() + "\n");
+		}
+
+		try {
+			// opened again, to read the alternates
+			Path gitDir;
+			try (Git git = Git.open(clonePath.toFile())) {
+				fetch(git, gitUrl, bare, credentials);
+				gitDir = git.getRepository().getDirectory().toPath();
+			}
+			takeOverObjects(gitDir, gitUrl);
+			return Git.open(clonePath.toFile());
+		} catch (GitAPIException | IOException | RuntimeException e) {
+			// like a failed clone, nothing is left behind
+			FileUtils.deleteDirectory(clonePath.toFile());
+			throw e;
+		}
+	}
+
+	private void fetch(Git git, String gitUrl, boolean bare, CredentialsProvider credentials)
+			throws GitAPIException, IOException {
+		Repository repository = git.getRepository();
+		String mainBranch = JGitUtils.remoteMainBranch(gitUrl, credentials);
+		// a bare clone only has the main branch, in refs/heads
+		String source = bare && mainBranch != null ? mainBranch : Constants.R_HEADS + "*";
+		String destination = bare ? source : Constants.R_REMOTES + Constants.DEFAULT_REMOTE_NAME + "/*";
+		StoredConfig config = repository.getConfig();
+		try {
+			RemoteConfig remote = new RemoteConfig(config, Constants.DEFAULT_REMOTE_NAME);
+			remote.addURI(new URIish(gitUrl));
+			remote.addFetchRefSpec(new RefSpec().setForceUpdate(true).setSourceDestination(source, destination));
+			remote.update(config);
+		} catch (URISyntaxException e) {
+			throw new IllegalArgumentException("Invalid git url " + gitUrl, e);
+		}
+		config.save();
+
+		JGitUtils.withCredentials(git.fetch(), credentials).setRemote(Constants.DEFAULT_REMOTE_NAME).call();
+		// an empty repository has no main branch
+		if (mainBranch == null)
+			return;
+
+		if (!bare) {
+			// the local main branch follows the remote one, like in a clone
+			String branchName = Repository.shortenRefName(mainBranch);
+			ObjectId commit = repository
+					.resolve(Constants.R_REMOTES + Constants.DEFAULT_REMOTE_NAME + "/" + branchName);
+			RefUpdate branch = repository.updateRef(mainBranch);
+			branch.setNewObjectId(commit);
+			branch.update();
+			config.setString(ConfigConstants.CONFIG_BRANCH_SECTION, branchName, ConfigConstants.CONFIG_KEY_REMOTE,
+					Constants.DEFAULT_REMOTE_NAME);
+			config.setString(ConfigConstants.CONFIG_BRANCH_SECTION, branchName, ConfigConstants.CONFIG_KEY_MERGE,
+					mainBranch);
+			config.save();
+		}
+		repository.updateRef(Constants.HEAD).link(mainBranch);
+		if (!bare)
+			git.reset().setMode(ResetCommand.ResetType.HARD).call();
+	}
+
+	// The store fetches the refs of the clone, i.e. only the objects it does not have yet, and the clone drops its
+	// own copies of them. From then on, the clone finds all its objects in the store.
+	private synchronized void takeOverObjects(Path gitDir, String gitUrl) throws GitAPIException, IOException {
+		// forks often have the same name, so the refs are named by the url
+		ObjectId urlHash = ObjectId
+				.fromRaw(Constants.newMessageDigest().digest(gitUrl.getBytes(StandardCharsets.UTF_8)));
+		try (Git storeGit = Git.wrap(store)) {
+			storeGit.fetch().setRemote(gitDir.toUri().toString())
+					.setRefSpecs(new RefSpec("+refs/*:refs/projects/" + urlHash.getName() + "/*")).call();
+		}
+
+		Path objects = gitDir.resolve("objects");
+		long deleted = 0;
+		try (Stream<Path> files = Files.walk(objects)) {
+			for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)
+					.filter(file -> !file.startsWith(objects.resolve("info")))::iterator) {
+				deleted += Files.size(file);
+				Files.delete(file);
+			}
+		}
+		log.debugf("Moved %d KB of objects of %s to the shared object store", deleted / 1024, gitUrl);
+	}
+}
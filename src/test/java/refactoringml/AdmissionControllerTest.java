@@ -0,0 +1,83 @@
+package refactoringml;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class AdmissionControllerTest {
+
+	@Test
+	void fitsHeap() {
+		Assertions.assertTrue(AdmissionController.fitsHeap(500, 0, 300, 1000, 0.8));
+		Assertions.assertFalse(AdmissionController.fitsHeap(600, 0, 300, 1000, 0.8));
+		// the heap reserved for admitted projects counts as well
+		Assertions.assertFalse(AdmissionController.fitsHeap(300, 250, 300, 1000, 0.8));
+	}
+
+	@Test
+	void nextLimit() {
+		// too much time in garbage collection
+		Assertions.assertEquals(3, AdmissionController.nextLimit(4, 8, 0.2, 0.3, 0.8, 0.1, true));
+		Assertions.assertEquals(1, AdmissionController.nextLimit(1, 8, 0.2, 0.3, 0.8, 0.1, true));
+		// idle CPU and projects waiting
+		Assertions.assertEquals(5, AdmissionController.nextLimit(4, 8, 0.2, 0.01, 0.8, 0.1, true));
+		Assertions.assertEquals(8, AdmissionController.nextLimit(8, 8, 0.2, 0.01, 0.8, 0.1, true));
+		// nothing waiting, busy CPU or unknown CPU load
+		Assertions.assertEquals(4, AdmissionController.nextLimit(4, 8, 0.2, 0.01, 0.8, 0.1, false));
+		Assertions.assertEquals(4, AdmissionController.nextLimit(4, 8, 0.9, 0.01, 0.8, 0.1, true));
+		Assertions.assertEquals(4, AdmissionController.nextLimit(4, 8, -1, 0.01, 0.8, 0.1, true));
+	}
+
+	@Test
+	void admitsFirstProjectAlways() throws InterruptedException {
+		// no heap fits, but a project must still start when nothing else runs
+		AdmissionController controller = new AdmissionController(2, 2, 0, Long.MAX_VALUE / 4, 0.8, 0.1, 60);
+		ProjectScheduler.ScheduledProject project = new ProjectScheduler.ScheduledProject("a", 1, 10);
+		controller.admit(project);
+		Assertions.assertEquals(1, controller.getRunningProjects());
+		controller.finished(project);
+		Assertions.assertEquals(0, controller.getRunningProjects());
+		Assertions.assertEquals(1, controller.getAdmittedProjects());
+		controller.shutdown();
+	}
+
+	@Test
+	void reservesHeapOfAdmittedProjects() throws InterruptedException {
+		// room for about two projects: the second one must wait for the first, although the live heap is unchanged
+		AdmissionController heap = new AdmissionController(1, 1, 1, 0, 0.8, 0.1, 60);
+		long maxHeap = heap.getMaxHeapBytes();
+		heap.shutdown();
+		AdmissionController controller = new AdmissionController(3, 3, 0.9, maxHeap / 3, 0.8, 0.1, 60);
+		ProjectScheduler.ScheduledProject first = new ProjectScheduler.ScheduledProject("a", 1, 10);
+		ProjectScheduler.ScheduledProject second = new ProjectScheduler.ScheduledProject("b", 2, 10);
+		ProjectScheduler.ScheduledProject third = new ProjectScheduler.ScheduledProject("c", 3, 10);
+		controller.admit(first);
+		controller.admit(second);
+		Assertions.assertEquals(2 * (maxHeap / 3), controller.getReservedHeapBytes());
+
+		Thread waiting = new Thread(() -> {
+			try {
+				controller.admit(third);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		waiting.start();
+		waiting.join(500);
+		Assertions.assertTrue(waiting.isAlive());
+		Assertions.assertEquals(2, controller.getRunningProjects());
+
+		controller.finished(first);
+		waiting.join(5000);
+		Assertions.assertFalse(waiting.isAlive());
+		Assertions.assertEquals(2, controller.getRunningProjects());
+		controller.shutdown();
+	}
+
+	@Test
+	void startsBelowMaxConcurrency() {
+		AdmissionController controller = new AdmissionController(8, 4, 0.8, 0, 0.8, 0.1, 60);
+		Assertions.assertEquals(4, controller.getConcurrencyLimit());
+		Assertions.assertEquals(8, controller.getMaxConcurrency());
+		controller.shutdown();
+	}
+}
@@ -0,0 +1,64 @@
+package refactoringml;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import refactoringml.util.BlobReader;
+
+public class BlobReaderTest {
+
+	@Test
+	public void readFilesOfCommits(@TempDir Path tempDir) throws Exception {
+		try (Git git = TestRepository.init(tempDir)) {
+			TestRepository.write(tempDir, "src/a/A.java", "class A {}\n");
+			TestRepository.write(tempDir, "src/b/B.java", "class B {}\n");
+			RevCommit first = TestRepository.commitAll(git);
+			TestRepository.write(tempDir, "src/a/A.java", "class A { int a; }\n");
+			RevCommit second = TestRepository.commitAll(git);
+
+			try (BlobReader reader = new BlobReader(git.getRepository(), 1)) {
+				Map<String, ObjectId> blobs = reader.getBlobIds(first,
+						List.of("src/a/A.java", "src/b/B.java", "src/C.java", "src/a"));
+				Assertions.assertEquals(2, blobs.size());
+				Assertions.assertEquals("class B {}\n", reader.readString(blobs.get("src/b/B.java")));
+				Assertions.assertEquals("class A {}\n", reader.readString(reader.getBlobId(first.getName(),
+						"src/a/A.java")));
+
+				ByteBuffer content = reader.readFile(second, "src/a/A.java");
+				Assertions.assertEquals("class A { int a; }\n", StandardCharsets.UTF_8.decode(content).toString());
+				// the first commit is not cached anymore, its paths are resolved again
+				Assertions.assertEquals(blobs.get("src/a/A.java"), reader.getBlobId(first, "src/a/A.java"));
+				Assertions.assertThrows(IllegalArgumentException.class, () -> reader.getBlobId(second, "src/C.java"));
+			}
+		}
+	}
+
+	@Test
+	public void readCommit(@TempDir Path tempDir) throws Exception {
+		try (Git git = TestRepository.init(tempDir)) {
+			TestRepository.write(tempDir, "A.java", "class A {}\n");
+			RevCommit first = TestRepository.commitAll(git);
+			TestRepository.write(tempDir, "A.java", "class A { int a; }\n");
+			RevCommit second = TestRepository.commitAll(git);
+
+			try (BlobReader reader = new BlobReader(git.getRepository(), 4)) {
+				reader.getBlobId(second, "A.java");
+				// the message is read again, although the tree of the commit was read already
+				RevCommit commit = reader.readCommit(second);
+				Assertions.assertEquals("commit", commit.getFullMessage());
+				Assertions.assertEquals("a", commit.getAuthorIdent().getName());
+				Assertions.assertEquals(first, commit.getParent(0));
+			}
+		}
+	}
+}
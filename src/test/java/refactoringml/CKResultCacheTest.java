@@ -0,0 +1,118 @@
+package refactoringml;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import refactoringml.util.BlobReader;
+import refactoringml.util.CKClassSnapshot;
+import refactoringml.util.CKResultCache;
+import refactoringml.util.CKUtils;
+
+class CKResultCacheTest {
+
+	private static final ObjectId BLOB_A = ObjectId.fromString("1111111111111111111111111111111111111111");
+	private static final ObjectId BLOB_B = ObjectId.fromString("2222222222222222222222222222222222222222");
+	private static final ObjectId BLOB_C = ObjectId.fromString("3333333333333333333333333333333333333333");
+
+	@Test
+	void missAndHit() {
+		CKResultCache cache = new CKResultCache(10);
+		Assertions.assertNull(cache.get(BLOB_A));
+
+		cache.put(BLOB_A, new ArrayList<>());
+		Assertions.assertNotNull(cache.get(BLOB_A));
+		Assertions.assertEquals(1, cache.getHits());
+		Assertions.assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	void leastRecentlyUsedIsEvicted() {
+		CKResultCache cache = new CKResultCache(2);
+		cache.put(BLOB_A, new ArrayList<>());
+		cache.put(BLOB_B, new ArrayList<>());
+		// A is now more recently used than B
+		cache.get(BLOB_A);
+		cache.put(BLOB_C, new ArrayList<>());
+
+		Assertions.assertNotNull(cache.get(BLOB_A));
+		Assertions.assertNull(cache.get(BLOB_B));
+		Assertions.assertNotNull(cache.get(BLOB_C));
+	}
+
+	@Test
+	void diskTierSurvivesANewCache() throws IOException {
+		Path diskDirectory = Files.createTempDirectory(null);
+		try {
+			new CKResultCache(10, diskDirectory, "1.0").put(BLOB_A, new ArrayList<>());
+
+			List<CKClassSnapshot> fromDisk = new CKResultCache(10, diskDirectory, "1.0").get(BLOB_A);
+			Assertions.assertNotNull(fromDisk);
+			Assertions.assertTrue(fromDisk.isEmpty());
+			Assertions.assertTrue(Files.exists(diskDirectory.resolve("1.0").resolve("11")));
+			// the results of another CK version are not used
+			Assertions.assertNull(new CKResultCache(10, diskDirectory, "2.0").get(BLOB_A));
+		} finally {
+			FileUtils.deleteDirectory(diskDirectory.toFile());
+		}
+	}
+
+	@Test
+	void diskTierNeedsCKVersion() throws IOException {
+		Path diskDirectory = Files.createTempDirectory(null);
+		try {
+			// the version of the CK jar the tests run with is known
+			Assertions.assertNotNull(CKResultCache.CK_VERSION);
+
+			new CKResultCache(10, diskDirectory, null).put(BLOB_A, new ArrayList<>());
+			Assertions.assertNull(new CKResultCache(10, diskDirectory, null).get(BLOB_A));
+			Assertions.assertEquals(0, diskDirectory.toFile().list().length);
+		} finally {
+			FileUtils.deleteDirectory(diskDirectory.toFile());
+		}
+	}
+
+	// The same content under another path, e.g. after a move source folder refactoring, is a hit
+	@Test
+	void hitUnderAnotherPath() throws Exception {
+		Path repository = Files.createTempDirectory(null);
+		try (Git git = Git.init().setDirectory(repository.toFile()).call()) {
+			String content = "package a;\nclass A { int a() { return 1; } }\n";
+			Files.createDirectories(repository.resolve("src/main/java/a"));
+			Files.createDirectories(repository.resolve("src/java/a"));
+			Files.writeString(repository.resolve("src/main/java/a/A.java"), content);
+			Files.writeString(repository.resolve("src/java/a/A.java"), content);
+			git.add().addFilepattern(".").call();
+			RevCommit commit = git.commit().setMessage("commit").setAuthor("a", "a@example.com")
+					.setCommitter("a", "a@example.com").call();
+
+			CKResultCache cache = new CKResultCache(10);
+			try (BlobReader blobReader = new BlobReader(git.getRepository(), 1)) {
+				ObjectId oldBlob = blobReader.getBlobId(commit, "src/main/java/a/A.java");
+				ObjectId newBlob = blobReader.getBlobId(commit, "src/java/a/A.java");
+				Assertions.assertEquals(oldBlob, newBlob);
+
+				List<CKClassSnapshot> analyzed = CKUtils.calculate(cache, blobReader, oldBlob,
+						"src/main/java/a/A.java", commit.getName(), "repository", 10);
+				List<CKClassSnapshot> cached = CKUtils.calculate(cache, blobReader, newBlob, "src/java/a/A.java",
+						commit.getName(), "repository", 10);
+				Assertions.assertEquals(1, cache.getHits());
+				Assertions.assertSame(cache.get(newBlob), cached);
+				Assertions.assertEquals(1, analyzed.size());
+				// the snapshots do not keep the path of the first file, the instances get the path they are for
+				Assertions.assertEquals("a.A", cached.get(0).getClassName());
+			}
+		} finally {
+			FileUtils.deleteDirectory(repository.toFile());
+		}
+	}
+}
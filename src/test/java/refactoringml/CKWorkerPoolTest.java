@@ -0,0 +1,115 @@
+package refactoringml;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import refactoringml.util.CKWorkerPool;
+
+class CKWorkerPoolTest {
+
+	@Test
+	void returnsResult() throws Exception {
+		CKWorkerPool pool = new CKWorkerPool(1, 1, 10);
+		Assertions.assertEquals(42, pool.run(() -> 42, 10));
+		pool.shutdown();
+	}
+
+	@Test
+	void failingTask() {
+		CKWorkerPool pool = new CKWorkerPool(1, 1, 10);
+		Assertions.assertThrows(ExecutionException.class, () -> pool.run(() -> {
+			throw new IllegalStateException("CK failed");
+		}, 10));
+		pool.shutdown();
+	}
+
+	@Test
+	void stuckWorkerIsReplaced() throws Exception {
+		CKWorkerPool pool = new CKWorkerPool(1, 1, 10);
+		CountDownLatch release = new CountDownLatch(1);
+
+		Assertions.assertThrows(TimeoutException.class, () -> pool.run(() -> ignoreInterrupts(release), 1));
+		Assertions.assertEquals(1, pool.getStuckWorkers());
+		Assertions.assertEquals(1, pool.getQuarantinedTasks());
+
+		// the only worker is stuck, but a replacement runs the next task
+		Assertions.assertEquals("done", pool.run(() -> "done", 10));
+
+		release.countDown();
+		for (int i = 0; i < 100 && pool.getStuckWorkers() > 0; i++)
+			Thread.sleep(50);
+		Assertions.assertEquals(0, pool.getStuckWorkers());
+		Assertions.assertEquals(1, pool.getQuarantinedTasks());
+		pool.shutdown();
+	}
+
+	@Test
+	void allWorkersStuck() throws Exception {
+		// no stuck worker is replaced
+		CKWorkerPool pool = new CKWorkerPool(1, 0, 1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		Assertions.assertThrows(TimeoutException.class, () -> pool.run(() -> ignoreInterrupts(release), 1));
+		Assertions.assertEquals(1, pool.getStuckWorkers());
+
+		// the next task does not wait as long as the stuck one
+		long start = System.currentTimeMillis();
+		Assertions.assertThrows(TimeoutException.class, () -> pool.run(() -> "never", 10));
+		Assertions.assertTrue(System.currentTimeMillis() - start < 5000);
+
+		release.countDown();
+		Assertions.assertEquals("done", pool.run(() -> "done", 10));
+		pool.shutdown();
+	}
+
+	@Test
+	void shutdownRunsWaitingTasks() throws Exception {
+		CKWorkerPool pool = new CKWorkerPool(1, 0, 10);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Thread busy = new Thread(() -> {
+			try {
+				pool.run(() -> {
+					started.countDown();
+					return release.await(10, TimeUnit.SECONDS);
+				}, 10);
+			} catch (Exception e) {
+				// not checked here
+			}
+		});
+		busy.start();
+		Assertions.assertTrue(started.await(10, TimeUnit.SECONDS));
+
+		// the waiting task was queued before the pool was shut down, e.g. when it is replaced
+		Thread shutdown = new Thread(() -> {
+			try {
+				Thread.sleep(200);
+			} catch (InterruptedException e) {
+				return;
+			}
+			pool.shutdown();
+			release.countDown();
+		});
+		shutdown.start();
+		Assertions.assertEquals("waited", pool.run(() -> "waited", 10));
+		busy.join();
+		shutdown.join();
+	}
+
+	// simulates JDT, which ignores interrupts
+	private static Object ignoreInterrupts(CountDownLatch release) {
+		while (true) {
+			try {
+				if (release.await(10, TimeUnit.SECONDS))
+					return null;
+			} catch (InterruptedException e) {
+				// ignored
+			}
+		}
+	}
+}
@@ -0,0 +1,196 @@
+package refactoringml;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import refactoringml.db.Project;
+import refactoringml.util.CommitMessageClassifier.Category;
+
+class ColumnarPMDatabaseTest {
+
+	private final Project project = new Project();
+	private final List<Integer> thresholds = List.of(3, 5);
+
+	@Test
+	void stableTrackers() {
+		ColumnarPMDatabase pmDatabase = new ColumnarPMDatabase(project);
+		CommitHandle first = commit(1);
+
+		Assertions.assertNull(report(pmDatabase, "a.Java", first, "Rafael"));
+		Assertions.assertNull(report(pmDatabase, "a.Java", commit(2), EnumSet.of(Category.BUG_FIX), "Maur\u00edcio"));
+		ProcessMetricTracker stable = report(pmDatabase, "a.Java", commit(3), "Rafael");
+		Assertions.assertNotNull(stable);
+		Assertions.assertEquals(3, stable.getCommitCountThreshold());
+		Assertions.assertSame(first, stable.getBaseCommit());
+		Assertions.assertEquals(0, stable.getBaseProcessMetrics().qtyOfCommits);
+		Assertions.assertEquals(3, stable.getCurrentProcessMetrics().qtyOfCommits);
+		Assertions.assertEquals(1, stable.getCurrentProcessMetrics().bugFixCount);
+		Assertions.assertEquals(2, stable.getCurrentProcessMetrics().qtyOfAuthors());
+		Assertions.assertEquals(2.0 / 3, stable.getCurrentProcessMetrics().authorOwnership(), 0.0001);
+
+		// the trackers are snapshots
+		stable.resetCounter(commit(4));
+		Assertions.assertEquals(3, pmDatabase.find("a.Java").getCommitCounter());
+		Assertions.assertNull(report(pmDatabase, "a.Java", commit(4), "Rafael"));
+		Assertions.assertEquals(5, report(pmDatabase, "a.Java", commit(5), "Rafael")
+				.getCommitCountThreshold());
+
+		pmDatabase.reportRefactoring("a.Java", commit(6));
+		ProcessMetricTracker refactored = pmDatabase.find("a.Java");
+		Assertions.assertEquals(0, refactored.getCommitCounter());
+		Assertions.assertEquals(0, refactored.getCommitCountThreshold());
+		Assertions.assertEquals(1, refactored.getBaseProcessMetrics().refactoringsInvolved);
+		Assertions.assertEquals(2, refactored.getBaseProcessMetrics().qtyOfAuthors());
+	}
+
+	@Test
+	void renameAndRemove() {
+		ColumnarPMDatabase pmDatabase = new ColumnarPMDatabase(project);
+		report(pmDatabase, "a.Java", commit(1), "Rafael");
+		report(pmDatabase, "b.Java", commit(1), "Rafael");
+
+		ProcessMetricTracker renamed = pmDatabase.renameFile("a.Java", "b.Java", commit(2));
+		Assertions.assertEquals("b.Java", renamed.getFileName());
+		Assertions.assertNull(pmDatabase.find("a.Java"));
+		Assertions.assertEquals("b.Java", pmDatabase.find("b.Java").getFileName());
+		Assertions.assertEquals(1, pmDatabase.size());
+
+		Assertions.assertNull(pmDatabase.renameFile("c.Java", "d.Java", commit(3)));
+		Assertions.assertEquals(0, pmDatabase.find("d.Java").getCurrentProcessMetrics().qtyOfCommits);
+		Assertions.assertThrows(IllegalArgumentException.class,
+				() -> pmDatabase.renameFile("d.Java", "d.Java", commit(3)));
+
+		Assertions.assertEquals("b.Java", pmDatabase.removeFile("b.Java").getFileName());
+		Assertions.assertNull(pmDatabase.removeFile("b.Java"));
+		// the id of the removed file is reused
+		report(pmDatabase, "e.Java", commit(4), "Rafael");
+		Assertions.assertEquals(1, pmDatabase.find("e.Java").getCurrentProcessMetrics().qtyOfCommits);
+		Assertions.assertEquals(2, pmDatabase.size());
+	}
+
+	@Test
+	void renameDirectory() {
+		ColumnarPMDatabase pmDatabase = new ColumnarPMDatabase(project);
+		report(pmDatabase, "src/a/A.java", commit(1), "Rafael");
+		report(pmDatabase, "src/a/A.java", commit(2), "Rafael");
+		ProcessMetricTracker stable = report(pmDatabase, "src/a/A.java", commit(3), "Rafael");
+		report(pmDatabase, "src/a/b/B.java", commit(1), "Rafael");
+		Assertions.assertEquals(3, stable.getCommitCountThreshold());
+
+		Assertions.assertTrue(pmDatabase.renameDirectory("src/a", "lib"));
+		Assertions.assertEquals(0, pmDatabase.countFiles("src"));
+		Assertions.assertEquals(2, pmDatabase.countFiles("lib"));
+		ProcessMetricTracker moved = pmDatabase.find("lib/A.java");
+		Assertions.assertEquals("lib/A.java", moved.getFileName());
+		Assertions.assertEquals(3, moved.getCommitCounter());
+		Assertions.assertEquals(0, moved.getCommitCountThreshold());
+		Assertions.assertEquals("lib/b/B.java", pmDatabase.find("lib/b/B.java").getFileName());
+		Assertions.assertFalse(pmDatabase.renameDirectory("src", "lib2"));
+	}
+
+	// Random changes, refactorings, renames, directory moves and deletes lead to the same trackers and stable
+	// instances in both databases
+	@Test
+	void sameAsPMDatabase() {
+		PMDatabase expected = new PMDatabase(thresholds);
+		ColumnarPMDatabase actual = new ColumnarPMDatabase(project, 4, thresholds);
+		Random random = new Random(42);
+		String[] authors = { "Rafael", "Maur\u00edcio", "Jan" };
+
+		for (int i = 0; i < 5000; i++) {
+			String fileName = fileName(random);
+			CommitHandle commit = commit(i);
+			int operation = random.nextInt(20);
+			if (operation == 0) {
+				String newFileName = fileName(random);
+				if (!newFileName.equals(fileName))
+					assertSame(expected.renameFile(fileName, newFileName, commit),
+							actual.renameFile(fileName, newFileName, commit));
+			} else if (operation == 1 && random.nextBoolean()) {
+				String oldDirectory = "d" + random.nextInt(4);
+				String newDirectory = "d" + random.nextInt(4) + "/m" + i;
+				Assertions.assertEquals(expected.countFiles(oldDirectory), actual.countFiles(oldDirectory));
+				Assertions.assertEquals(expected.renameDirectory(oldDirectory, newDirectory),
+						actual.renameDirectory(oldDirectory, newDirectory));
+			} else if (operation == 1) {
+				assertSame(expected.removeFile(fileName), actual.removeFile(fileName));
+			} else if (operation < 4) {
+				expected.reportRefactoring(fileName, commit);
+				actual.reportRefactoring(fileName, commit);
+			} else {
+				Set<Category> categories = random.nextInt(4) == 0 ? EnumSet.of(Category.BUG_FIX)
+						: EnumSet.noneOf(Category.class);
+				String author = authors[random.nextInt(authors.length)];
+				int linesAdded = random.nextInt(10);
+				int linesDeleted = random.nextInt(10);
+				assertSame(
+						expected.reportChanges(fileName, commit, categories, author, linesAdded, linesDeleted,
+								thresholds),
+						actual.reportChanges(fileName, commit, categories, author, linesAdded, linesDeleted,
+								thresholds));
+			}
+
+			if (random.nextInt(50) == 0) {
+				Integer threshold = random.nextBoolean() ? null : thresholds.get(random.nextInt(thresholds.size()));
+				Assertions.assertEquals(stable(expected, threshold), stable(actual, threshold));
+			}
+		}
+
+		Assertions.assertEquals(expected.getTrackers().size(), actual.size());
+		for (ProcessMetricTracker pmTracker : expected.getTrackers())
+			assertSame(pmTracker, actual.find(pmTracker.getFileName()));
+
+		// restored files are indexed as well
+		ColumnarPMDatabase restored = new ColumnarPMDatabase(project, thresholds);
+		actual.forEachTracker(restored::restore);
+		for (int i = 0; i < 100; i++) {
+			String fileName = fileName(random);
+			expected.reportChanges(fileName, commit(i), "Rafael", 1, 1);
+			restored.reportChanges(fileName, commit(i), EnumSet.noneOf(Category.class), "Rafael", 1, 1, List.of());
+		}
+		Assertions.assertEquals(stable(expected, null), stable(restored, null));
+	}
+
+	private List<String> stable(ProcessMetricsDatabase pmDatabase, Integer threshold) {
+		return pmDatabase.findStableInstances(thresholds, threshold).stream().map(ProcessMetricTracker::toString)
+				.sorted().collect(Collectors.toList());
+	}
+
+	private void assertSame(ProcessMetricTracker expected, ProcessMetricTracker actual) {
+		if (expected == null) {
+			Assertions.assertNull(actual);
+			return;
+		}
+		Assertions.assertNotNull(actual);
+		Assertions.assertEquals(expected.toString(), actual.toString());
+		Assertions.assertEquals(expected.getCommitCountThreshold(), actual.getCommitCountThreshold());
+		Assertions.assertSame(expected.getBaseCommit(), actual.getBaseCommit());
+		Assertions.assertEquals(expected.getCurrentProcessMetrics().getAllAuthors(),
+				actual.getCurrentProcessMetrics().getAllAuthors());
+	}
+
+	private static String fileName(Random random) {
+		return "d" + random.nextInt(4) + "/f" + random.nextInt(10) + ".java";
+	}
+
+	private ProcessMetricTracker report(ProcessMetricsDatabase pmDatabase, String fileName, CommitHandle commit,
+			String author) {
+		return report(pmDatabase, fileName, commit, EnumSet.noneOf(Category.class), author);
+	}
+
+	private ProcessMetricTracker report(ProcessMetricsDatabase pmDatabase, String fileName, CommitHandle commit,
+			Set<Category> categories, String author) {
+		return pmDatabase.reportChanges(fileName, commit, categories, author, 1, 1, thresholds);
+	}
+
+	private CommitHandle commit(int number) {
+		return new CommitHandle(number, ObjectId.fromRaw(new int[] { 0, 0, 0, 0, number }), project);
+	}
+}
@@ -0,0 +1,80 @@
+package refactoringml;
+
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.TimeZone;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.MergeCommand;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import refactoringml.util.CommitIndex;
+
+public class CommitIndexTest {
+
+	private long time = 1_600_000_000_000L;
+
+	@Test
+	public void indexHistory(@TempDir Path repositoryPath) throws Exception {
+		try (Git git = TestRepository.init(repositoryPath)) {
+			String mainBranch = git.getRepository().getBranch();
+			RevCommit first = commit(git, repositoryPath, "A.java", "alice");
+			RevCommit second = commit(git, repositoryPath, "B.java", "bob");
+			git.checkout().setCreateBranch(true).setName("feature").setStartPoint(first).call();
+			RevCommit feature = commit(git, repositoryPath, "C.java", "alice");
+			git.checkout().setName(mainBranch).call();
+			git.merge().include(feature).setFastForward(MergeCommand.FastForwardMode.NO_FF).setMessage("merge")
+					.setCommit(false).call();
+			RevCommit merge = TestRepository.commitAll(git, "merge", person("bob"));
+
+			CommitIndex index = CommitIndex.build(git.getRepository(), mainBranch);
+			Assertions.assertEquals(4, index.size());
+			Assertions.assertEquals(first.getId(), index.getId(0));
+			Assertions.assertEquals(merge.getId(), index.getId(3));
+			Assertions.assertEquals(0, index.getParentCount(0));
+			Assertions.assertEquals(2, index.getParentCount(3));
+			Assertions.assertEquals(index.indexOf(second), index.getParent(3, 0));
+			Assertions.assertEquals(index.indexOf(feature), index.getParent(3, 1));
+			Assertions.assertEquals(index.getAuthorId(0), index.getAuthorId(index.indexOf(feature)));
+			Assertions.assertEquals("bob", index.getAuthor(index.indexOf(second)));
+			Assertions.assertEquals(2, index.getAmountOfAuthors());
+
+			Assertions.assertEquals(1, index.indexOf(index.getName(1)));
+			Assertions.assertEquals(-1, index.indexOf(ObjectId.zeroId()));
+			Assertions.assertEquals(-1, index.indexOf("not a hash"));
+
+			try (RevWalk walk = new RevWalk(git.getRepository())) {
+				walk.setRetainBody(false);
+				RevCommit parsed = index.parseCommit(walk, 1);
+				Assertions.assertEquals("B.java", parsed.getFullMessage());
+				Assertions.assertNotNull(parsed.getParent(0).getTree());
+			}
+		}
+	}
+
+	@Test
+	public void emptyRepository(@TempDir Path repositoryPath) throws Exception {
+		try (Git git = TestRepository.init(repositoryPath)) {
+			CommitIndex index = CommitIndex.build(git.getRepository(), git.getRepository().getBranch());
+			Assertions.assertEquals(0, index.size());
+			Assertions.assertEquals(-1, index.indexOf(ObjectId.zeroId()));
+		}
+	}
+
+	private RevCommit commit(Git git, Path repositoryPath, String fileName, String author) throws Exception {
+		TestRepository.write(repositoryPath, fileName, "class " + fileName.replace(".java", "") + " {}\n");
+		return TestRepository.commitAll(git, fileName, person(author));
+	}
+
+	// the commits are a minute apart, so that the order of the history does not depend on how fast the test runs
+	private PersonIdent person(String name) {
+		time += 60_000;
+		return new PersonIdent(name, name + "@example.com", new Date(time), TimeZone.getTimeZone("UTC"));
+	}
+}
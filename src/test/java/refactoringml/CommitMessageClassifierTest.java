@@ -0,0 +1,39 @@
+package refactoringml;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import refactoringml.util.CommitMessageClassifier;
+import refactoringml.util.CommitMessageClassifier.Category;
+
+public class CommitMessageClassifierTest {
+
+	@Test
+	public void defaultKeywords() {
+		CommitMessageClassifier classifier = CommitMessageClassifier.DEFAULT;
+		Assertions.assertEquals(Set.of(Category.BUG_FIX), classifier.classify("Fixed the build"));
+		Assertions.assertEquals(Set.of(Category.BUG_FIX), classifier.classify("handle IOERRORS"));
+		Assertions.assertEquals(Set.of(Category.BUG_FIX), classifier.classify("a\nfaulty\ttest"));
+		Assertions.assertEquals(Set.of(), classifier.classify("Add a new feature"));
+		Assertions.assertEquals(Set.of(), classifier.classify(""));
+		// same as looking for the keywords in the lower case message
+		for (String message : List.of("fi x", "fai", "wron g", "bu", "mistak", "errr", "fau")) {
+			Assertions.assertEquals(Set.of(), classifier.classify(message), message);
+		}
+	}
+
+	@Test
+	public void overlappingKeywords() {
+		CommitMessageClassifier classifier = new CommitMessageClassifier(
+				Map.of(Category.BUG_FIX, List.of("abcd", "bcx", "cc", "")));
+		Assertions.assertEquals(Set.of(Category.BUG_FIX), classifier.classify("xabcx"));
+		Assertions.assertEquals(Set.of(Category.BUG_FIX), classifier.classify("abcc"));
+		Assertions.assertEquals(Set.of(Category.BUG_FIX), classifier.classify("ABABCD"));
+		Assertions.assertEquals(Set.of(), classifier.classify("abcabcab"));
+		Assertions.assertEquals(Set.of(), new CommitMessageClassifier(Map.of()).classify("bug"));
+	}
+}
@@ -0,0 +1,46 @@
+package refactoringml;
+
+import java.nio.file.Path;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import refactoringml.util.CounterUtils;
+import refactoringml.util.CounterUtils.CounterResult;
+
+public class CounterUtilsTest {
+
+	@Test
+	public void countFromObjectDatabase(@TempDir Path repositoryPath) throws Exception {
+		try (Git git = TestRepository.init(repositoryPath)) {
+			TestRepository.write(repositoryPath, "src/main/java/a/A.java", "class A {\n\t// comment\n\tint a;\n}\n");
+			TestRepository.write(repositoryPath, "src/main/java/a/B.java", "class B {\n}\n");
+			TestRepository.write(repositoryPath, "src/test/java/a/ATest.java",
+					"class ATest {\n\n\tvoid test() {}\n}\n");
+			TestRepository.write(repositoryPath, "README.md", "not java\n");
+			TestRepository.commitAll(git, "first");
+			// not committed, so not counted
+			TestRepository.write(repositoryPath, "src/main/java/a/C.java", "class C {\n}\n");
+
+			CounterResult result = CounterUtils.countProductionAndTestFiles(git.getRepository(),
+					git.getRepository().resolve(Constants.HEAD));
+			Assertions.assertEquals(2, result.getQtyOfProductionFiles());
+			Assertions.assertEquals(1, result.getQtyOfTestFiles());
+			Assertions.assertEquals(5, result.getLocProductionFiles());
+			Assertions.assertEquals(3, result.getLocTestFiles());
+		}
+	}
+
+	@Test
+	public void countEmptyRepository(@TempDir Path repositoryPath) throws Exception {
+		try (Git git = Git.init().setBare(true).setDirectory(repositoryPath.toFile()).call()) {
+			CounterResult result = CounterUtils.countProductionAndTestFiles(git.getRepository(),
+					git.getRepository().resolve(Constants.HEAD));
+			Assertions.assertEquals(0, result.getQtyOfProductionFiles());
+			Assertions.assertEquals(0, result.getLocTestFiles());
+		}
+	}
+}
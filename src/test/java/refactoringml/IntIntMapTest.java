@@ -0,0 +1,43 @@
+package refactoringml;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import refactoringml.util.IntIntMap;
+
+public class IntIntMapTest {
+
+	@Test
+	public void sameAsHashMap() {
+		IntIntMap map = new IntIntMap();
+		Map<Integer, Integer> expected = new HashMap<>();
+		Random random = new Random(42);
+		for (int i = 0; i < 10000; i++) {
+			int key = random.nextInt(i < 5000 ? 100 : 100000);
+			Assertions.assertEquals((long) expected.merge(key, 1, Integer::sum), map.add(key, 1));
+		}
+		Assertions.assertEquals(expected.size(), map.size());
+		Map<Integer, Integer> actual = new HashMap<>();
+		map.forEach(actual::put);
+		Assertions.assertEquals(expected, actual);
+		Assertions.assertEquals(0, map.get(-5 + 100000 * 2));
+	}
+
+	@Test
+	public void copiesAreIndependent() {
+		IntIntMap map = new IntIntMap();
+		map.add(1, 3);
+		IntIntMap copy = new IntIntMap(map);
+		copy.add(1, 1);
+		copy.add(2, 1);
+		Assertions.assertEquals(3, map.get(1));
+		Assertions.assertEquals(1, map.size());
+		Assertions.assertEquals(4, copy.get(1));
+		Assertions.assertEquals(2, copy.size());
+		Assertions.assertThrows(IllegalArgumentException.class, () -> map.add(-1, 1));
+	}
+}
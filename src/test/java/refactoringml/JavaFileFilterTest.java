@@ -0,0 +1,50 @@
+package refactoringml;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import refactoringml.util.JGitUtils;
+import refactoringml.util.JavaFileFilter;
+
+public class JavaFileFilterTest {
+
+	@Test
+	public void onlyDiffJavaFiles(@TempDir Path tempDir) throws Exception {
+		try (Git git = TestRepository.init(tempDir)) {
+			TestRepository.write(tempDir, "src/A.java", "class A {\n\tint a;\n\tint b;\n}\n");
+			TestRepository.write(tempDir, "res/data.json", "{\"a\": 1, \"b\": 2}\n");
+			TestRepository.write(tempDir, "generated/G.java", "class G {}\n");
+			TestRepository.commitAll(git);
+			Files.move(tempDir.resolve("src/A.java"), tempDir.resolve("src/B.java"));
+			Files.move(tempDir.resolve("res/data.json"), tempDir.resolve("res/other.json"));
+			TestRepository.write(tempDir, "generated/G.java", "class G { int g; }\n");
+			RevCommit commit = TestRepository.commitAll(git);
+
+			try (DiffFormatter all = JGitUtils.createDiffFormatter(git.getRepository());
+					DiffFormatter javaOnly = JGitUtils.createDiffFormatter(git.getRepository(),
+							new JavaFileFilter(List.of("generated/", " ")), 400, 60)) {
+				Assertions.assertEquals(List.of("generated/G.java", "res/other.json", "src/B.java"),
+						newPaths(JGitUtils.calculateDiffEntries(commit, all)));
+
+				List<DiffEntry> entries = JGitUtils.calculateDiffEntries(commit, javaOnly);
+				Assertions.assertEquals(List.of("src/B.java"), newPaths(entries));
+				Assertions.assertEquals(DiffEntry.ChangeType.RENAME, entries.get(0).getChangeType());
+				Assertions.assertEquals("src/A.java", entries.get(0).getOldPath());
+			}
+		}
+	}
+
+	private static List<String> newPaths(List<DiffEntry> entries) {
+		return entries.stream().map(DiffEntry::getNewPath).sorted().collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,98 @@
+package refactoringml;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import refactoringml.util.BlobReader;
+import refactoringml.util.JGitUtils;
+import refactoringml.util.LineChurnCalculator;
+import refactoringml.util.LineChurnCalculator.Churn;
+
+public class LineChurnCalculatorTest {
+
+	@Test
+	public void sameChurnAsDiff(@TempDir Path tempDir) throws Exception {
+		try (Git git = TestRepository.init(tempDir)) {
+			TestRepository.write(tempDir, "A.java", "class A {\n\tint a;\n\tint b;\n\tint c;\n}\n");
+			TestRepository.write(tempDir, "B.java", "class B {\n}\n");
+			TestRepository.write(tempDir, "C.java", "class C {}");
+			TestRepository.commitAll(git);
+			TestRepository.write(tempDir, "A.java", "class A {\n\tint b;\n\tint c;\n\tint d;\n\tint e;\n}\n");
+			TestRepository.write(tempDir, "C.java", "class C {}\n");
+			TestRepository.write(tempDir, "D.java", "class D {\n}\n");
+			Files.delete(tempDir.resolve("B.java"));
+			RevCommit second = TestRepository.commitAll(git);
+			TestRepository.write(tempDir, "A.java", "class A {\n\tint e;\n\tint d;\n}\n\n");
+			RevCommit third = TestRepository.commitAll(git);
+
+			try (BlobReader blobReader = new BlobReader(git.getRepository(), 4);
+					DiffFormatter diffFormatter = JGitUtils.createDiffFormatter(git.getRepository())) {
+				LineChurnCalculator calculator = new LineChurnCalculator(blobReader, 1000, 100);
+				for (RevCommit commit : List.of(second, third)) {
+					List<DiffEntry> entries = JGitUtils.calculateDiffEntries(commit, diffFormatter);
+					Assertions.assertEquals(commit == second ? 4 : 1, entries.size());
+					for (DiffEntry entry : entries) {
+						int linesAdded = 0;
+						int linesDeleted = 0;
+						for (Edit edit : diffFormatter.toFileHeader(entry).toEditList()) {
+							linesAdded += edit.getLengthB();
+							linesDeleted += edit.getLengthA();
+						}
+						Churn churn = calculator.calculate(entry);
+						Assertions.assertEquals(linesAdded, churn.getLinesAdded(), entry.toString());
+						Assertions.assertEquals(linesDeleted, churn.getLinesDeleted(), entry.toString());
+					}
+				}
+				Assertions.assertEquals(0, calculator.getApproximated());
+			}
+		}
+	}
+
+	@Test
+	public void approximateLargeFiles(@TempDir Path tempDir) throws Exception {
+		try (Git git = TestRepository.init(tempDir)) {
+			TestRepository.write(tempDir, "A.java", "a\nb\nc\nd\n");
+			TestRepository.commitAll(git);
+			TestRepository.write(tempDir, "A.java", "d\nc\nb\ne\n");
+			RevCommit commit = TestRepository.commitAll(git);
+
+			try (BlobReader blobReader = new BlobReader(git.getRepository(), 4);
+					DiffFormatter diffFormatter = JGitUtils.createDiffFormatter(git.getRepository())) {
+				LineChurnCalculator calculator = new LineChurnCalculator(blobReader, 3, 100);
+				Churn churn = calculator.calculate(JGitUtils.calculateDiffEntries(commit, diffFormatter).get(0));
+				// only the lines found in one version, the moved lines are not counted
+				Assertions.assertEquals(1, churn.getLinesAdded());
+				Assertions.assertEquals(1, churn.getLinesDeleted());
+				Assertions.assertEquals(1, calculator.getApproximated());
+			}
+		}
+	}
+
+	@Test
+	public void binaryFilesHaveNoChurn(@TempDir Path tempDir) throws Exception {
+		try (Git git = TestRepository.init(tempDir)) {
+			TestRepository.write(tempDir, "A.java", "class A {}\n");
+			TestRepository.commitAll(git);
+			Files.write(tempDir.resolve("A.java"), new byte[] { 'a', 0, '\n', 'b', '\n' });
+			RevCommit commit = TestRepository.commitAll(git);
+
+			try (BlobReader blobReader = new BlobReader(git.getRepository(), 4);
+					DiffFormatter diffFormatter = JGitUtils.createDiffFormatter(git.getRepository())) {
+				LineChurnCalculator calculator = new LineChurnCalculator(blobReader, 1000, 100);
+				Churn churn = calculator.calculate(JGitUtils.calculateDiffEntries(commit, diffFormatter).get(0));
+				Assertions.assertEquals(0, churn.getLinesAdded());
+				Assertions.assertEquals(0, churn.getLinesDeleted());
+			}
+		}
+	}
+}
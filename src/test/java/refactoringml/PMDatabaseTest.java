@@ -1,14 +1,15 @@
 package refactoringml;
 
+import org.eclipse.jgit.lib.ObjectId;
 import org.junit.jupiter.api.Assertions;
 import org.junit.Ignore;
 import org.junit.jupiter.api.Test;
-import refactoringml.db.CommitMetaData;
 import refactoringml.db.Project;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.stream.Collectors;
 
 //Test the PMDatabase class
@@ -32,11 +33,11 @@ public class PMDatabaseTest {
     // @Test
     // void caseSensitivity() {
     //     PMDatabase pmDatabase = new PMDatabase();
-    //     pmDatabase.reportChanges("a.Java", new CommitMetaData("#1", "n", "n", "0", project), "R", 1, 1);
-    //     pmDatabase.reportChanges("A.Java", new CommitMetaData("#1", "n", "n", "0", project), "R", 1, 1);
+    //     pmDatabase.reportChanges("a.Java", commit(1), "R", 1, 1);
+    //     pmDatabase.reportChanges("A.Java", commit(1), "R", 1, 1);
     //     Assertions.assertNotEquals(pmDatabase.find("a.Java"), pmDatabase.find("A.Java"));
 
-    //     pmDatabase.reportChanges("a.java", new CommitMetaData("#2", "n", "n", "0", project), "R", 1, 1);
+    //     pmDatabase.reportChanges("a.java", commit(2), "R", 1, 1);
     //     Assertions.assertEquals(pmDatabase.find("a.Java"), pmDatabase.find("a.java"));
     // }
 
@@ -47,7 +48,7 @@ public class PMDatabaseTest {
 
         // test if a new pm tracker is created with the right values
         ProcessMetricTracker aTracker = pmDatabase.reportChanges("a.Java",
-                new CommitMetaData("#1", "null", "null", "0", project), "Rafael", 10, 20);
+                commit(1), "Rafael", 10, 20);
         Assertions.assertNotNull(pmDatabase.find("a.Java"));
         Assertions.assertEquals(aTracker, pmDatabase.find("a.Java"));
         Assertions.assertFalse(aTracker.calculateStability(List.of(10, 25)));
@@ -56,7 +57,7 @@ public class PMDatabaseTest {
         Assertions.assertNotNull(pmDatabase.find("a.Java").getCurrentProcessMetrics());
 
         // test if another new pm tracker is created with the right values
-        pmDatabase.reportChanges("A.Java", new CommitMetaData("#1", "null", "null", "0", project), "Rafael", 10, 20);
+        pmDatabase.reportChanges("A.Java", commit(1), "Rafael", 10, 20);
         Assertions.assertNotEquals(pmDatabase.find("a.Java"), pmDatabase.find("A.Java"));
         Assertions.assertNotNull(pmDatabase.find("A.Java"));
         Assertions.assertEquals(1, pmDatabase.find("A.Java").getCommitCounter());
@@ -64,7 +65,7 @@ public class PMDatabaseTest {
         Assertions.assertNotNull(pmDatabase.find("A.Java").getCurrentProcessMetrics());
 
         // test if an existing pmTracker is updated correctly
-        pmDatabase.reportChanges("a.Java", new CommitMetaData("#2", "null", "null", "0", project), "Rafael", 10, 20);
+        pmDatabase.reportChanges("a.Java", commit(2), "Rafael", 10, 20);
         Assertions.assertNotNull(pmDatabase.find("a.Java"));
         Assertions.assertEquals(2, pmDatabase.find("a.Java").getCommitCounter());
         Assertions.assertNotEquals(pmDatabase.find("a.Java").getBaseProcessMetrics().qtyOfCommits,
@@ -75,7 +76,7 @@ public class PMDatabaseTest {
     public void reportRefactoring() {
         PMDatabase pmDatabase = new PMDatabase();
 
-        pmDatabase.reportRefactoring("a.Java", new CommitMetaData("#1", "null", "null", "0", project));
+        pmDatabase.reportRefactoring("a.Java", commit(1));
         Assertions.assertNotNull(pmDatabase.find("a.Java"));
         Assertions.assertEquals(0, pmDatabase.find("a.Java").getCommitCounter());
         Assertions.assertEquals(pmDatabase.find("a.Java").getCurrentProcessMetrics().toString(),
@@ -83,13 +84,13 @@ public class PMDatabaseTest {
         Assertions.assertEquals(1, pmDatabase.find("a.Java").getCurrentProcessMetrics().refactoringsInvolved);
         Assertions.assertEquals(1, pmDatabase.find("a.Java").getBaseProcessMetrics().refactoringsInvolved);
 
-        pmDatabase.reportChanges("a.Java", new CommitMetaData("#2", "null", "null", "0", project), "Rafael", 10, 20);
+        pmDatabase.reportChanges("a.Java", commit(2), "Rafael", 10, 20);
         Assertions.assertEquals(1, pmDatabase.find("a.Java").getCommitCounter());
-        pmDatabase.reportChanges("A.Java", new CommitMetaData("#1", "null", "null", "0", project), "Rafael", 10, 20);
+        pmDatabase.reportChanges("A.Java", commit(1), "Rafael", 10, 20);
         Assertions.assertEquals(1, pmDatabase.find("a.Java").getCommitCounter());
         Assertions.assertEquals(1, pmDatabase.find("A.Java").getCommitCounter());
 
-        pmDatabase.reportRefactoring("a.Java", new CommitMetaData("#3", "null", "null", "0", project));
+        pmDatabase.reportRefactoring("a.Java", commit(3));
         Assertions.assertEquals(0, pmDatabase.find("a.Java").getCommitCounter());
         Assertions.assertEquals(pmDatabase.find("a.Java").getCurrentProcessMetrics().toString(),
                 pmDatabase.find("a.Java").getBaseProcessMetrics().toString());
@@ -108,7 +109,7 @@ public class PMDatabaseTest {
         String expected = "PMDatabase{" + "database=" + database.toString() + "}";
         Assertions.assertEquals(expected, pmDatabase.toString());
 
-        pmDatabase.reportChanges("a.Java", new CommitMetaData("#1", "null", "null", "0", project), "Rafael", 10, 20);
+        pmDatabase.reportChanges("a.Java", commit(1), "Rafael", 10, 20);
         pmDatabase.removeFile("A.Java");
         Assertions.assertNotNull(pmDatabase.find("a.Java"));
 
@@ -122,33 +123,35 @@ public class PMDatabaseTest {
         PMDatabase pmDatabase = new PMDatabase();
 
         ProcessMetricTracker oldPMTracker = pmDatabase.renameFile("a.Java", "A.Java",
-                new CommitMetaData("1", "null", "null", "0", project));
+                commit(1));
         Assertions.assertNull(oldPMTracker);
         Assertions.assertNotNull(pmDatabase.find("A.Java"));
         Assertions.assertNull(pmDatabase.find("a.Java"));
         Assertions.assertEquals("A.Java", pmDatabase.find("A.Java").getFileName());
 
-        pmDatabase.reportChanges("A.Java", new CommitMetaData("1", "null", "null", "0", project), "Rafael", 10, 20);
+        pmDatabase.reportChanges("A.Java", commit(1), "Rafael", 10, 20);
         Assertions.assertNotNull(pmDatabase.find("A.Java"));
         Assertions.assertEquals(1, pmDatabase.find("A.Java").getCommitCounter());
         Assertions.assertEquals(0, pmDatabase.find("A.Java").getBaseProcessMetrics().linesAdded);
         Assertions.assertEquals(10, pmDatabase.find("A.Java").getCurrentProcessMetrics().linesAdded);
 
-        oldPMTracker = pmDatabase.renameFile("A.Java", "B.Java", new CommitMetaData("1", "null", "null", "0", project));
+        oldPMTracker = pmDatabase.renameFile("A.Java", "B.Java", commit(1));
         Assertions.assertNotNull(oldPMTracker);
-        Assertions.assertEquals("A.Java", oldPMTracker.getFileName());
+        Assertions.assertEquals("B.Java", oldPMTracker.getFileName());
+        // the tracker is moved, not copied
+        Assertions.assertSame(oldPMTracker, pmDatabase.find("B.Java"));
         Assertions.assertEquals(1, oldPMTracker.getCommitCounter());
         Assertions.assertEquals(0, oldPMTracker.getBaseProcessMetrics().linesAdded);
         Assertions.assertEquals(10, oldPMTracker.getCurrentProcessMetrics().linesAdded);
 
-        pmDatabase.reportChanges("B.Java", new CommitMetaData("1", "null", "null", "0", project), "Rafael", 10, 20);
+        pmDatabase.reportChanges("B.Java", commit(1), "Rafael", 10, 20);
         Assertions.assertNotNull(pmDatabase.find("B.Java"));
         Assertions.assertEquals("B.Java", pmDatabase.find("B.Java").getFileName());
         Assertions.assertEquals(2, pmDatabase.find("B.Java").getCommitCounter());
         Assertions.assertEquals(2, pmDatabase.find("B.Java").getCurrentProcessMetrics().qtyOfCommits);
         Assertions.assertEquals(40, pmDatabase.find("B.Java").getCurrentProcessMetrics().linesDeleted);
 
-        pmDatabase.reportChanges("a.Java", new CommitMetaData("1", "null", "null", "0", project), "Rafael", 10, 20);
+        pmDatabase.reportChanges("a.Java", commit(1), "Rafael", 10, 20);
         Assertions.assertNotNull(pmDatabase.find("a.Java"));
         Assertions.assertEquals(1, pmDatabase.find("a.Java").getCommitCounter());
         Assertions.assertEquals(1, pmDatabase.find("a.Java").getCurrentProcessMetrics().qtyOfCommits);
@@ -159,29 +162,57 @@ public class PMDatabaseTest {
     @Test
     public void renameFile2() {
         PMDatabase pmDatabase = new PMDatabase();
-        pmDatabase.reportChanges("a.Java", new CommitMetaData("#1", "null", "null", "0", project), "Rafael", 10, 20);
-        pmDatabase.renameFile("a.Java", "A.Java", new CommitMetaData("1", "null", "null", "0", project));
+        pmDatabase.reportChanges("a.Java", commit(1), "Rafael", 10, 20);
+        pmDatabase.renameFile("a.Java", "A.Java", commit(1));
 
         ProcessMetricTracker pmTracker = pmDatabase.find("A.Java");
         Assertions.assertNotNull(pmTracker);
         Assertions.assertEquals(10, pmTracker.getCurrentProcessMetrics().linesAdded);
         Assertions.assertEquals(0, pmTracker.getBaseProcessMetrics().linesAdded);
-        Assertions.assertEquals("#1", pmTracker.getBaseCommitMetaData().commitId);
+        Assertions.assertEquals(1, pmTracker.getBaseCommit().getCommitNumber());
     }
 
     // @Test(IllegalArgumentException.class)
     // public void renameFile3() {
     //     PMDatabase pmDatabase = new PMDatabase();
-    //     pmDatabase.reportChanges("a.Java", new CommitMetaData("#1", "null", "null", "0", project), "Rafael", 10, 20);
-    //     pmDatabase.renameFile("a.Java", "a.Java", new CommitMetaData("1", "null", "null", "0", project));
+    //     pmDatabase.reportChanges("a.Java", commit(1), "Rafael", 10, 20);
+    //     pmDatabase.renameFile("a.Java", "a.Java", commit(1));
     // }
 
+    // take care of moved directories
+    @Test
+    public void renameDirectory() {
+        PMDatabase pmDatabase = new PMDatabase();
+        List<Integer> stableCommitCounts = List.of(1);
+        pmDatabase.reportChanges("src/a/A.java", commit(1), "Rafael", 10, 20);
+        pmDatabase.reportChanges("src/a/b/B.java", commit(1), "Rafael", 10, 20);
+        pmDatabase.reportChanges("src/C.java", commit(1), "Rafael", 10, 20);
+        Assertions.assertEquals(3, pmDatabase.findStableInstances(stableCommitCounts).size());
+        ProcessMetricTracker pmTracker = pmDatabase.find("src/a/b/B.java");
+        Assertions.assertEquals(2, pmDatabase.countFiles("src/a"));
+
+        Assertions.assertTrue(pmDatabase.renameDirectory("src/a", "lib/a"));
+        Assertions.assertNull(pmDatabase.find("src/a/A.java"));
+        Assertions.assertEquals(0, pmDatabase.countFiles("src/a"));
+        Assertions.assertEquals(2, pmDatabase.countFiles("lib"));
+        Assertions.assertSame(pmTracker, pmDatabase.find("lib/a/b/B.java"));
+        Assertions.assertEquals("lib/a/b/B.java", pmTracker.getFileName());
+        Assertions.assertEquals(10, pmTracker.getCurrentProcessMetrics().linesAdded);
+        // same as renamed files, the moved files did not pass any threshold yet
+        Assertions.assertEquals(0, pmTracker.getCommitCountThreshold());
+        Assertions.assertEquals(1, pmDatabase.find("src/C.java").getCommitCountThreshold());
+
+        Assertions.assertFalse(pmDatabase.renameDirectory("lib/a/b", "src"));
+        Assertions.assertFalse(pmDatabase.renameDirectory("lib", "lib/java"));
+        Assertions.assertEquals(3, pmDatabase.getTrackers().size());
+    }
+
     // take care of renamed files
     @Test
     public void removeFile2() {
         PMDatabase pmDatabase = new PMDatabase();
-        pmDatabase.reportChanges("a.Java", new CommitMetaData("#1", "null", "null", "0", project), "Rafael", 10, 20);
-        pmDatabase.renameFile("a.Java", "A.Java", new CommitMetaData("1", "null", "null", "0", project));
+        pmDatabase.reportChanges("a.Java", commit(1), "Rafael", 10, 20);
+        pmDatabase.renameFile("a.Java", "A.Java", commit(1));
 
         ProcessMetricTracker pmTracker = pmDatabase.removeFile("a.Java");
         Assertions.assertNull(pmTracker);
@@ -196,38 +227,38 @@ public class PMDatabaseTest {
 
         for (int i = 0; i < 9; i++) {
             ProcessMetricTracker aTracker = pm.reportChanges("a.Java",
-                    new CommitMetaData("#" + (i), "null", "null", "0", project), "Rafael", 10, 20);
+                    commit(i), "Rafael", 10, 20);
             ProcessMetricTracker bTracker = pm.reportChanges("b.Java",
-                    new CommitMetaData("#" + (i), "null", "null", "0", project), "Rafael", 10, 20);
+                    commit(i), "Rafael", 10, 20);
             Assertions.assertFalse(aTracker.calculateStability(stableCommitCounts));
             Assertions.assertFalse(bTracker.calculateStability(stableCommitCounts));
             Assertions.assertEquals(i + 1, pm.find("a.Java").getCommitCounter());
             Assertions.assertEquals(i + 1, pm.find("b.Java").getCommitCounter());
         }
 
-        ProcessMetricTracker bTracker = pm.reportChanges("b.Java", new CommitMetaData("#10", "null", "null", "0", project),
+        ProcessMetricTracker bTracker = pm.reportChanges("b.Java", commit(10),
                 "Rafael", 10, 20);
         Assertions.assertEquals(pm.find("b.Java"), bTracker);
         Assertions.assertEquals(10, pm.find("b.Java").getCommitCounter());
         Assertions.assertTrue(bTracker.calculateStability(stableCommitCounts));
 
         for (int i = 0; i < 14; i++) {
-            pm.reportChanges("b.Java", new CommitMetaData("#" + (i + 11), "null", "null", "0", project), "Rafael", 10, 20);
+            pm.reportChanges("b.Java", commit(i + 11), "Rafael", 10, 20);
             Assertions.assertEquals(0, pm.findStableInstances(stableCommitCounts).size());
         }
 
-        pm.reportChanges("a.Java", new CommitMetaData("#10", "null", "null", "0", project), "Rafael", 10, 20);
+        pm.reportChanges("a.Java", commit(10), "Rafael", 10, 20);
         Assertions.assertEquals(1, pm.findStableInstances(stableCommitCounts).size());
         Assertions.assertEquals(10, pm.findStableInstances(stableCommitCounts).get(0).getCommitCountThreshold());
 
-        pm.reportChanges("b.Java", new CommitMetaData("#25", "null", "null", "0", project), "Rafael", 10, 20);
+        pm.reportChanges("b.Java", commit(25), "Rafael", 10, 20);
         Assertions.assertEquals(2, pm.findStableInstances(stableCommitCounts).size());
         Assertions.assertEquals(25,
                 pm.findStableInstances(stableCommitCounts).stream()
                         .filter(pmTracker -> pmTracker.getFileName().equals("b.Java")).collect(Collectors.toList())
                         .get(0).getCommitCountThreshold());
 
-        pm.reportRefactoring("b.Java", new CommitMetaData("#26", "null", "null", "0", project));
+        pm.reportRefactoring("b.Java", commit(26));
         Assertions.assertEquals(1, pm.findStableInstances(stableCommitCounts).size());
 
         Assertions.assertEquals(1, pm.findStableInstances(stableCommitCounts).size());
@@ -240,30 +271,30 @@ public class PMDatabaseTest {
         List<Integer> stableCommitCounts = List.of(10, 25);
 
         for (int i = 0; i < 9; i++) {
-            pm.reportChanges("a.Java", new CommitMetaData("#" + (i + 0), "null", "null", "0", project), "Rafael", 10, 20);
-            pm.reportChanges("b.Java", new CommitMetaData("#" + (i + 0), "null", "null", "0", project), "Rafael", 10, 20);
+            pm.reportChanges("a.Java", commit(i + 0), "Rafael", 10, 20);
+            pm.reportChanges("b.Java", commit(i + 0), "Rafael", 10, 20);
             Assertions.assertEquals(0, pm.findStableInstances(stableCommitCounts).size());
         }
 
-        pm.reportRefactoring("a.Java", new CommitMetaData("#" + (10), "null", "null", "0", project));
+        pm.reportRefactoring("a.Java", commit(10));
         Assertions.assertEquals(0, pm.find("a.Java").getCommitCounter());
         Assertions.assertEquals(0, pm.findStableInstances(stableCommitCounts).size());
 
         for (int i = 0; i < 2; i++) {
-            pm.reportChanges("a.Java", new CommitMetaData("#" + (i + 10), "null", "null", "0", project), "Rafael", 10, 20);
+            pm.reportChanges("a.Java", commit(i + 10), "Rafael", 10, 20);
             Assertions.assertEquals(0, pm.findStableInstances(stableCommitCounts).size());
             Assertions.assertEquals(i + 1, pm.find("a.Java").getCommitCounter());
         }
 
-        pm.reportChanges("b.Java", new CommitMetaData("#" + (9), "null", "null", "0", project), "Rafael", 10, 20);
+        pm.reportChanges("b.Java", commit(9), "Rafael", 10, 20);
         Assertions.assertEquals(1, pm.findStableInstances(stableCommitCounts).size());
 
         for (int i = 0; i < 7; i++) {
-            pm.reportChanges("a.Java", new CommitMetaData("#" + (i + 12), "null", "null", "0", project), "Rafael", 10, 20);
+            pm.reportChanges("a.Java", commit(i + 12), "Rafael", 10, 20);
             Assertions.assertEquals(1, pm.findStableInstances(stableCommitCounts).size());
         }
 
-        pm.reportChanges("a.Java", new CommitMetaData("#" + (20), "null", "null", "0", project), "Rafael", 10, 20);
+        pm.reportChanges("a.Java", commit(20), "Rafael", 10, 20);
         Assertions.assertEquals(2, pm.findStableInstances(stableCommitCounts).size());
     }
 
@@ -273,22 +304,96 @@ public class PMDatabaseTest {
         List<Integer> stableCommitCounts = List.of(10, 25);
 
         for (int i = 0; i < 9; i++) {
-            pm.reportChanges("a.Java", new CommitMetaData("#" + (i), "null", "null", "0", project), "Rafael", 10, 20);
+            pm.reportChanges("a.Java", commit(i), "Rafael", 10, 20);
         }
-        pm.reportChanges("a.Java", new CommitMetaData("#" + (10), "null", "null", "0", project), "Rafael", 10, 20);
+        pm.reportChanges("a.Java", commit(10), "Rafael", 10, 20);
         Assertions.assertEquals(1, pm.findStableInstances(stableCommitCounts).size());
         Assertions.assertEquals(10, pm.findStableInstances(stableCommitCounts).get(0).getCommitCountThreshold());
 
-        pm.reportChanges("a.Java", new CommitMetaData("#" + (11), "null", "null", "0", project), "Rafael", 10, 20);
+        pm.reportChanges("a.Java", commit(11), "Rafael", 10, 20);
         Assertions.assertEquals(0, pm.findStableInstances(stableCommitCounts).size());
 
         for (int i = 0; i < 14; i++) {
-            pm.reportChanges("a.Java", new CommitMetaData("#" + (i + 12), "null", "null", "0", project), "Rafael", 10, 20);
+            pm.reportChanges("a.Java", commit(i + 12), "Rafael", 10, 20);
         }
         Assertions.assertEquals(1, pm.findStableInstances(stableCommitCounts).size());
         Assertions.assertEquals(25, pm.findStableInstances(stableCommitCounts).get(0).getCommitCountThreshold());
 
-        pm.reportRefactoring("a.Java", new CommitMetaData("#" + (26), "null", "null", "0", project));
+        pm.reportRefactoring("a.Java", commit(26));
+        Assertions.assertEquals(0, pm.findStableInstances(stableCommitCounts).size());
+    }
+
+    @Test
+    public void findStableInstancesByThreshold() {
+        PMDatabase pm = new PMDatabase();
+        List<Integer> stableCommitCounts = List.of(2, 4);
         Assertions.assertEquals(0, pm.findStableInstances(stableCommitCounts).size());
+
+        for (int i = 0; i < 2; i++) {
+            pm.reportChanges("a.Java", commit(i), "Rafael", 10, 20);
+            pm.reportChanges("b.Java", commit(i), "Rafael", 10, 20);
+        }
+        Assertions.assertEquals(0, pm.findStableInstances(stableCommitCounts, 4).size());
+        Assertions.assertEquals(2, pm.findStableInstances(stableCommitCounts, 2).size());
+        Assertions.assertEquals(2, pm.find("a.Java").getCommitCountThreshold());
+
+        for (int i = 2; i < 4; i++)
+            pm.reportChanges("a.Java", commit(i), "Rafael", 10, 20);
+        pm.reportChanges("b.Java", commit(2), "Rafael", 10, 20);
+        pm.reportChanges("c.Java", commit(2), "Rafael", 10, 20);
+        pm.reportChanges("c.Java", commit(3), "Rafael", 10, 20);
+        Assertions.assertEquals(List.of(pm.find("a.Java")), pm.findStableInstances(stableCommitCounts, 4));
+        Assertions.assertEquals(4, pm.find("a.Java").getCommitCountThreshold());
+        Assertions.assertEquals(List.of(pm.find("c.Java")), pm.findStableInstances(stableCommitCounts, 2));
+        Assertions.assertEquals(3, pm.find("b.Java").getCommitCounter());
+    }
+
+    // The stability index finds the same stable instances as checking all trackers
+    @Test
+    public void findStableInstancesSameAsAllTrackers() {
+        List<Integer> stableCommitCounts = List.of(3, 5);
+        PMDatabase expected = new PMDatabase();
+        PMDatabase actual = new PMDatabase(stableCommitCounts);
+        Random random = new Random(42);
+
+        for (int i = 0; i < 5000; i++) {
+            String fileName = "d" + random.nextInt(3) + "/f" + random.nextInt(10) + ".java";
+            CommitHandle commit = commit(i);
+            int operation = random.nextInt(40);
+            if (operation == 0) {
+                String newFileName = "d" + random.nextInt(3) + "/f" + random.nextInt(10) + ".java";
+                if (!newFileName.equals(fileName)) {
+                    expected.renameFile(fileName, newFileName, commit);
+                    actual.renameFile(fileName, newFileName, commit);
+                }
+            } else if (operation == 1) {
+                String oldDirectory = "d" + random.nextInt(3);
+                String newDirectory = "d" + random.nextInt(3) + "/m" + i;
+                expected.renameDirectory(oldDirectory, newDirectory);
+                actual.renameDirectory(oldDirectory, newDirectory);
+            } else if (operation == 2) {
+                expected.removeFile(fileName);
+                actual.removeFile(fileName);
+            } else if (operation < 6) {
+                expected.reportRefactoring(fileName, commit);
+                actual.reportRefactoring(fileName, commit);
+            } else {
+                expected.reportChanges(fileName, commit, "Rafael", 1, 1);
+                actual.reportChanges(fileName, commit, "Rafael", 1, 1);
+            }
+
+            if (random.nextInt(10) == 0) {
+                List<String> expectedStable = expected.getTrackers().stream()
+                        .filter(pmTracker -> pmTracker.calculateStability(stableCommitCounts))
+                        .map(ProcessMetricTracker::toString).sorted().collect(Collectors.toList());
+                List<String> actualStable = actual.findStableInstances(stableCommitCounts).stream()
+                        .map(ProcessMetricTracker::toString).sorted().collect(Collectors.toList());
+                Assertions.assertEquals(expectedStable, actualStable);
+            }
+        }
+    }
+
+    private CommitHandle commit(int number) {
+        return new CommitHandle(number, ObjectId.fromRaw(new int[] { 0, 0, 0, 0, number }), project);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,71 @@
+package refactoringml;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import refactoringml.util.PathTrie;
+
+public class PathTrieTest {
+
+	@Test
+	public void sameAsHashMap() {
+		PathTrie<Integer> trie = new PathTrie<>();
+		Map<String, Integer> expected = new HashMap<>();
+		Random random = new Random(42);
+		for (int i = 0; i < 10000; i++) {
+			String path = "d" + random.nextInt(3) + "/d" + random.nextInt(3) + "/F" + random.nextInt(20) + ".java";
+			if (random.nextInt(3) == 0)
+				Assertions.assertEquals(expected.remove(path), trie.remove(path));
+			else
+				Assertions.assertEquals(expected.put(path, i), trie.put(path, i));
+			Assertions.assertEquals(expected.get(path), trie.get(path));
+		}
+		Assertions.assertEquals(expected.size(), trie.size());
+		Assertions.assertEquals(new TreeMap<>(expected).toString(), trie.toString());
+		Map<String, Integer> actual = new HashMap<>();
+		trie.forEach(actual::put);
+		Assertions.assertEquals(expected, actual);
+		Assertions.assertEquals(expected.keySet().stream().filter(path -> path.startsWith("d1/")).count(),
+				trie.size("d1"));
+	}
+
+	@Test
+	public void moveDirectory() {
+		PathTrie<String> trie = new PathTrie<>();
+		trie.put("src/main/java/a/A.java", "A");
+		trie.put("src/main/java/a/b/B.java", "B");
+		trie.put("src/test/T.java", "T");
+
+		Assertions.assertTrue(trie.moveDirectory("src/main/java", "lib/java"));
+		Assertions.assertNull(trie.get("src/main/java/a/A.java"));
+		Assertions.assertEquals("A", trie.get("lib/java/a/A.java"));
+		Assertions.assertEquals("B", trie.get("lib/java/a/b/B.java"));
+		Assertions.assertEquals(3, trie.size());
+		Assertions.assertEquals(2, trie.size("lib"));
+		Assertions.assertEquals(1, trie.size("src"));
+		Assertions.assertEquals(0, trie.size("src/main"));
+		Map<String, String> moved = new TreeMap<>();
+		trie.forEach("lib/java/a", moved::put);
+		Assertions.assertEquals("{lib/java/a/A.java=A, lib/java/a/b/B.java=B}", moved.toString());
+
+		// the new directory exists already
+		Assertions.assertFalse(trie.moveDirectory("lib/java/a/b", "src/test"));
+		// one directory contains the other
+		Assertions.assertFalse(trie.moveDirectory("lib/java", "lib/java/a/c"));
+		Assertions.assertFalse(trie.moveDirectory("lib/java/a", "lib"));
+		// nothing to move
+		Assertions.assertFalse(trie.moveDirectory("src/main", "lib/main"));
+		Assertions.assertFalse(trie.moveDirectory("src/test/T.java", "lib/T.java"));
+		Assertions.assertEquals("{lib/java/a/A.java=A, lib/java/a/b/B.java=B, src/test/T.java=T}", trie.toString());
+
+		Assertions.assertEquals("T", trie.remove("src/test/T.java"));
+		Assertions.assertEquals(0, trie.size("src"));
+		Assertions.assertTrue(trie.moveDirectory("lib/java/a/b", "src/b"));
+		Assertions.assertEquals("{lib/java/a/A.java=A, src/b/B.java=B}", trie.toString());
+	}
+}
@@ -1,12 +1,14 @@
 package refactoringml;
 
 import org.junit.jupiter.api.Assertions;
+import org.eclipse.jgit.lib.ObjectId;
 import org.junit.jupiter.api.Test;
-import refactoringml.db.CommitMetaData;
 import refactoringml.db.ProcessMetrics;
 import refactoringml.db.Project;
+import refactoringml.util.CommitMessageClassifier;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 //Tests the ProcessMetricTracker and ProcessMetrics classes
@@ -15,16 +17,15 @@ public class ProcessMetricTrackerTest {
 	// Test if the constructor of the ProcessMetricTracker works as intended
 	@Test
 	public void constructor() {
-		CommitMetaData commitMetaData = new CommitMetaData();
-		commitMetaData.project = new Project();
-		ProcessMetricTracker pm = new ProcessMetricTracker("a.Java", commitMetaData);
+		CommitHandle commit = commit(1, new Project());
+		ProcessMetricTracker pm = new ProcessMetricTracker("a.Java", commit);
 
-		// check if the the commit meta data is still refering to the same object, we
-		// want to reduce the memory usage, as commitmetadata is stable
+		// check if the the commit is still refering to the same handle, we
+		// want to reduce the memory usage, as the commit is stable
 		Assertions.assertFalse(pm.getBaseProcessMetrics() == pm.getCurrentProcessMetrics());
 		// Check if the two pm metrics are not accidently refering to the same object,
 		// because process metrics are not stable
-		Assertions.assertTrue(pm.getBaseCommitMetaData() == commitMetaData);
+		Assertions.assertTrue(pm.getBaseCommit() == commit);
 
 		ProcessMetrics baseProcessMetrics = new ProcessMetrics(0, 0, 0, 0, 0, null);
 		// Assertions if the process metrics are "empty" at the beginning of the
@@ -36,9 +37,8 @@ public class ProcessMetricTrackerTest {
 	// test if the ProcessMetricTracker reportCommit function behaves as expected
 	@Test
 	public void reportCommit() {
-		CommitMetaData commitMetaData = new CommitMetaData();
-		commitMetaData.project = new Project();
-		ProcessMetricTracker pm = new ProcessMetricTracker("a.Java", commitMetaData);
+		CommitHandle commit = commit(1, new Project());
+		ProcessMetricTracker pm = new ProcessMetricTracker("a.Java", commit);
 
 		for (int i = 0; i < 21; i++) {
 			pm.reportCommit("commit #" + i, "Mauricio", 1, 1);
@@ -67,9 +67,8 @@ public class ProcessMetricTrackerTest {
 	// test if the ProcessMetricTracker reset function behaves as expected
 	@Test
 	public void resetClassFile() {
-		CommitMetaData commitMetaData = new CommitMetaData();
-		commitMetaData.project = new Project();
-		ProcessMetricTracker pm = new ProcessMetricTracker("a.Java", commitMetaData);
+		CommitHandle commit = commit(1, new Project());
+		ProcessMetricTracker pm = new ProcessMetricTracker("a.Java", commit);
 
 		for (int i = 0; i < 21; i++) {
 			pm.reportCommit("commit #" + i, "Mauricio", 1, 1);
@@ -77,12 +76,12 @@ public class ProcessMetricTrackerTest {
 		pm.reportCommit("Bug fix in commit #" + 22, "Jan", 10, 5);
 
 		// Reset the tracker counter, because a refactoring happened in this commit
-		CommitMetaData refactoringCommitMetaData = new CommitMetaData();
-		pm.resetCounter(refactoringCommitMetaData);
+		CommitHandle refactoringCommit = commit(2, null);
+		pm.resetCounter(refactoringCommit);
 
-		// Assertions if the new commit metadata is the same object as the one in the
+		// Assertions if the new commit is the same handle as the one in the
 		// tracker after the reset
-		Assertions.assertTrue(refactoringCommitMetaData == pm.getBaseCommitMetaData());
+		Assertions.assertTrue(refactoringCommit == pm.getBaseCommit());
 
 		// Assertions if the current processmetrics were deep copied to the base process
 		// metrics
@@ -107,9 +106,7 @@ public class ProcessMetricTrackerTest {
 	@Test
 	public void authorOwnership() {
 		// TODO: What commit message should I use here?
-		var cm = new CommitMetaData();
-		cm.project = new Project();
-		ProcessMetricTracker pm = new ProcessMetricTracker("a.Java", cm);
+		ProcessMetricTracker pm = new ProcessMetricTracker("a.Java", commit(1, new Project()));
 
 		for (int i = 0; i < 90; i++) {
 			pm.reportCommit("commit", "Mauricio", 10, 20);
@@ -131,8 +128,8 @@ public class ProcessMetricTrackerTest {
 		Assertions.assertEquals(0, pm.getCurrentProcessMetrics().bugFixCount);
 
 		// Reset the tracker counter, because a refactoring happened in this commit
-		CommitMetaData refactoringCommitMetaData = new CommitMetaData();
-		pm.resetCounter(refactoringCommitMetaData);
+		CommitHandle refactoringCommit = commit(2, null);
+		pm.resetCounter(refactoringCommit);
 
 		pm.reportCommit("bug fix in commit", "Michael", 10, 20);
 
@@ -153,11 +150,10 @@ public class ProcessMetricTrackerTest {
 
 	@Test
 	public void countBugFixes() {
-		int qtyKeywords = ProcessMetricTracker.bugKeywords.length;
+		List<String> bugKeywords = CommitMessageClassifier.DEFAULT_BUG_FIX_KEYWORDS;
+		int qtyKeywords = bugKeywords.size();
 		Random rnd = new Random();
-		var commitMetaData = new CommitMetaData();
-		commitMetaData.project = new Project();
-		ProcessMetricTracker pm = new ProcessMetricTracker("a.Java", commitMetaData);
+		ProcessMetricTracker pm = new ProcessMetricTracker("a.Java", commit(1, new Project()));
 
 		pm.reportCommit("bug fix here", "Rafael", 10, 20);
 
@@ -165,7 +161,7 @@ public class ProcessMetricTrackerTest {
 		for (int i = 0; i < 500; i++) {
 			String keywordHere = "";
 			if (rnd.nextBoolean()) {
-				keywordHere = ProcessMetricTracker.bugKeywords[rnd.nextInt(qtyKeywords - 1)];
+				keywordHere = bugKeywords.get(rnd.nextInt(qtyKeywords - 1));
 				qty++;
 			}
 
@@ -181,9 +177,9 @@ public class ProcessMetricTrackerTest {
 		PMDatabase pmDatabase = new PMDatabase();
 
 		for (int i = 0; i < 20; i++) {
-			pmDatabase.reportChanges("a.Java", new CommitMetaData("#" + i, "n", "n", "0", project), "R", 1, 1);
+			pmDatabase.reportChanges("a.Java", commit(i, project), "R", 1, 1);
 		}
-		pmDatabase.reportRefactoring("a.Java", new CommitMetaData("#21", "n", "n", "0", project));
+		pmDatabase.reportRefactoring("a.Java", commit(21, project));
 
 		ProcessMetricTracker pmTracker = pmDatabase.find("a.Java");
 		Assertions.assertEquals(20, pmTracker.getCurrentProcessMetrics().qtyOfCommits);
@@ -198,9 +194,7 @@ public class ProcessMetricTrackerTest {
 
 	@Test
 	void calculateStability() {
-		var cm = new CommitMetaData();
-		cm.project = new Project();
-		ProcessMetricTracker pm = new ProcessMetricTracker("a.Java", cm);
+		ProcessMetricTracker pm = new ProcessMetricTracker("a.Java", commit(1, new Project()));
 
 		List<Integer> stableCommitCounts = List.of(10, 25);
 
@@ -221,4 +215,29 @@ public class ProcessMetricTrackerTest {
 		pm.reportCommit("commit #25", "Mauricio", 1, 1);
 		Assertions.assertTrue(pm.calculateStability(stableCommitCounts));
 	}
-}
\ No newline at end of file
+
+	// a copy shares the authors until one of both changes them
+	@Test
+	void copyAuthors() {
+		Project project = new Project();
+		ProcessMetrics pm = new ProcessMetrics(2, 0, 0, 0, 0, project);
+		pm.updateAuthorCommits("Mauricio");
+		pm.updateAuthorCommits("Jan");
+		ProcessMetrics copy = new ProcessMetrics(pm);
+
+		pm.qtyOfCommits++;
+		pm.updateAuthorCommits("Diogo");
+		copy.qtyOfCommits++;
+		copy.updateAuthorCommits("Jan");
+
+		Assertions.assertEquals(Map.of("Mauricio", 1, "Jan", 1, "Diogo", 1), pm.getAllAuthors());
+		Assertions.assertEquals(Map.of("Mauricio", 1, "Jan", 2), copy.getAllAuthors());
+		Assertions.assertEquals(1 / 3.0, pm.authorOwnership(), 0.0001);
+		Assertions.assertEquals(2 / 3.0, copy.authorOwnership(), 0.0001);
+		Assertions.assertEquals(ProcessMetrics.toString(3, 0, 0, 2, 0, 2, 2 / 3.0, 0, 0), copy.toString());
+	}
+
+	private static CommitHandle commit(int number, Project project) {
+		return new CommitHandle(number, ObjectId.fromRaw(new int[] { 0, 0, 0, 0, number }), project);
+	}
+}
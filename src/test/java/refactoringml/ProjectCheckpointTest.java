@@ -0,0 +1,113 @@
+package refactoringml;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import refactoringml.db.Project;
+import refactoringml.util.CommitMessageClassifier.Category;
+
+class ProjectCheckpointTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void writeAndRead() throws IOException {
+		Project project = new Project();
+		project.id = 7L;
+		project.gitUrl = "https://github.com/refactoring-ai/Data-Collection";
+		CommitHandle first = commit(1, project);
+		first.setCommitMetaDataId(3L);
+		CommitHandle second = commit(2, project);
+		// stored after the checkpoint
+		second.setCommitMetaDataId(6L);
+
+		PMDatabase pmDatabase = new PMDatabase();
+		pmDatabase.reportChanges("a.Java", first, EnumSet.of(Category.BUG_FIX), "Rafael", 10, 20);
+		pmDatabase.reportChanges("b.Java", first, "Rafael", 1, 2);
+		pmDatabase.reportChanges("b.Java", second, "Maur\u00edcio", 3, 4);
+		pmDatabase.reportRefactoring("b.Java", second);
+
+		Path file = ProjectCheckpoint.path(tempDir, project);
+		new ProjectCheckpoint(project, "#2", 2, 1, 5L, pmDatabase).write(file);
+		ProjectCheckpoint checkpoint = ProjectCheckpoint.read(file, project);
+
+		Assertions.assertEquals("#2", checkpoint.getLastCommitHash());
+		Assertions.assertEquals(2, checkpoint.getLastCommitNumber());
+		Assertions.assertEquals(1, checkpoint.getExceptionsCount());
+		Assertions.assertEquals(5L, checkpoint.getMaxRowId());
+		Assertions.assertEquals(pmDatabase.toString(), checkpoint.getPmDatabase().toString());
+
+		ProcessMetricTracker a = checkpoint.getPmDatabase().find("a.Java");
+		Assertions.assertEquals(3L, a.getBaseCommit().getCommitMetaDataId());
+		Assertions.assertEquals(first.getCommitId(), a.getBaseCommit().getCommitId());
+		Assertions.assertEquals(1, a.getBaseCommit().getCommitNumber());
+		Assertions.assertEquals(1, a.getCurrentProcessMetrics().bugFixCount);
+		Assertions.assertNull(checkpoint.getPmDatabase().find("b.Java").getBaseCommit().getCommitMetaDataId());
+		Assertions.assertEquals(2, checkpoint.getPmDatabase().find("b.Java").getCurrentProcessMetrics().qtyOfAuthors());
+
+		// the restored trackers keep counting
+		((PMDatabase) checkpoint.getPmDatabase()).reportChanges("a.Java", second, "Maur\u00edcio", 1, 1);
+		Assertions.assertEquals(2, a.getCommitCounter());
+		Assertions.assertFalse(a.calculateStability(List.of(10)));
+	}
+
+	@Test
+	void columnar() throws IOException {
+		Project project = new Project();
+		project.id = 7L;
+		project.gitUrl = "https://github.com/refactoring-ai/Data-Collection";
+		CommitHandle first = commit(1, project);
+		CommitHandle second = commit(2, project);
+
+		PMDatabase pmDatabase = new PMDatabase();
+		pmDatabase.reportChanges("a.Java", first, EnumSet.of(Category.BUG_FIX), "Rafael", 10, 20);
+		pmDatabase.reportChanges("b.Java", first, "Rafael", 1, 2);
+		pmDatabase.reportRefactoring("b.Java", second);
+		pmDatabase.reportChanges("b.Java", second, "Maur\u00edcio", 3, 4);
+
+		Path file = ProjectCheckpoint.path(tempDir, project);
+		new ProjectCheckpoint(project, "#2", 2, 0, 5L, pmDatabase).write(file);
+		ProjectCheckpoint checkpoint = ProjectCheckpoint.read(file, project, new ColumnarPMDatabase(project));
+		ProcessMetricsDatabase columnar = checkpoint.getPmDatabase();
+		Assertions.assertEquals(pmDatabase.find("a.Java").toString(), columnar.find("a.Java").toString());
+		Assertions.assertEquals(pmDatabase.find("b.Java").toString(), columnar.find("b.Java").toString());
+
+		// and back from the columnar database
+		new ProjectCheckpoint(project, "#2", 2, 0, 5L, columnar).write(file);
+		checkpoint = ProjectCheckpoint.read(file, project);
+		Assertions.assertEquals(pmDatabase.toString(), checkpoint.getPmDatabase().toString());
+	}
+
+	@Test
+	void otherProject() throws IOException {
+		Project project = new Project();
+		project.id = 7L;
+		project.gitUrl = "https://github.com/refactoring-ai/Data-Collection";
+		Path file = ProjectCheckpoint.path(tempDir, project);
+		new ProjectCheckpoint(project, "#1", 1, 0, 0L, new PMDatabase()).write(file);
+
+		Project other = new Project();
+		other.id = 8L;
+		other.gitUrl = project.gitUrl;
+		Assertions.assertThrows(IOException.class, () -> ProjectCheckpoint.read(file, other));
+		// no temporary file is left behind
+		try (Stream<Path> files = Files.list(tempDir)) {
+			Assertions.assertEquals(List.of(file), files.collect(Collectors.toList()));
+		}
+	}
+
+	private static CommitHandle commit(int number, Project project) {
+		return new CommitHandle(number, ObjectId.fromRaw(new int[] { 0, 0, 0, 0, number }), project);
+	}
+}
@@ -0,0 +1,121 @@
+package refactoringml;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import refactoringml.ProjectScheduler.ScheduledProject;
+import refactoringml.util.ProjectCostEstimator;
+
+class ProjectSchedulerTest {
+
+	@Test
+	void highestCostFirst() throws InterruptedException {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		List<String> order = new CopyOnWriteArrayList<>();
+		ProjectScheduler scheduler = new ProjectScheduler(1, 0, 10, 0, project -> {
+			started.countDown();
+			await(release);
+			order.add(project.getLine());
+		});
+
+		// the only thread is busy with the first project while the others are submitted
+		scheduler.submit(new ScheduledProject("first", 1, 1));
+		Assertions.assertTrue(started.await(10, TimeUnit.SECONDS));
+		scheduler.submit(new ScheduledProject("small", 2, 1));
+		scheduler.submit(new ScheduledProject("huge", 3, 100));
+		scheduler.submit(new ScheduledProject("medium", 4, 10));
+		scheduler.submit(new ScheduledProject("also small", 5, 1));
+		release.countDown();
+		scheduler.close();
+		scheduler.awaitTermination();
+
+		Assertions.assertEquals(List.of("first", "huge", "medium", "small", "also small"), order);
+	}
+
+	@Test
+	void smallLaneKeepsGoing() throws InterruptedException {
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch smallDone = new CountDownLatch(1);
+		ProjectScheduler scheduler = new ProjectScheduler(2, 1, 10, 50, project -> {
+			if (project.getCost() >= 50)
+				await(release);
+			else
+				smallDone.countDown();
+		});
+
+		scheduler.submit(new ScheduledProject("huge", 1, 1000));
+		scheduler.submit(new ScheduledProject("small", 2, 10));
+		// the only thread for large projects is busy, but the small one is mined anyway
+		Assertions.assertTrue(smallDone.await(10, TimeUnit.SECONDS));
+
+		release.countDown();
+		scheduler.close();
+		scheduler.awaitTermination();
+	}
+
+	@Test
+	void unknownCostTakenByEitherLane() throws InterruptedException {
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch unknownDone = new CountDownLatch(2);
+		List<String> order = new CopyOnWriteArrayList<>();
+		ProjectScheduler scheduler = new ProjectScheduler(2, 1, 10, 50, project -> {
+			if (project.getCost() == 1000)
+				await(release);
+			else {
+				order.add(project.getLine());
+				unknownDone.countDown();
+			}
+		});
+
+		// the thread of the large lane is busy, the one of the small lane takes the unknown projects in input order
+		scheduler.submit(new ScheduledProject("huge", 1, 1000));
+		scheduler.submit(new ScheduledProject("unknown", 2, ProjectCostEstimator.UNKNOWN_COST));
+		scheduler.submit(new ScheduledProject("also unknown", 3, ProjectCostEstimator.UNKNOWN_COST));
+		Assertions.assertTrue(unknownDone.await(10, TimeUnit.SECONDS));
+		Assertions.assertEquals(List.of("unknown", "also unknown"), order);
+
+		release.countDown();
+		scheduler.close();
+		scheduler.awaitTermination();
+	}
+
+	@Test
+	void estimatesCostInBackground() throws InterruptedException {
+		CountDownLatch estimating = new CountDownLatch(1);
+		CountDownLatch estimated = new CountDownLatch(1);
+		List<String> order = new CopyOnWriteArrayList<>();
+		ProjectScheduler scheduler = new ProjectScheduler(1, 0, 10, 0, project -> order
+				.add(project.getLine() + "=" + project.getCost()));
+
+		scheduler.submit("slow", 1, () -> {
+			estimating.countDown();
+			await(estimated);
+			return 5;
+		});
+		// submitting does not wait for the estimate
+		Assertions.assertTrue(estimating.await(10, TimeUnit.SECONDS));
+		scheduler.submit("failing", 2, () -> {
+			throw new IllegalStateException("no clone");
+		});
+		estimated.countDown();
+		// closing waits for the projects still being estimated
+		scheduler.close();
+		scheduler.awaitTermination();
+
+		Assertions.assertEquals(List.of("slow=5", "failing=" + ProjectCostEstimator.UNKNOWN_COST), order);
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package refactoringml;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jgit.api.Git;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import refactoringml.util.JGitUtils;
+
+public class RepositoryPrefetcherTest {
+
+	private final AtomicInteger clones = new AtomicInteger();
+
+	@Test
+	public void evictsMinedClones(@TempDir Path tempDir) throws Exception {
+		String one = createRepository(tempDir.resolve("one"));
+		String two = createRepository(tempDir.resolve("two"));
+		Path repositoriesPath = tempDir.resolve("repositories");
+
+		// any clone exceeds the budget, so a mined clone is deleted before the next one
+		RepositoryPrefetcher prefetcher = new RepositoryPrefetcher(1, 1, repositoriesPath, this::cloneRepository);
+		prefetchAndWait(prefetcher, one);
+		Assertions.assertTrue(Files.isDirectory(repositoriesPath.resolve("one").resolve(".git")));
+		Assertions.assertTrue(prefetcher.getUsedBytes() > 0);
+
+		prefetcher.finished(one);
+		prefetchAndWait(prefetcher, two);
+		Assertions.assertFalse(Files.exists(repositoriesPath.resolve("one")));
+		Assertions.assertTrue(Files.isDirectory(repositoriesPath.resolve("two").resolve(".git")));
+		Assertions.assertEquals(1, prefetcher.getEvicted());
+		prefetcher.shutdown();
+	}
+
+	@Test
+	public void reusesClones(@TempDir Path tempDir) throws Exception {
+		String one = createRepository(tempDir.resolve("one"));
+		Path repositoriesPath = tempDir.resolve("repositories");
+
+		RepositoryPrefetcher prefetcher = new RepositoryPrefetcher(2, 0, repositoriesPath, this::cloneRepository);
+		prefetchAndWait(prefetcher, one);
+		prefetchAndWait(prefetcher, one);
+		prefetcher.finished(one);
+		prefetcher.finished(one);
+		Assertions.assertEquals(1, clones.get());
+		Assertions.assertEquals(0, prefetcher.getEvicted());
+		prefetcher.shutdown();
+	}
+
+	@Test
+	public void passesOnFailedClones(@TempDir Path tempDir) throws Exception {
+		Path repositoriesPath = tempDir.resolve("repositories");
+		RepositoryPrefetcher prefetcher = new RepositoryPrefetcher(1, 0, repositoriesPath, this::cloneRepository);
+		prefetchAndWait(prefetcher, "file://" + tempDir.resolve("missing").toAbsolutePath());
+		Assertions.assertFalse(Files.exists(repositoriesPath.resolve("missing")));
+		prefetcher.shutdown();
+	}
+
+	private void prefetchAndWait(RepositoryPrefetcher prefetcher, String gitUrl) throws InterruptedException {
+		CountDownLatch prefetched = new CountDownLatch(1);
+		prefetcher.prefetch(gitUrl, prefetched::countDown);
+		Assertions.assertTrue(prefetched.await(1, TimeUnit.MINUTES));
+	}
+
+	private void cloneRepository(String gitUrl, Path repositoriesPath) throws Exception {
+		Path clonePath = JGitUtils.getClonePath(gitUrl, repositoriesPath);
+		if (Files.exists(clonePath))
+			return;
+		clones.incrementAndGet();
+		JGitUtils.cloneRepository(gitUrl, clonePath, false, null).close();
+	}
+
+	private static String createRepository(Path path) throws Exception {
+		try (Git git = TestRepository.init(path)) {
+			TestRepository.write(path, "A.java", "class A {}\n");
+			TestRepository.commitAll(git, "first");
+		}
+		return "file://" + path.toAbsolutePath();
+	}
+}
@@ -0,0 +1,32 @@
+package refactoringml;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class RunProgressTest {
+
+	@Test
+	void restartLine() {
+		RunProgress progress = new RunProgress(5);
+		Assertions.assertEquals(5, progress.getRestartLine());
+
+		progress.started(5);
+		progress.started(6);
+		progress.skipped(7);
+		progress.started(8);
+		Assertions.assertEquals(5, progress.getRestartLine());
+
+		// a later line finishing first does not move the restart line
+		progress.finished(6, "b", true);
+		Assertions.assertEquals(5, progress.getRestartLine());
+
+		progress.finished(5, "a", false);
+		Assertions.assertEquals(8, progress.getRestartLine());
+
+		progress.finished(8, "c", true);
+		Assertions.assertEquals(9, progress.getRestartLine());
+		Assertions.assertEquals(2, progress.getDone());
+		Assertions.assertEquals(1, progress.getFailed());
+		Assertions.assertEquals(0, progress.getInFlight());
+	}
+}
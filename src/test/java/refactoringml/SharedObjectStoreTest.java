@@ -0,0 +1,81 @@
+package refactoringml;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import refactoringml.util.SharedObjectStore;
+
+public class SharedObjectStoreTest {
+
+	@Test
+	public void forksBorrowObjects(@TempDir Path tempDir) throws Exception {
+		Path library = tempDir.resolve("library");
+		try (Git git = TestRepository.init(library)) {
+			commit(git, library, "A.java");
+			commit(git, library, "B.java");
+		}
+		Path fork = tempDir.resolve("fork");
+		try (Git git = Git.cloneRepository().setURI(library.toUri().toString()).setDirectory(fork.toFile()).call()) {
+			commit(git, fork, "C.java");
+		}
+
+		SharedObjectStore store = new SharedObjectStore(tempDir.resolve("shared.git"));
+		Path repositories = tempDir.resolve("repositories");
+		try (Git clone = store.cloneRepository("file://" + library, repositories.resolve("library"), false, null)) {
+			Assertions.assertEquals(2, countCommits(clone));
+			Assertions.assertTrue(Files.exists(repositories.resolve("library").resolve("B.java")));
+			Assertions.assertTrue(clone.status().call().isClean());
+			Assertions.assertEquals(0, ownObjects(clone));
+		}
+		try (Git clone = store.cloneRepository("file://" + fork, repositories.resolve("fork"), true, null)) {
+			Assertions.assertTrue(clone.getRepository().isBare());
+			Assertions.assertEquals(3, countCommits(clone));
+			Assertions.assertEquals(0, ownObjects(clone));
+			try (RevWalk walk = new RevWalk(clone.getRepository());
+					TreeWalk treeWalk = TreeWalk.forPath(clone.getRepository(), "C.java",
+							walk.parseCommit(clone.getRepository().resolve(Constants.HEAD)).getTree())) {
+				Assertions.assertEquals("class C {}\n",
+						new String(clone.getRepository().open(treeWalk.getObjectId(0)).getBytes()));
+			}
+		}
+	}
+
+	@Test
+	public void failedCloneLeavesNothing(@TempDir Path tempDir) throws Exception {
+		SharedObjectStore store = new SharedObjectStore(tempDir.resolve("shared.git"));
+		Path clonePath = tempDir.resolve("repositories").resolve("missing");
+		Assertions.assertThrows(Exception.class,
+				() -> store.cloneRepository("file://" + tempDir.resolve("missing"), clonePath, false, null));
+		Assertions.assertFalse(Files.exists(clonePath));
+	}
+
+	private static void commit(Git git, Path path, String fileName) throws Exception {
+		TestRepository.write(path, fileName, "class " + fileName.replace(".java", "") + " {}\n");
+		TestRepository.commitAll(git, fileName);
+	}
+
+	private static int countCommits(Git git) throws Exception {
+		int commits = 0;
+		for (var ignored : git.log().call())
+			commits++;
+		return commits;
+	}
+
+	// Objects stored in the clone itself, instead of the shared store
+	private static long ownObjects(Git git) throws Exception {
+		Path objects = git.getRepository().getDirectory().toPath().resolve("objects");
+		try (Stream<Path> files = Files.walk(objects)) {
+			return files.filter(Files::isRegularFile).filter(file -> !file.startsWith(objects.resolve("info")))
+					.count();
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package refactoringml;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+// Small git repositories for the tests, committed by the same author unless a test needs another one
+public final class TestRepository {
+
+	private TestRepository() {
+	}
+
+	public static Git init(Path root) throws GitAPIException {
+		return Git.init().setDirectory(root.toFile()).call();
+	}
+
+	// Writes the file in the working tree, creating its directories
+	public static void write(Path root, String path, String content) throws IOException {
+		Path file = root.resolve(path);
+		Files.createDirectories(file.getParent());
+		Files.writeString(file, content);
+	}
+
+	public static RevCommit commitAll(Git git) throws GitAPIException {
+		return commitAll(git, "commit");
+	}
+
+	public static RevCommit commitAll(Git git, String message) throws GitAPIException {
+		return commitAll(git, message, new PersonIdent("a", "a@example.com"));
+	}
+
+	// Stages every change in the working tree, deleted files included, and commits it
+	public static RevCommit commitAll(Git git, String message, PersonIdent author) throws GitAPIException {
+		git.add().addFilepattern(".").call();
+		git.add().setUpdate(true).addFilepattern(".").call();
+		return git.commit().setMessage(message).setAuthor(author).setCommitter(author).call();
+	}
+}
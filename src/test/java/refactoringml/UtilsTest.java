@@ -2,6 +2,7 @@ package refactoringml;
 
 import static refactoringml.util.FileUtils.isTestFile;
 
+import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
@@ -63,4 +64,15 @@ class UtilsTest {
 		Assertions.assertEquals("File.java", FilePathUtils.fileNameOnly("File.java"));
 		Assertions.assertEquals("File.java", FilePathUtils.fileNameOnly("/File.java"));
 	}
+
+	@Test
+	void movedDirectories() {
+		Assertions.assertEquals(ImmutablePair.of("src/main/java", "src/java"),
+				FilePathUtils.movedDirectories("src/main/java/a/B.java", "src/java/a/B.java"));
+		Assertions.assertEquals(ImmutablePair.of("a/b/c", "a/b/d"),
+				FilePathUtils.movedDirectories("a/b/c/e/B.java", "a/b/d/e/B.java"));
+		Assertions.assertNull(FilePathUtils.movedDirectories("a/B.java", "a/C.java"));
+		Assertions.assertNull(FilePathUtils.movedDirectories("a/B.java", "B.java"));
+		Assertions.assertNull(FilePathUtils.movedDirectories("a/B.java", "a/b/B.java"));
+	}
 }
\ No newline at end of file